@@ -41,5 +41,31 @@ tasks {
         classpath = sourceSets.main.get().runtimeClasspath
         mainClass.set("gc.garcol.libbenchmark.Unicast1P1C_OneToManyRingBufferRunner")
     }
+    task("run-memory-access", JavaExec::class) {
+        group = "run"
+        classpath = sourceSets.main.get().runtimeClasspath
+        mainClass.set("gc.garcol.libbenchmark.MemoryAccess_OneToManyRingBufferRunner")
+    }
+    task("run-position-ordering", JavaExec::class) {
+        group = "run"
+        classpath = sourceSets.main.get().runtimeClasspath
+        mainClass.set("gc.garcol.libbenchmark.PositionOrdering_OneToManyRingBufferRunner")
+    }
+    // not part of the build, the gate runs the benchmarks: ./gradlew :lib-benchmark:regression-gate [-Pgate.tolerance=0.1]
+    task("regression-gate", JavaExec::class) {
+        group = "verification"
+        classpath = sourceSets.main.get().runtimeClasspath
+        mainClass.set("gc.garcol.libbenchmark.RegressionGate_OneToManyRingBufferRunner")
+        args(file("regression-baseline.properties").absolutePath)
+        systemProperty("gate.tolerance", project.findProperty("gate.tolerance") ?: "0.1")
+        systemProperty("gate.maxAllocation", project.findProperty("gate.maxAllocation") ?: "0.1")
+    }
+    task("record-baseline", JavaExec::class) {
+        group = "verification"
+        classpath = sourceSets.main.get().runtimeClasspath
+        mainClass.set("gc.garcol.libbenchmark.RegressionGate_OneToManyRingBufferRunner")
+        args(file("regression-baseline.properties").absolutePath, "--record")
+        systemProperty("gate.maxAllocation", project.findProperty("gate.maxAllocation") ?: "0.1")
+    }
 }
 
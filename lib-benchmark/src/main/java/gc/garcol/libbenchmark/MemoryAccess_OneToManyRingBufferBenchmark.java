@@ -0,0 +1,60 @@
+package gc.garcol.libbenchmark;
+
+import gc.garcol.libcore.MessageHandler;
+import gc.garcol.libcore.OneToManyRingBuffer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the Unsafe and the VarHandle memory access of {@link gc.garcol.libcore.UnsafeBuffer}:
+ * a message is written then read by the same thread, each access mode in its own fork.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MemoryAccess_OneToManyRingBufferBenchmark
+{
+    OneToManyRingBuffer ringBuffer;
+    ByteBuffer writeBuffer = ByteBuffer.wrap("Hello, World!".getBytes());
+    MessageHandler messageHandler;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole)
+    {
+        ringBuffer = new OneToManyRingBuffer(18, 1);
+        messageHandler = (msgTypeId, buffer, index, length) -> {
+            blackhole.consume(buffer.getInt(index));
+            return true;
+        };
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dgc.garcol.libcore.unsafe=true")
+    @Measurement(iterations = 3, time = 10)
+    @Warmup(iterations = 1, time = 10)
+    public int unsafe()
+    {
+        return roundTrip();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dgc.garcol.libcore.unsafe=false")
+    @Measurement(iterations = 3, time = 10)
+    @Warmup(iterations = 1, time = 10)
+    public int varHandle()
+    {
+        return roundTrip();
+    }
+
+    private int roundTrip()
+    {
+        ringBuffer.write(1, writeBuffer.clear());
+        return ringBuffer.read(0, messageHandler);
+    }
+}
@@ -0,0 +1,52 @@
+package gc.garcol.libbenchmark;
+
+import gc.garcol.libcore.ByteBufferUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the release/acquire and the volatile ordering of the positions of a {@link gc.garcol.libcore.OneToManyRingBuffer}
+ * on the unicast 1P - 1C plan, each ordering in its own fork.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PositionOrdering_OneToManyRingBufferBenchmark
+{
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dgc.garcol.libcore.volatilePositions=false")
+    @Timeout(time = 60)
+    @Measurement(iterations = 1, time = 60)
+    @Warmup(iterations = 1, time = 10)
+    public void releaseAcquire(Unicast1P1C_OneToManyRingBufferPlan ringBufferPlan)
+    {
+        publish(ringBufferPlan);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dgc.garcol.libcore.volatilePositions=true")
+    @Timeout(time = 60)
+    @Measurement(iterations = 1, time = 60)
+    @Warmup(iterations = 1, time = 10)
+    public void volatileOrdering(Unicast1P1C_OneToManyRingBufferPlan ringBufferPlan)
+    {
+        publish(ringBufferPlan);
+    }
+
+    private void publish(Unicast1P1C_OneToManyRingBufferPlan ringBufferPlan)
+    {
+        ringBufferPlan.writeBuffer.clear();
+        ByteBufferUtil.put(ringBufferPlan.writeBuffer, 0, ringBufferPlan.data);
+        ringBufferPlan.writeBuffer.flip();
+
+        boolean publishSuccess = false;
+        while (!publishSuccess)
+        {
+            publishSuccess = ringBufferPlan.ringBuffer.write(1, ringBufferPlan.writeBuffer);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package gc.garcol.libbenchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The hot paths gated by the {@link RegressionGate_OneToManyRingBufferRunner}: each operation writes a message
+ * and reads it back, one by one, gathered from several parts or in batches.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RegressionGate_OneToManyRingBufferBenchmark
+{
+    static final int BATCH_SIZE = 16;
+
+    @Benchmark
+    public boolean writeReadOne(RegressionGate_OneToManyRingBufferPlan ringBufferPlan)
+    {
+        ringBufferPlan.ringBuffer.write(1, ringBufferPlan.writeBuffer);
+        return ringBufferPlan.ringBuffer.readOne(0, ringBufferPlan.messageHandler);
+    }
+
+    @Benchmark
+    public boolean writeGatheredReadOne(RegressionGate_OneToManyRingBufferPlan ringBufferPlan)
+    {
+        ringBufferPlan.ringBuffer.write(1, ringBufferPlan.headerBuffer, ringBufferPlan.writeBuffer);
+        return ringBufferPlan.ringBuffer.readOne(0, ringBufferPlan.messageHandler);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int writeRead(RegressionGate_OneToManyRingBufferPlan ringBufferPlan)
+    {
+        for (int i = 0; i < BATCH_SIZE; i++)
+        {
+            ringBufferPlan.ringBuffer.write(1, ringBufferPlan.writeBuffer);
+        }
+        return ringBufferPlan.ringBuffer.read(0, ringBufferPlan.messageHandler);
+    }
+}
@@ -0,0 +1,45 @@
+package gc.garcol.libbenchmark;
+
+import gc.garcol.libcore.MessageHandler;
+import gc.garcol.libcore.OneToManyRingBuffer;
+import gc.garcol.libcore.UnsafeBuffer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A ring buffer written and read by the benchmark thread itself, so that the allocations measured are the ones
+ * of the hot paths only.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+@State(Scope.Thread)
+public class RegressionGate_OneToManyRingBufferPlan
+{
+
+    OneToManyRingBuffer ringBuffer;
+    byte[] data = "Hello, World!".getBytes();
+    ByteBuffer writeBuffer;
+    ByteBuffer headerBuffer;
+    MessageHandler messageHandler;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole)
+    {
+        ringBuffer = new OneToManyRingBuffer(16, 1);
+        writeBuffer = ByteBuffer.allocate(data.length);
+        writeBuffer.put(0, data);
+        headerBuffer = ByteBuffer.allocate(Long.BYTES);
+
+        messageHandler = new MessageHandler()
+        {
+            public boolean onMessage(final int msgTypeId, final UnsafeBuffer buffer, final int index, final int length)
+            {
+                blackhole.consume(buffer.getByte(index));
+                return true;
+            }
+        };
+    }
+}
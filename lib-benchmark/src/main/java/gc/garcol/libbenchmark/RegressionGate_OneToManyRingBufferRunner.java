@@ -0,0 +1,119 @@
+package gc.garcol.libbenchmark;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Runs the {@link RegressionGate_OneToManyRingBufferBenchmark} with the GC profiler and fails when a hot path allocates,
+ * or when its throughput or average time regresses beyond a tolerance against the stored baseline.
+ * <p>
+ * Arguments: the baseline file, then {@code --record} to store the scores of the run as the new baseline.
+ * System properties: {@code gate.tolerance}, the relative regression tolerated, 0.1 by default, and
+ * {@code gate.maxAllocation}, the bytes allocated per operation tolerated, 0.1 by default: a real allocation is at least
+ * 16 bytes, the fraction left is the harness amortized over the operations.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class RegressionGate_OneToManyRingBufferRunner
+{
+
+    static final String ALLOCATION_RESULT = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws RunnerException, IOException
+    {
+        Path baselinePath = Path.of(args.length > 0 ? args[0] : "regression-baseline.properties");
+        boolean record = args.length > 1 && "--record".equals(args[1]);
+        double tolerance = Double.parseDouble(System.getProperty("gate.tolerance", "0.1"));
+        double maxAllocation = Double.parseDouble(System.getProperty("gate.maxAllocation", "0.1"));
+
+        Options options = new OptionsBuilder()
+            .include(RegressionGate_OneToManyRingBufferBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result("benchmark-result.RegressionGate_one-to-many-ring-buffer.json")
+            .jvmArgs("--add-opens", "java.base/java.nio=ALL-UNNAMED") // Add JVM argument
+            .build();
+        Collection<RunResult> runResults = new Runner(options).run();
+
+        Properties baseline = new Properties();
+        if (Files.exists(baselinePath))
+        {
+            try (Reader reader = Files.newBufferedReader(baselinePath))
+            {
+                baseline.load(reader);
+            }
+        }
+        else if (!record)
+        {
+            System.out.println("No baseline at " + baselinePath.toAbsolutePath() + ", only the allocations are gated");
+        }
+
+        Properties scores = new Properties();
+        List<String> failures = new ArrayList<>();
+        for (RunResult runResult : runResults)
+        {
+            String benchmark = runResult.getParams().getBenchmark();
+            Mode mode = runResult.getParams().getMode();
+            String key = benchmark.substring(benchmark.lastIndexOf('.') + 1) + "." + mode.shortLabel();
+            double score = runResult.getPrimaryResult().getScore();
+            scores.setProperty(key, Double.toString(score));
+
+            for (Map.Entry<String, Result> secondaryResult : runResult.getSecondaryResults().entrySet())
+            {
+                // the label is prefixed with a middle dot by the older versions of the profiler
+                if (secondaryResult.getKey().endsWith(ALLOCATION_RESULT) && secondaryResult.getValue().getScore() > maxAllocation)
+                {
+                    failures.add(String.format("%s allocates %.3f bytes per operation", key, secondaryResult.getValue().getScore()));
+                }
+            }
+
+            String baselineScore = baseline.getProperty(key);
+            if (record || baselineScore == null)
+            {
+                continue;
+            }
+            double expected = Double.parseDouble(baselineScore);
+            // a higher throughput is better, a higher average time is worse
+            boolean regressed = mode == Mode.Throughput ? score < expected * (1 - tolerance) : score > expected * (1 + tolerance);
+            if (regressed)
+            {
+                failures.add(String.format("%s regressed to %.3f %s, baseline %.3f", key, score, runResult.getPrimaryResult().getScoreUnit(), expected));
+            }
+        }
+
+        if (record)
+        {
+            try (Writer writer = Files.newBufferedWriter(baselinePath))
+            {
+                scores.store(writer, "Regression gate baseline, primary scores by benchmark and mode");
+            }
+            System.out.println("Baseline recorded at " + baselinePath.toAbsolutePath());
+        }
+
+        if (!failures.isEmpty())
+        {
+            throw new IllegalStateException("Regression gate failed:\n" + String.join("\n", failures));
+        }
+        System.out.println("Regression gate passed");
+    }
+
+}
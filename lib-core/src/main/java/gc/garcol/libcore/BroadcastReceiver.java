@@ -0,0 +1,179 @@
+package gc.garcol.libcore;
+
+import static gc.garcol.libcore.BroadcastRingBuffer.*;
+
+/**
+ * Receives the messages of a {@link BroadcastRingBuffer} without ever slowing its producer.
+ * <p>
+ * Each message is copied into a scratch buffer and validated before being handed to the handler, so the handler
+ * never sees a record being overwritten. When the producer laps the receiver, the receiver resynchronizes to the
+ * latest record and the skipped messages are added to {@link #lostMessages()}.
+ * <p>
+ * A receiver starts at the tail of the ring buffer and must be driven by a single thread.
+ * <p>
+ * Reference to the Agrona BroadcastReceiver and CopyBroadcastReceiver classes.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class BroadcastReceiver
+{
+    private final UnsafeBuffer buffer;
+    private final UnsafeBuffer pointers;
+    private final UnsafeBuffer scratchBuffer;
+    private final int capacity;
+    private final int mask;
+    private final int maxMessageLength;
+
+    private long cursor;
+    private long nextSequence;
+    private long lappedCount;
+    private long lostMessages;
+
+    /**
+     * Constructs a BroadcastReceiver starting at the tail of the ring buffer.
+     *
+     * @param ringBuffer the ring buffer to receive from
+     */
+    public BroadcastReceiver(BroadcastRingBuffer ringBuffer)
+    {
+        this.buffer = ringBuffer.buffer();
+        this.pointers = ringBuffer.pointers();
+        this.capacity = ringBuffer.capacity();
+        this.mask = capacity - 1;
+        this.maxMessageLength = ringBuffer.maxMessageLength();
+        this.scratchBuffer = new UnsafeBuffer(maxMessageLength);
+        startAtTail();
+    }
+
+    /**
+     * @return the number of times the receiver has been lapped by the producer
+     */
+    public long lappedCount()
+    {
+        return lappedCount;
+    }
+
+    /**
+     * @return the number of messages skipped because the receiver has been lapped
+     */
+    public long lostMessages()
+    {
+        return lostMessages;
+    }
+
+    /**
+     * Reads messages from the ring buffer.
+     *
+     * @param handler the handler to process the messages
+     * @return the number of messages read
+     */
+    public int read(final MessageHandler handler)
+    {
+        return read(handler, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads messages from the ring buffer with a limit.
+     * <p>
+     * A message whose handler returns false is delivered again on the next read, unless it has been overwritten by then.
+     *
+     * @param handler the handler to process the messages, the buffer is a scratch copy starting at index 0
+     * @param limit   the maximum number of messages to read
+     * @return the number of messages read
+     */
+    public int read(final MessageHandler handler, int limit)
+    {
+        int read = 0;
+        while (read < limit && cursor < pointers.getLongVolatile(TAIL_INDEX))
+        {
+            if (!validate(cursor))
+            {
+                resync();
+                continue;
+            }
+
+            final int recordOffset = (int)cursor & mask;
+            final int messageLength = buffer.getInt(recordOffset);
+            final int messageTypeId = buffer.getInt(recordOffset + Integer.BYTES);
+            final long sequence = buffer.getLong(recordOffset + Integer.BYTES * 2);
+
+            if (messageTypeId == PADDING_MSG_TYPE_ID)
+            {
+                long nextCursor = cursor + capacity - recordOffset;
+                if (validate(cursor))
+                {
+                    cursor = nextCursor;
+                }
+                continue;
+            }
+
+            if (messageLength < 0 || messageLength > maxMessageLength)
+            {
+                // a torn header, the next validation fails
+                continue;
+            }
+
+            scratchBuffer.putBytes(0, buffer, recordOffset + HEADER_LENGTH, messageLength);
+            if (!validate(cursor))
+            {
+                continue;
+            }
+
+            if (sequence > nextSequence)
+            {
+                lostMessages += sequence - nextSequence;
+            }
+            nextSequence = sequence;
+
+            if (!handler.onMessage(messageTypeId, scratchBuffer, 0, messageLength))
+            {
+                break;
+            }
+
+            nextSequence = sequence + 1;
+            cursor += BitUtil.align(messageLength + HEADER_LENGTH, ALIGNMENT);
+            read++;
+        }
+        return read;
+    }
+
+    /**
+     * The record at the position has not been overwritten if the producer does not intend to write a full lap ahead of it.
+     */
+    private boolean validate(long position)
+    {
+        MemoryAccess.loadFence();
+        return position + capacity >= pointers.getLongVolatile(TAIL_INTENT_INDEX);
+    }
+
+    /**
+     * The sequence of the next message is the one of the latest record plus one, read while the tail does not move.
+     */
+    private void startAtTail()
+    {
+        while (true)
+        {
+            long tail = pointers.getLongVolatile(TAIL_INDEX);
+            if (tail == 0)
+            {
+                return;
+            }
+
+            long latest = pointers.getLongVolatile(LATEST_INDEX);
+            long latestSequence = buffer.getLong(((int)latest & mask) + Integer.BYTES * 2);
+            if (latest < tail && validate(latest) && tail == pointers.getLongVolatile(TAIL_INDEX))
+            {
+                cursor = tail;
+                nextSequence = latestSequence + 1;
+                return;
+            }
+        }
+    }
+
+    private void resync()
+    {
+        lappedCount++;
+        cursor = pointers.getLongVolatile(LATEST_INDEX);
+    }
+}
@@ -0,0 +1,143 @@
+package gc.garcol.libcore;
+
+import java.nio.ByteBuffer;
+
+import static gc.garcol.libcore.RingBufferUtil.checkMsgLength;
+
+/**
+ * A lossy ring buffer with one producer and any number of {@link BroadcastReceiver}s.
+ * <p>
+ * The producer never waits for the receivers: it overwrites the oldest records when the buffer is full.
+ * Receivers are not part of any gating, they detect that they have been lapped by validating the records they read
+ * against the tail intent of the producer, then resynchronize to the latest record and count the lost messages.
+ * <p>
+ * Positions are monotonic byte counters. Each record carries the sequence of the message to count the lost messages.
+ * <p>
+ * Reference to the Agrona BroadcastTransmitter class.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class BroadcastRingBuffer
+{
+    /**
+     * The length of the header in bytes.
+     * The header contains the length, type and sequence of the message.
+     */
+    public static final int HEADER_LENGTH = Integer.BYTES * 2 + Long.BYTES; // length, type, sequence
+
+    /**
+     * Alignment as a multiple of bytes for each record.
+     */
+    public static final int ALIGNMENT = Long.BYTES;
+
+    static final int PADDING_MSG_TYPE_ID = -1;
+
+    static final int TAIL_INTENT_INDEX = Long.BYTES * 8;
+    static final int TAIL_INDEX = TAIL_INTENT_INDEX + Long.BYTES * 8;
+    static final int LATEST_INDEX = TAIL_INDEX + Long.BYTES * 8;
+
+    private final UnsafeBuffer unsafeBuffer;
+
+    /**
+     * The pointers buffer contains the producer counters.
+     * <p>
+     * [64 padding bytes] | tail intent: 8 bytes | [(64 - 8) padding bytes] | tail: 8 bytes | [(64 - 8) padding bytes] | latest: 8 bytes | 64 padding bytes
+     */
+    private final UnsafeBuffer pointers;
+
+    private final int capacity;
+    private final int mask;
+    private final int maxMessageLength;
+    private long sequence;
+
+    /**
+     * Constructs a BroadcastRingBuffer with the specified size.
+     *
+     * @param powSize the power of two size for the ring buffer
+     */
+    public BroadcastRingBuffer(int powSize)
+    {
+        Preconditions.checkArgument(powSize >= 10, "Ring buffer size must be greater than 1024");
+        Preconditions.checkArgument(powSize <= 30, "Ring buffer size must not be greater than 2^30");
+
+        capacity = 1 << powSize;
+        mask = capacity - 1;
+        maxMessageLength = (capacity >> 3) - HEADER_LENGTH;
+        unsafeBuffer = new UnsafeBuffer(capacity);
+        pointers = new UnsafeBuffer(LATEST_INDEX + Long.BYTES + Long.BYTES * 8);
+    }
+
+    /**
+     * @return the capacity of the ring buffer in bytes
+     */
+    public int capacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * @return the maximum length of a message
+     */
+    public int maxMessageLength()
+    {
+        return maxMessageLength;
+    }
+
+    /**
+     * Writes a message to the ring buffer, overwriting the oldest records if needed. Never blocks.
+     *
+     * @param msgTypeId the type identifier of the message, must not be negative
+     * @param message   the message to write, the limit must be equal to the message length
+     */
+    public void write(int msgTypeId, ByteBuffer message)
+    {
+        Preconditions.checkArgument(msgTypeId >= 0, "Message type id must not be negative");
+        final int messageLength = message.limit();
+        checkMsgLength(messageLength, maxMessageLength);
+
+        long currentTail = pointers.getLong(TAIL_INDEX);
+        int recordOffset = (int)currentTail & mask;
+        final int alignedRecordLength = BitUtil.align(messageLength + HEADER_LENGTH, ALIGNMENT);
+        final int toEndOfBuffer = capacity - recordOffset;
+
+        if (toEndOfBuffer < alignedRecordLength)
+        {
+            signalTailIntent(currentTail + toEndOfBuffer + alignedRecordLength);
+
+            unsafeBuffer.putInt(recordOffset, 0);
+            unsafeBuffer.putInt(recordOffset + Integer.BYTES, PADDING_MSG_TYPE_ID);
+
+            currentTail += toEndOfBuffer;
+            recordOffset = 0;
+        }
+        else
+        {
+            signalTailIntent(currentTail + alignedRecordLength);
+        }
+
+        unsafeBuffer.putInt(recordOffset, messageLength);
+        unsafeBuffer.putInt(recordOffset + Integer.BYTES, msgTypeId);
+        unsafeBuffer.putLong(recordOffset + Integer.BYTES * 2, sequence++);
+        unsafeBuffer.putBytes(recordOffset + HEADER_LENGTH, message, 0, messageLength);
+
+        pointers.putLongOrdered(LATEST_INDEX, currentTail);
+        pointers.putLongOrdered(TAIL_INDEX, currentTail + alignedRecordLength);
+    }
+
+    private void signalTailIntent(long newTail)
+    {
+        pointers.putLongOrdered(TAIL_INTENT_INDEX, newTail);
+        MemoryAccess.storeFence();
+    }
+
+    UnsafeBuffer buffer()
+    {
+        return unsafeBuffer;
+    }
+
+    UnsafeBuffer pointers()
+    {
+        return pointers;
+    }
+}
@@ -2,6 +2,7 @@ package gc.garcol.libcore;
 
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 
 /**
@@ -39,6 +40,12 @@ public class BufferUtil
      */
     public static final VarHandle BYTE_BUFFER_OFFSET_HANDLE;
 
+    /**
+     * VarHandle for accessing the "address" field in Buffer.
+     * This field represents the memory address of a direct ByteBuffer.
+     */
+    public static final VarHandle BUFFER_ADDRESS_HANDLE;
+
     static
     {
         try
@@ -51,6 +58,10 @@ public class BufferUtil
             BYTE_BUFFER_OFFSET_HANDLE = MethodHandles.privateLookupIn(ByteBuffer.class, MethodHandles.lookup())
                 .findVarHandle(ByteBuffer.class, "offset", int.class);
 
+            // VarHandle for the "address" field in Buffer
+            BUFFER_ADDRESS_HANDLE = MethodHandles.privateLookupIn(Buffer.class, MethodHandles.lookup())
+                .findVarHandle(Buffer.class, "address", long.class);
+
         }
         catch (ReflectiveOperationException e)
         {
@@ -85,4 +96,21 @@ public class BufferUtil
     {
         return (int)BYTE_BUFFER_OFFSET_HANDLE.get(buffer);
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the memory address of the given direct ByteBuffer.
+     *
+     * @param buffer the direct ByteBuffer to extract the address from
+     * @return the memory address of the buffer
+     * @throws IllegalArgumentException if the buffer is not direct
+     */
+    public static long address(final ByteBuffer buffer)
+    {
+        if (!buffer.isDirect())
+        {
+            throw new IllegalArgumentException("buffer must be direct");
+        }
+
+        return (long)BUFFER_ADDRESS_HANDLE.get(buffer);
+    }
+}
@@ -0,0 +1,113 @@
+package gc.garcol.libcore;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * The producer and consumer sequences of a ring buffer, checkpointed in a small memory-mapped file.
+ * <p>
+ * A sequence is the number of messages written by the producer or consumed by a consumer since the start of the stream.
+ * Updating a sequence is an ordered store into the mapped page: it survives a crash of the process without any system
+ * call, and survives a crash of the machine once {@link #force()} has been called, which can be done periodically by
+ * any thread.
+ * <p>
+ * The file contains:
+ * [64 padding bytes] | producer sequence: 8 bytes |  [(64 - 8) padding bytes] | consumer sequence 1: 8 bytes | ... | [(64 - 8) padding bytes] | consumer sequence n: 8 bytes | 64 padding bytes
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class Checkpoint
+{
+    private static final int PRODUCER_SEQUENCE_INDEX = Long.BYTES * 8;
+    private static final VarHandle SEQUENCE_HANDLE = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final MappedByteBuffer mappedBuffer;
+    private final int consumerSize;
+
+    /**
+     * Constructs a Checkpoint mapping the file, which keeps the sequences it already contains.
+     *
+     * @param file         the checkpoint file, created if it does not exist
+     * @param consumerSize the number of consumers
+     */
+    public Checkpoint(Path file, int consumerSize)
+    {
+        Preconditions.checkArgument(consumerSize >= 1, "Consumer size must be greater than 0");
+        this.consumerSize = consumerSize;
+        this.mappedBuffer = Journal.map(file, Long.BYTES * 8 + Long.BYTES * 8 * (consumerSize + 1) + Long.BYTES * 8, FileChannel.MapMode.READ_WRITE);
+    }
+
+    /**
+     * @return the number of consumers
+     */
+    public int consumerSize()
+    {
+        return consumerSize;
+    }
+
+    /**
+     * @return the checkpointed producer sequence
+     */
+    public long producerSequence()
+    {
+        return (long)SEQUENCE_HANDLE.getVolatile(mappedBuffer, PRODUCER_SEQUENCE_INDEX);
+    }
+
+    /**
+     * @param sequence the number of messages written by the producer
+     */
+    public void updateProducerSequence(long sequence)
+    {
+        SEQUENCE_HANDLE.setRelease(mappedBuffer, PRODUCER_SEQUENCE_INDEX, sequence);
+    }
+
+    /**
+     * @param consumerIndex the index of the consumer
+     * @return the checkpointed sequence of the consumer
+     */
+    public long consumerSequence(int consumerIndex)
+    {
+        return (long)SEQUENCE_HANDLE.getVolatile(mappedBuffer, consumerSequenceIndex(consumerIndex));
+    }
+
+    /**
+     * @param consumerIndex the index of the consumer
+     * @param sequence      the number of messages consumed by the consumer
+     */
+    public void updateConsumerSequence(int consumerIndex, long sequence)
+    {
+        SEQUENCE_HANDLE.setRelease(mappedBuffer, consumerSequenceIndex(consumerIndex), sequence);
+    }
+
+    /**
+     * @return the lowest checkpointed consumer sequence, from which the messages must be replayed after a restart
+     */
+    public long minConsumerSequence()
+    {
+        long minSequence = Long.MAX_VALUE;
+        for (int i = 0; i < consumerSize; i++)
+        {
+            minSequence = Math.min(minSequence, consumerSequence(i));
+        }
+        return minSequence;
+    }
+
+    /**
+     * Forces the checkpointed sequences to the storage device.
+     */
+    public void force()
+    {
+        mappedBuffer.force();
+    }
+
+    private int consumerSequenceIndex(int consumerIndex)
+    {
+        Preconditions.checkArgument(consumerIndex >= 0 && consumerIndex < consumerSize, "Consumer index out of range");
+        return PRODUCER_SEQUENCE_INDEX + Long.BYTES * 8 * (consumerIndex + 1);
+    }
+}
@@ -0,0 +1,101 @@
+package gc.garcol.libcore;
+
+/**
+ * Recovers a {@link OneToManyRingBuffer} after a restart from a {@link Checkpoint} and the {@link Journal} of its stream.
+ * <p>
+ * Only the messages from the lowest checkpointed consumer sequence are replayed from the journal,
+ * and each consumer created by {@link #consumer(OneToManyRingBuffer, int)} skips the messages up to its own
+ * checkpointed sequence, so the recovery is a bounded catch-up instead of a full replay. The journal stage of the ring
+ * buffer, created by {@link #journalConsumer(OneToManyRingBuffer, int, Journal)}, consumes the replayed messages
+ * without appending them to the journal again.
+ * <p>
+ * The replay must be driven by the producer thread of the ring buffer, the consumers reading concurrently.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class CheckpointRecovery
+{
+    private final Checkpoint checkpoint;
+    private final JournalReader journalReader;
+    private final long startSequence;
+
+    /**
+     * Constructs a CheckpointRecovery positioning the journal reader at the lowest checkpointed consumer sequence.
+     *
+     * @param checkpoint    the checkpoint of the sequences
+     * @param journalReader the reader of the journal of the stream
+     */
+    public CheckpointRecovery(Checkpoint checkpoint, JournalReader journalReader)
+    {
+        this.checkpoint = checkpoint;
+        this.journalReader = journalReader;
+        this.startSequence = checkpoint.minConsumerSequence();
+
+        if (startSequence > 0)
+        {
+            // the journal may end right at the start sequence when every message has been consumed
+            boolean found = journalReader.seek(startSequence) || journalReader.sequence() == startSequence;
+            Preconditions.checkArgument(found, "Journal does not contain the message of sequence " + startSequence);
+        }
+    }
+
+    /**
+     * @return the sequence of the first message replayed into the ring buffer
+     */
+    public long startSequence()
+    {
+        return startSequence;
+    }
+
+    /**
+     * Creates the consumer resuming where the specified consumer left off.
+     *
+     * @param ringBuffer    the recovered ring buffer
+     * @param consumerIndex the index of the consumer
+     * @return the consumer
+     */
+    public CheckpointedConsumer consumer(OneToManyRingBuffer ringBuffer, int consumerIndex)
+    {
+        return new CheckpointedConsumer(ringBuffer, consumerIndex, checkpoint, startSequence);
+    }
+
+    /**
+     * Creates the journal stage resuming at the end of the journal.
+     *
+     * @param ringBuffer    the recovered ring buffer
+     * @param consumerIndex the index of the consumer
+     * @param journal       the journal of the stream, reopened for appending
+     * @return the journal consumer
+     */
+    public JournalConsumer journalConsumer(OneToManyRingBuffer ringBuffer, int consumerIndex, Journal journal)
+    {
+        return new JournalConsumer(ringBuffer, consumerIndex, journal, checkpoint, startSequence);
+    }
+
+    /**
+     * Replays messages from the journal into the ring buffer, until the ring buffer is full or the limit is reached,
+     * then checkpoints the producer sequence.
+     *
+     * @param ringBuffer the recovered ring buffer
+     * @param limit      the maximum number of messages to replay
+     * @return the number of messages replayed, 0 once the whole journal has been replayed or the ring buffer is full
+     */
+    public int replay(OneToManyRingBuffer ringBuffer, int limit)
+    {
+        int replayed = journalReader.replay(ringBuffer, limit);
+        if (replayed > 0)
+        {
+            checkpoint.updateProducerSequence(journalReader.sequence());
+        }
+        return replayed;
+    }
+
+    /**
+     * @return the sequence of the next message to replay
+     */
+    public long sequence()
+    {
+        return journalReader.sequence();
+    }
+}
@@ -0,0 +1,92 @@
+package gc.garcol.libcore;
+
+/**
+ * A consumer of a {@link OneToManyRingBuffer} checkpointing its sequence after each read.
+ * <p>
+ * The consumer first skips the messages up to its checkpointed sequence without calling the handler,
+ * so that after a restart replaying the stream from an older sequence, it resumes where it left off.
+ * The sequence is checkpointed once the handler has returned, so the messages are delivered at least once:
+ * the messages read since the last checkpoint are delivered again after a crash.
+ * <p>
+ * A checkpointed consumer must be driven by a single thread.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class CheckpointedConsumer
+{
+    private static final MessageHandler SKIP_HANDLER = (msgTypeId, buffer, index, length) -> true;
+
+    private final OneToManyRingBuffer ringBuffer;
+    private final int consumerIndex;
+    private final Checkpoint checkpoint;
+    private final long resumeSequence;
+    private long sequence;
+
+    /**
+     * Constructs a CheckpointedConsumer.
+     *
+     * @param ringBuffer    the ring buffer to read from
+     * @param consumerIndex the index of the consumer of the ring buffer and of the checkpoint
+     * @param checkpoint    the checkpoint of the sequences
+     * @param startSequence the sequence of the first message written to the ring buffer
+     */
+    public CheckpointedConsumer(OneToManyRingBuffer ringBuffer, int consumerIndex, Checkpoint checkpoint, long startSequence)
+    {
+        Preconditions.checkArgument(consumerIndex >= 0 && consumerIndex < ringBuffer.consumerSize(), "Consumer index must be between 0 and " + (ringBuffer.consumerSize() - 1));
+        Preconditions.checkArgument(ringBuffer.consumerSize() == checkpoint.consumerSize(), "Checkpoint consumer size must be equal to the ring buffer one");
+        Preconditions.checkArgument(startSequence <= checkpoint.consumerSequence(consumerIndex), "Start sequence must not be greater than the checkpointed sequence");
+
+        this.ringBuffer = ringBuffer;
+        this.consumerIndex = consumerIndex;
+        this.checkpoint = checkpoint;
+        this.resumeSequence = checkpoint.consumerSequence(consumerIndex);
+        this.sequence = startSequence;
+    }
+
+    /**
+     * @return the number of messages consumed since the start of the stream, skipped messages included
+     */
+    public long sequence()
+    {
+        return sequence;
+    }
+
+    /**
+     * Reads messages from the ring buffer.
+     *
+     * @param handler the handler to process the messages
+     * @return the number of messages read, skipped messages excluded
+     */
+    public int read(final MessageHandler handler)
+    {
+        return read(handler, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads messages from the ring buffer with a limit, then checkpoints the sequence.
+     *
+     * @param handler the handler to process the messages
+     * @param limit   the maximum number of messages to read, skipped messages excluded
+     * @return the number of messages read, skipped messages excluded
+     */
+    public int read(final MessageHandler handler, int limit)
+    {
+        if (sequence < resumeSequence)
+        {
+            sequence += ringBuffer.read(consumerIndex, SKIP_HANDLER, (int)Math.min(resumeSequence - sequence, Integer.MAX_VALUE));
+            if (sequence < resumeSequence)
+            {
+                return 0;
+            }
+        }
+
+        int read = ringBuffer.read(consumerIndex, handler, limit);
+        if (read > 0)
+        {
+            sequence += read;
+            checkpoint.updateConsumerSequence(consumerIndex, sequence);
+        }
+        return read;
+    }
+}
@@ -0,0 +1,70 @@
+package gc.garcol.libcore;
+
+import static gc.garcol.libcore.MessageCoalescer.ALIGNMENT;
+import static gc.garcol.libcore.MessageCoalescer.HEADER_LENGTH;
+
+/**
+ * Unpacks the batch records written by a {@link MessageCoalescer} into one call of the delegate handler per message.
+ * The records of other types are passed to the delegate handler as they are.
+ * <p>
+ * When the delegate handler returns false in the middle of a batch, the batch is not committed and the next read
+ * resumes with that message, the messages before it not being handled again.
+ * <p>
+ * A handler must be used by a single consumer.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class CoalescedMessageHandler implements MessageHandler
+{
+    private static final int NO_BATCH = -1;
+
+    private final int batchTypeId;
+    private final MessageHandler delegate;
+
+    private int pendingBatchIndex = NO_BATCH;
+    private int pendingMessageIndex;
+
+    /**
+     * Constructs a CoalescedMessageHandler.
+     *
+     * @param batchTypeId the type identifier of the batch records
+     * @param delegate    the handler of the unpacked messages
+     */
+    public CoalescedMessageHandler(int batchTypeId, MessageHandler delegate)
+    {
+        this.batchTypeId = batchTypeId;
+        this.delegate = delegate;
+    }
+
+    /**
+     * Passes each message of a batch record, or the message of another record, to the delegate handler.
+     *
+     * @return false if the delegate handler returned false for a message, true otherwise
+     */
+    public boolean onMessage(int msgTypeId, UnsafeBuffer buffer, int index, int length)
+    {
+        if (msgTypeId != batchTypeId)
+        {
+            return delegate.onMessage(msgTypeId, buffer, index, length);
+        }
+
+        final int endIndex = index + length;
+        int messageIndex = pendingBatchIndex == index ? pendingMessageIndex : index;
+        while (messageIndex < endIndex)
+        {
+            int messageLength = buffer.getInt(messageIndex);
+            int messageTypeId = buffer.getInt(messageIndex + Integer.BYTES);
+            if (!delegate.onMessage(messageTypeId, buffer, messageIndex + HEADER_LENGTH, messageLength))
+            {
+                pendingBatchIndex = index;
+                pendingMessageIndex = messageIndex;
+                return false;
+            }
+            messageIndex += BitUtil.align(HEADER_LENGTH + messageLength, ALIGNMENT);
+        }
+
+        pendingBatchIndex = NO_BATCH;
+        return true;
+    }
+}
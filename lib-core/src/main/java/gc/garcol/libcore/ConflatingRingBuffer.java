@@ -0,0 +1,368 @@
+package gc.garcol.libcore;
+
+import java.nio.ByteBuffer;
+
+import static gc.garcol.libcore.OneToManyRingBuffer.HEADER_LENGTH;
+import static gc.garcol.libcore.OneToManyRingBuffer.INSUFFICIENT_CAPACITY;
+import static gc.garcol.libcore.RingBufferUtil.*;
+
+/**
+ * A {@link OneToManyRingBuffer} collapsing the messages of the same key that have not been consumed yet.
+ * <p>
+ * Each record starts with the key of its message and a state. The producer keeps an open addressing index from
+ * each key to its latest record. When the latest record of a key has not been taken by the first consumer yet,
+ * a new message of the key either replaces it in place (same aligned record length) or supersedes it, in which case
+ * every consumer skips the superseded record.
+ * <p>
+ * The record state arbitrates between the producer and the first consumer with CAS:
+ * PENDING -> WRITING -> PENDING while the producer replaces a record, PENDING -> TAKEN when the first consumer
+ * reads it, PENDING -> SUPERSEDED when a newer record of the same key is written.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class ConflatingRingBuffer
+{
+    /**
+     * The length of the key header in front of each message: key: 8 bytes | state: 4 bytes | padding: 4 bytes.
+     */
+    public static final int KEY_HEADER_LENGTH = Long.BYTES * 2;
+
+    static final int PENDING = 1;
+    static final int WRITING = 2;
+    static final int TAKEN = 3;
+    static final int SUPERSEDED = 4;
+
+    private static final int STATE_OFFSET = Long.BYTES;
+    private static final int ENTRY_LENGTH = Long.BYTES * 2; // key, record position + 1
+    private static final int NO_ENTRY = -1;
+
+    private final OneToManyRingBuffer ringBuffer;
+    private final UnsafeBuffer buffer;
+    private final int capacity;
+
+    /**
+     * The key index: key: 8 bytes | (monotonic record position + 1): 8 bytes, a zero position marks an empty entry.
+     */
+    private final UnsafeBuffer index;
+    private final int indexMask;
+
+    private final ConflatingHandler[] handlers;
+
+    private long producerLap;
+    private boolean producerFlip;
+    private long conflatedMessages;
+
+    /**
+     * Constructs a ConflatingRingBuffer.
+     *
+     * @param powSize      the power of two size for the ring buffer
+     * @param consumerSize the number of consumers
+     * @param keyCapacity  the number of distinct keys pending at the same time the index is sized for
+     */
+    public ConflatingRingBuffer(int powSize, int consumerSize, int keyCapacity)
+    {
+        Preconditions.checkArgument(keyCapacity >= 1 && keyCapacity <= 1 << 26, "Key capacity must be between 1 and 2^26");
+
+        ringBuffer = new OneToManyRingBuffer(powSize, consumerSize);
+        buffer = ringBuffer.buffer();
+        capacity = ringBuffer.capacity();
+
+        int indexSize = 1 << (32 - Integer.numberOfLeadingZeros(keyCapacity * 2 - 1));
+        index = new UnsafeBuffer(indexSize * ENTRY_LENGTH);
+        indexMask = indexSize - 1;
+
+        handlers = new ConflatingHandler[consumerSize];
+        for (int i = 0; i < consumerSize; i++)
+        {
+            handlers[i] = new ConflatingHandler(i == 0);
+        }
+    }
+
+    /**
+     * @return the number of messages that replaced or superseded a pending message of the same key
+     */
+    public long conflatedMessages()
+    {
+        return conflatedMessages;
+    }
+
+    /**
+     * Gets the key of a message delivered by this ring buffer.
+     *
+     * @param buffer the buffer passed to the handler
+     * @param index  the index passed to the handler
+     * @return the key of the message
+     */
+    public static long key(UnsafeBuffer buffer, int index)
+    {
+        return buffer.getLong(index - KEY_HEADER_LENGTH);
+    }
+
+    /**
+     * Writes a message of the specified key, collapsing it with the pending message of the same key if any.
+     *
+     * @param key       the key of the message
+     * @param msgTypeId the type identifier of the message
+     * @param message   the message to write, the limit must be equal to the message length
+     * @return true if the message was written successfully, false otherwise
+     */
+    public boolean write(long key, int msgTypeId, ByteBuffer message)
+    {
+        final int messageLength = message.limit();
+        final int recordLength = KEY_HEADER_LENGTH + messageLength;
+        final int entryIndex = entryIndex(key);
+
+        long pendingPosition = NO_ENTRY;
+        if (entryIndex != NO_ENTRY && index.getLong(entryIndex) == key)
+        {
+            long recordPosition = index.getLong(entryIndex + Long.BYTES) - 1;
+            if (recordPosition >= firstConsumerPosition())
+            {
+                pendingPosition = recordPosition;
+            }
+        }
+
+        if (pendingPosition != NO_ENTRY && replace((int)(pendingPosition & (capacity - 1)), msgTypeId, message, messageLength))
+        {
+            conflatedMessages++;
+            return true;
+        }
+
+        int messageIndex = ringBuffer.tryClaim(msgTypeId, recordLength);
+        if (messageIndex == INSUFFICIENT_CAPACITY)
+        {
+            return false;
+        }
+
+        buffer.putLong(messageIndex, key);
+        buffer.putInt(messageIndex + STATE_OFFSET, PENDING);
+        buffer.putBytes(messageIndex + KEY_HEADER_LENGTH, message, 0, messageLength);
+
+        if (pendingPosition != NO_ENTRY)
+        {
+            int pendingStateIndex = (int)(pendingPosition & (capacity - 1)) + HEADER_LENGTH + STATE_OFFSET;
+            if (buffer.compareAndSetInt(pendingStateIndex, PENDING, SUPERSEDED))
+            {
+                conflatedMessages++;
+            }
+        }
+
+        ringBuffer.commit();
+
+        long producerPosition = ringBuffer.producerPosition();
+        if (flip(producerPosition) != producerFlip)
+        {
+            producerFlip = !producerFlip;
+            producerLap++;
+        }
+
+        if (entryIndex != NO_ENTRY)
+        {
+            long recordPosition = producerLap * capacity + offset(producerPosition) - OneToManyRingBuffer.alignedRecordLength(recordLength);
+            index.putLong(entryIndex, key);
+            index.putLong(entryIndex + Long.BYTES, recordPosition + 1);
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads messages from the ring buffer for the specified consumer, skipping the superseded ones.
+     *
+     * @param consumerIndex the index of the consumer
+     * @param handler       the handler to process the messages
+     * @return the number of messages read
+     */
+    public int read(int consumerIndex, final MessageHandler handler)
+    {
+        return read(consumerIndex, handler, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads messages from the ring buffer for the specified consumer with a limit, skipping the superseded ones.
+     *
+     * @param consumerIndex the index of the consumer
+     * @param handler       the handler to process the messages
+     * @param limit         the maximum number of messages to read
+     * @return the number of messages read
+     */
+    public int read(int consumerIndex, final MessageHandler handler, int limit)
+    {
+        final ConflatingHandler conflatingHandler = handlers[consumerIndex];
+        conflatingHandler.delegate = handler;
+
+        int read = 0;
+        while (read < limit && ringBuffer.readOne(consumerIndex, conflatingHandler))
+        {
+            if (conflatingHandler.delivered)
+            {
+                read++;
+            }
+        }
+
+        conflatingHandler.delegate = null;
+        return read;
+    }
+
+    private boolean replace(int recordOffset, int msgTypeId, ByteBuffer message, int messageLength)
+    {
+        final int stateIndex = recordOffset + HEADER_LENGTH + STATE_OFFSET;
+        final int recordLength = KEY_HEADER_LENGTH + messageLength;
+
+        if (OneToManyRingBuffer.alignedRecordLength(buffer.getInt(recordOffset)) != OneToManyRingBuffer.alignedRecordLength(recordLength) ||
+            !buffer.compareAndSetInt(stateIndex, PENDING, WRITING))
+        {
+            return false;
+        }
+
+        buffer.putInt(recordOffset, recordLength);
+        buffer.putInt(recordOffset + Integer.BYTES, msgTypeId);
+        buffer.putBytes(recordOffset + HEADER_LENGTH + KEY_HEADER_LENGTH, message, 0, messageLength);
+        buffer.putIntVolatile(stateIndex, PENDING);
+
+        return true;
+    }
+
+    /**
+     * The monotonic position of the first consumer, which is at most one lap behind the producer.
+     */
+    private long firstConsumerPosition()
+    {
+        long consumerPosition = ringBuffer.consumerPosition(0);
+        long consumerLap = flip(consumerPosition) == producerFlip ? producerLap : producerLap - 1;
+        return consumerLap * capacity + offset(consumerPosition);
+    }
+
+    /**
+     * Finds the entry of the key, or else an empty entry. The entries of the records the first consumer has taken
+     * are removed on the way, so that the probe sequences only span the keys still pending.
+     *
+     * @return the entry index, or {@link #NO_ENTRY} if the index is full of pending keys
+     */
+    private int entryIndex(long key)
+    {
+        final long firstConsumerPosition = firstConsumerPosition();
+        int slot = slot(key);
+
+        for (int probes = 0; probes <= indexMask; )
+        {
+            int entryIndex = slot * ENTRY_LENGTH;
+            long recordPosition = index.getLong(entryIndex + Long.BYTES) - 1;
+            if (recordPosition < 0 || index.getLong(entryIndex) == key)
+            {
+                return entryIndex;
+            }
+
+            if (recordPosition < firstConsumerPosition)
+            {
+                // the next entries of the cluster are shifted back, the slot is probed again
+                removeEntry(slot);
+                continue;
+            }
+            slot = (slot + 1) & indexMask;
+            probes++;
+        }
+
+        return NO_ENTRY;
+    }
+
+    /**
+     * Removes an entry with backward shift deletion: each following entry of the cluster moves into the hole
+     * unless the hole is before its home slot, so no probe sequence is broken and no tombstone is left.
+     */
+    private void removeEntry(int slot)
+    {
+        int hole = slot;
+        clearEntry(hole);
+
+        // the hole is empty, a full index stops there after wrapping around
+        int next = (hole + 1) & indexMask;
+        while (index.getLong(next * ENTRY_LENGTH + Long.BYTES) != 0)
+        {
+            int home = slot(index.getLong(next * ENTRY_LENGTH));
+            if (((next - home) & indexMask) >= ((next - hole) & indexMask))
+            {
+                index.putLong(hole * ENTRY_LENGTH, index.getLong(next * ENTRY_LENGTH));
+                index.putLong(hole * ENTRY_LENGTH + Long.BYTES, index.getLong(next * ENTRY_LENGTH + Long.BYTES));
+                clearEntry(next);
+                hole = next;
+            }
+            next = (next + 1) & indexMask;
+        }
+    }
+
+    private void clearEntry(int slot)
+    {
+        index.putLong(slot * ENTRY_LENGTH, 0);
+        index.putLong(slot * ENTRY_LENGTH + Long.BYTES, 0);
+    }
+
+    /**
+     * @return the number of entries probed from the home slot of the key to find it, or else an empty entry
+     */
+    int probeLength(long key)
+    {
+        int slot = slot(key);
+        int probes = 1;
+        while (probes <= indexMask && index.getLong(slot * ENTRY_LENGTH + Long.BYTES) != 0 && index.getLong(slot * ENTRY_LENGTH) != key)
+        {
+            slot = (slot + 1) & indexMask;
+            probes++;
+        }
+        return probes;
+    }
+
+    private int slot(long key)
+    {
+        return (int)((key * 0x9E3779B97F4A7C15L) >>> 32) & indexMask;
+    }
+
+    private static final class ConflatingHandler implements MessageHandler
+    {
+        private final boolean firstConsumer;
+        private MessageHandler delegate;
+        private boolean delivered;
+
+        private ConflatingHandler(boolean firstConsumer)
+        {
+            this.firstConsumer = firstConsumer;
+        }
+
+        public boolean onMessage(int msgTypeId, UnsafeBuffer buffer, int index, int length)
+        {
+            final int stateIndex = index + STATE_OFFSET;
+            delivered = false;
+
+            int state;
+            if (firstConsumer)
+            {
+                do
+                {
+                    state = buffer.getIntVolatile(stateIndex);
+                    if (state == WRITING)
+                    {
+                        return false;
+                    }
+                }
+                while (state == PENDING && !buffer.compareAndSetInt(stateIndex, PENDING, TAKEN));
+            }
+            else
+            {
+                state = buffer.getIntVolatile(stateIndex);
+            }
+
+            if (state == SUPERSEDED)
+            {
+                return true;
+            }
+
+            // the message may have been replaced in place before being taken
+            int messageLength = buffer.getInt(index - HEADER_LENGTH) - KEY_HEADER_LENGTH;
+            int messageTypeId = buffer.getInt(index - HEADER_LENGTH + Integer.BYTES);
+
+            delivered = delegate.onMessage(messageTypeId, buffer, index + KEY_HEADER_LENGTH, messageLength);
+            return delivered;
+        }
+    }
+}
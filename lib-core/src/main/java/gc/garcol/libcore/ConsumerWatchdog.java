@@ -0,0 +1,156 @@
+package gc.garcol.libcore;
+
+/**
+ * Watches the consumers of a {@link OneToManyRingBuffer} and raises alarms for the slow ones, so that a slow consumer
+ * is noticed before it blocks the producer.
+ * <p>
+ * Each poll samples the position of every consumer: a consumer is lagging when the bytes published and not consumed
+ * yet reach the maximum lag, and stalled when it has not moved for the maximum stall time while messages are available
+ * to it. Each alarm is counted and reported to the listener once per episode.
+ * A stalled consumer marked as {@link #evictable(int)} is evicted from the ring buffer,
+ * see {@link OneToManyRingBuffer#evict(int)}, so that the producer and the other consumers keep flowing without it.
+ * <p>
+ * A watchdog must be polled by a single thread, usually apart from the producer and the consumers.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class ConsumerWatchdog
+{
+    private final OneToManyRingBuffer ringBuffer;
+    private final long maxLag;
+    private final long maxStallNs;
+    private final WatchdogListener listener;
+
+    private final boolean[] evictable;
+    private final long[] positions;
+    private final long[] progressNs;
+    private final boolean[] lagging;
+    private final boolean[] stalled;
+    private final long[] lagAlarms;
+    private final long[] stallAlarms;
+
+    private boolean started;
+
+    /**
+     * Constructs a ConsumerWatchdog.
+     *
+     * @param ringBuffer the ring buffer to watch
+     * @param maxLag     the number of bytes not consumed yet from which a consumer is lagging, {@link Long#MAX_VALUE} for none
+     * @param maxStallNs the time without progress from which a consumer is stalled
+     * @param listener   the listener of the alarms
+     */
+    public ConsumerWatchdog(OneToManyRingBuffer ringBuffer, long maxLag, long maxStallNs, WatchdogListener listener)
+    {
+        Preconditions.checkArgument(maxLag > 0, "Max lag must be greater than 0");
+        Preconditions.checkArgument(maxStallNs > 0, "Max stall time must be greater than 0");
+
+        this.ringBuffer = ringBuffer;
+        this.maxLag = maxLag;
+        this.maxStallNs = maxStallNs;
+        this.listener = listener;
+
+        final int consumerSize = ringBuffer.consumerSize();
+        this.evictable = new boolean[consumerSize];
+        this.positions = new long[consumerSize];
+        this.progressNs = new long[consumerSize];
+        this.lagging = new boolean[consumerSize];
+        this.stalled = new boolean[consumerSize];
+        this.lagAlarms = new long[consumerSize];
+        this.stallAlarms = new long[consumerSize];
+    }
+
+    /**
+     * Marks a non-critical consumer to be evicted from the ring buffer once stalled.
+     *
+     * @param consumerIndex the index of the consumer, see {@link OneToManyRingBuffer#isEvictable(int)}
+     * @return this watchdog
+     */
+    public ConsumerWatchdog evictable(int consumerIndex)
+    {
+        Preconditions.checkArgument(ringBuffer.isEvictable(consumerIndex), "Consumer " + consumerIndex + " can not be evicted");
+        evictable[consumerIndex] = true;
+        return this;
+    }
+
+    /**
+     * Samples the consumers, raising the alarms and evicting the stalled evictable consumers.
+     *
+     * @param nowNs the current time in nanoseconds
+     * @return the number of alarms raised
+     */
+    public int poll(long nowNs)
+    {
+        int alarms = 0;
+
+        for (int i = 0; i < positions.length; i++)
+        {
+            if (ringBuffer.isEvicted(i))
+            {
+                continue;
+            }
+
+            final long position = ringBuffer.consumerPosition(i);
+            if (!started || position != positions[i] || position == ringBuffer.barrierPosition(i))
+            {
+                // moving or idle
+                positions[i] = position;
+                progressNs[i] = nowNs;
+                stalled[i] = false;
+            }
+            else if (!stalled[i] && nowNs - progressNs[i] >= maxStallNs)
+            {
+                stalled[i] = true;
+                stallAlarms[i]++;
+                alarms++;
+                listener.onStall(i, nowNs - progressNs[i]);
+
+                if (evictable[i])
+                {
+                    ringBuffer.evict(i);
+                    listener.onEviction(i);
+                    // the following consumers may only now have messages available
+                    for (int j = i + 1; j < positions.length; j++)
+                    {
+                        progressNs[j] = nowNs;
+                    }
+                    continue;
+                }
+            }
+
+            final long lag = ringBuffer.lag(i);
+            if (lag < maxLag)
+            {
+                lagging[i] = false;
+            }
+            else if (!lagging[i])
+            {
+                lagging[i] = true;
+                lagAlarms[i]++;
+                alarms++;
+                listener.onLag(i, lag);
+            }
+        }
+
+        started = true;
+        return alarms;
+    }
+
+    /**
+     * @param consumerIndex the index of the consumer
+     * @return the number of lag alarms raised for the consumer
+     */
+    public long lagAlarms(int consumerIndex)
+    {
+        return lagAlarms[consumerIndex];
+    }
+
+    /**
+     * @param consumerIndex the index of the consumer
+     * @return the number of stall alarms raised for the consumer
+     */
+    public long stallAlarms(int consumerIndex)
+    {
+        return stallAlarms[consumerIndex];
+    }
+}
@@ -0,0 +1,63 @@
+package gc.garcol.libcore;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Strategy of a thread polling for work, e.g. a consumer of a ring buffer, when a poll found nothing to do.
+ * The strategies are stateless, so one of them can be shared between threads.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+@FunctionalInterface
+public interface IdleStrategy
+{
+
+    /**
+     * Called after each poll.
+     *
+     * @param workCount the amount of work done by the poll, e.g. the number of messages read, 0 to idle
+     */
+    void idle(int workCount);
+
+    /**
+     * @return the strategy spinning on {@link Thread#onSpinWait()}, for the lowest latency at the cost of a busy core
+     */
+    static IdleStrategy busySpin()
+    {
+        return workCount -> {
+            if (workCount == 0)
+            {
+                Thread.onSpinWait();
+            }
+        };
+    }
+
+    /**
+     * @return the strategy yielding the core to the other threads
+     */
+    static IdleStrategy yielding()
+    {
+        return workCount -> {
+            if (workCount == 0)
+            {
+                Thread.yield();
+            }
+        };
+    }
+
+    /**
+     * @param sleepNs the time to sleep for
+     * @return the strategy parking the thread, for the lowest CPU usage at the cost of latency
+     */
+    static IdleStrategy sleeping(long sleepNs)
+    {
+        Preconditions.checkArgument(sleepNs > 0, "Sleep time must be greater than 0");
+        return workCount -> {
+            if (workCount == 0)
+            {
+                LockSupport.parkNanos(sleepNs);
+            }
+        };
+    }
+}
@@ -0,0 +1,322 @@
+package gc.garcol.libcore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+/**
+ * An append only journal of messages stored in pre-allocated, memory-mapped segment files.
+ * <p>
+ * Each segment file is named after the sequence of its first message and holds records aligned to {@link #ALIGNMENT}:
+ * record length: 4 bytes | type: 4 bytes | message. A zero record length marks the end of the segment.
+ * When a record does not fit in the current segment, the journal rolls to a new one.
+ * Next to each segment, a sparse index file holds the offset of one record every index interval messages.
+ * <p>
+ * Appended records are made durable according to the {@link FsyncPolicy} at the end of each batch.
+ * The pages of a segment file are faulted in on their first write, unless the journal pre-touches each segment
+ * when it is opened: the unwritten part of the segment is then zeroed page by page up front.
+ * A journal opened on a directory which already contains segments appends after the last record.
+ * A journal must be driven by a single thread, see {@link JournalConsumer} to journal the records of a ring buffer.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class Journal implements AutoCloseable
+{
+    /**
+     * When the appended records are forced to the storage device.
+     */
+    public enum FsyncPolicy
+    {
+        /**
+         * At the end of each batch.
+         */
+        BATCH,
+
+        /**
+         * At the end of the first batch after the fsync interval has elapsed.
+         */
+        PERIODIC,
+
+        /**
+         * Never explicitly, the operating system writes the pages back on its own.
+         */
+        NONE
+    }
+
+    /**
+     * The length of the header in bytes.
+     * The header contains the record length and the type of the message.
+     */
+    public static final int HEADER_LENGTH = Integer.BYTES * 2; // record length, type
+
+    /**
+     * Alignment as a multiple of bytes for each record.
+     */
+    public static final int ALIGNMENT = Long.BYTES;
+
+    static final String SEGMENT_SUFFIX = ".journal";
+    static final String INDEX_SUFFIX = ".index";
+
+    private final Path directory;
+    private final int segmentLength;
+    private final int indexInterval;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNs;
+    private final int preTouchParallelism;
+
+    private MappedByteBuffer segment;
+    private MappedByteBuffer index;
+    private long segmentSequence;
+    private long sequence;
+    private int position;
+    private int forcedPosition;
+    private long lastForceNs;
+
+    /**
+     * Constructs a Journal with an index entry every 64 messages.
+     *
+     * @param directory     the directory of the segment files
+     * @param segmentLength the length of each segment file in bytes
+     * @param fsyncPolicy   when the appended records are forced to the storage device
+     */
+    public Journal(Path directory, int segmentLength, FsyncPolicy fsyncPolicy)
+    {
+        this(directory, segmentLength, 64, fsyncPolicy, 0);
+    }
+
+    /**
+     * Constructs a Journal.
+     *
+     * @param directory       the directory of the segment files
+     * @param segmentLength   the length of each segment file in bytes
+     * @param indexInterval   the number of messages between two index entries
+     * @param fsyncPolicy     when the appended records are forced to the storage device
+     * @param fsyncIntervalNs the minimum interval between two forces with the {@link FsyncPolicy#PERIODIC} policy
+     */
+    public Journal(Path directory, int segmentLength, int indexInterval, FsyncPolicy fsyncPolicy, long fsyncIntervalNs)
+    {
+        this(directory, segmentLength, indexInterval, fsyncPolicy, fsyncIntervalNs, 0);
+    }
+
+    /**
+     * Constructs a Journal.
+     *
+     * @param directory           the directory of the segment files
+     * @param segmentLength       the length of each segment file in bytes
+     * @param indexInterval       the number of messages between two index entries
+     * @param fsyncPolicy         when the appended records are forced to the storage device
+     * @param fsyncIntervalNs     the minimum interval between two forces with the {@link FsyncPolicy#PERIODIC} policy
+     * @param preTouchParallelism the maximum number of threads pre-touching each opened segment, 0 to not pre-touch
+     */
+    public Journal(Path directory, int segmentLength, int indexInterval, FsyncPolicy fsyncPolicy, long fsyncIntervalNs, int preTouchParallelism)
+    {
+        Preconditions.checkArgument(segmentLength >= 1 << 10, "Segment length must be greater than 1024");
+        Preconditions.checkArgument(segmentLength % ALIGNMENT == 0, "Segment length must be a multiple of " + ALIGNMENT);
+        Preconditions.checkArgument(indexInterval >= 1, "Index interval must be greater than 0");
+        Preconditions.checkArgument(fsyncIntervalNs >= 0, "Fsync interval must not be negative");
+        Preconditions.checkArgument(preTouchParallelism >= 0, "Pre-touch parallelism must not be negative");
+
+        this.directory = directory;
+        this.segmentLength = segmentLength;
+        this.indexInterval = indexInterval;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNs = fsyncIntervalNs;
+        this.preTouchParallelism = preTouchParallelism;
+
+        try
+        {
+            Files.createDirectories(directory);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+
+        long[] segmentSequences = segmentSequences(directory);
+        if (segmentSequences.length == 0)
+        {
+            openSegment(0);
+            preTouch();
+            return;
+        }
+
+        openSegment(segmentSequences[segmentSequences.length - 1]);
+        int recordLength;
+        while (position + HEADER_LENGTH <= segmentLength && (recordLength = segment.getInt(position)) != 0)
+        {
+            position += BitUtil.align(recordLength, ALIGNMENT);
+            sequence++;
+        }
+        forcedPosition = position;
+        preTouch();
+    }
+
+    /**
+     * @return the sequence of the next appended message, which is the number of journaled messages
+     */
+    public long sequence()
+    {
+        return sequence;
+    }
+
+    /**
+     * Appends a message to the journal, rolling to a new segment if it does not fit in the current one.
+     *
+     * @param msgTypeId the type identifier of the message
+     * @param buffer    the buffer containing the message
+     * @param index     the starting index of the message in the buffer
+     * @param length    the length of the message in the buffer
+     */
+    public void append(int msgTypeId, UnsafeBuffer buffer, int index, int length)
+    {
+        final int recordLength = HEADER_LENGTH + length;
+        final int alignedRecordLength = BitUtil.align(recordLength, ALIGNMENT);
+        Preconditions.checkArgument(alignedRecordLength <= segmentLength, "Message length must not be greater than " + (segmentLength - HEADER_LENGTH));
+
+        if (position + alignedRecordLength > segmentLength)
+        {
+            roll();
+        }
+
+        long relativeSequence = sequence - segmentSequence;
+        if (relativeSequence > 0 && relativeSequence % indexInterval == 0)
+        {
+            this.index.putInt((int)(relativeSequence / indexInterval) * Integer.BYTES, position);
+        }
+
+        segment.putInt(position + Integer.BYTES, msgTypeId);
+        buffer.getBytes(index, segment, position + HEADER_LENGTH, length);
+        // the record length is written last, a record is complete once its length is set
+        segment.putInt(position, recordLength);
+
+        position += alignedRecordLength;
+        sequence++;
+    }
+
+    /**
+     * Ends a batch of appended messages, forcing them to the storage device according to the fsync policy.
+     */
+    public void endBatch()
+    {
+        if (fsyncPolicy == FsyncPolicy.BATCH || fsyncPolicy == FsyncPolicy.PERIODIC && System.nanoTime() - lastForceNs >= fsyncIntervalNs)
+        {
+            force();
+        }
+    }
+
+    /**
+     * Forces the records appended since the last force to the storage device.
+     */
+    public void force()
+    {
+        if (position > forcedPosition)
+        {
+            segment.force(forcedPosition, position - forcedPosition);
+            index.force();
+            forcedPosition = position;
+        }
+        lastForceNs = System.nanoTime();
+    }
+
+    /**
+     * Forces the appended records unless the fsync policy is {@link FsyncPolicy#NONE}.
+     * The mapped segments are released by the garbage collector.
+     */
+    public void close()
+    {
+        if (fsyncPolicy != FsyncPolicy.NONE)
+        {
+            force();
+        }
+    }
+
+    private void roll()
+    {
+        if (fsyncPolicy != FsyncPolicy.NONE)
+        {
+            force();
+        }
+        openSegment(sequence);
+        preTouch();
+    }
+
+    /**
+     * Zeroes the unwritten part of the current segment page by page, the bytes after the position being zero already.
+     */
+    private void preTouch()
+    {
+        if (preTouchParallelism > 0)
+        {
+            final MappedByteBuffer segment = this.segment;
+            PreTouch.preTouch(position, segmentLength, preTouchParallelism, index -> segment.put(index, (byte)0));
+        }
+    }
+
+    private void openSegment(long firstSequence)
+    {
+        int indexLength = (segmentLength / ALIGNMENT / indexInterval + 1) * Integer.BYTES;
+        segment = map(segmentPath(directory, firstSequence), segmentLength, FileChannel.MapMode.READ_WRITE);
+        index = map(indexPath(directory, firstSequence), indexLength, FileChannel.MapMode.READ_WRITE);
+        segmentSequence = firstSequence;
+        sequence = firstSequence;
+        position = 0;
+        forcedPosition = 0;
+    }
+
+    /**
+     * Maps a file, which is created and extended to the length when mapped for writing.
+     */
+    static MappedByteBuffer map(Path path, int length, FileChannel.MapMode mode)
+    {
+        final boolean readOnly = mode == FileChannel.MapMode.READ_ONLY;
+        try (FileChannel channel = readOnly
+            ? FileChannel.open(path, StandardOpenOption.READ)
+            : FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            MappedByteBuffer buffer = channel.map(mode, 0, length);
+            buffer.order(ByteOrder.nativeOrder());
+            return buffer;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static Path segmentPath(Path directory, long firstSequence)
+    {
+        return directory.resolve(String.format("%020d", firstSequence) + SEGMENT_SUFFIX);
+    }
+
+    static Path indexPath(Path directory, long firstSequence)
+    {
+        return directory.resolve(String.format("%020d", firstSequence) + INDEX_SUFFIX);
+    }
+
+    /**
+     * @return the sequences of the first messages of the segments in the directory, in ascending order
+     */
+    static long[] segmentSequences(Path directory)
+    {
+        try (Stream<Path> paths = Files.list(directory))
+        {
+            return paths
+                .map(path -> path.getFileName().toString())
+                .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                .mapToLong(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                .sorted()
+                .toArray();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package gc.garcol.libcore;
+
+import static gc.garcol.libcore.OneToManyRingBuffer.HEADER_LENGTH;
+import static gc.garcol.libcore.OneToManyRingBuffer.NO_RECORD;
+import static gc.garcol.libcore.RingBufferUtil.offset;
+
+/**
+ * A consumer of a {@link OneToManyRingBuffer} appending the records to a {@link Journal} in batches.
+ * <p>
+ * The records of a batch are copied from the ring buffer into the mapped segment, the batch is ended according to the
+ * fsync policy of the journal, then the consumer position is committed once for the whole batch.
+ * So with the {@link Journal.FsyncPolicy#BATCH} policy, the following consumers only see journaled records
+ * once they are durable.
+ * <p>
+ * With a {@link Checkpoint}, the journal sequence is checkpointed as the producer sequence and the sequence of the
+ * consumer at the end of each batch. After a restart, the ring buffer is replayed from an older sequence by
+ * {@link CheckpointRecovery}, and the records already in the journal are consumed without being appended again.
+ * <p>
+ * A journal consumer must be driven by a single thread.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class JournalConsumer
+{
+    private final OneToManyRingBuffer ringBuffer;
+    private final int consumerIndex;
+    private final Journal journal;
+    private final UnsafeBuffer buffer;
+    private final Checkpoint checkpoint;
+    private long sequence;
+
+    /**
+     * Constructs a JournalConsumer appending every record of the ring buffer, without checkpoint.
+     *
+     * @param ringBuffer    the ring buffer to journal
+     * @param consumerIndex the index of the consumer of the ring buffer
+     * @param journal       the journal to append the records to
+     */
+    public JournalConsumer(OneToManyRingBuffer ringBuffer, int consumerIndex, Journal journal)
+    {
+        this(ringBuffer, consumerIndex, journal, null, journal.sequence());
+    }
+
+    /**
+     * Constructs a JournalConsumer checkpointing the journal sequence at the end of each batch.
+     *
+     * @param ringBuffer    the ring buffer to journal
+     * @param consumerIndex the index of the consumer of the ring buffer and of the checkpoint
+     * @param journal       the journal to append the records to
+     * @param checkpoint    the checkpoint of the sequences, or null
+     * @param startSequence the sequence of the first message written to the ring buffer
+     */
+    public JournalConsumer(OneToManyRingBuffer ringBuffer, int consumerIndex, Journal journal, Checkpoint checkpoint, long startSequence)
+    {
+        Preconditions.checkArgument(consumerIndex >= 0 && consumerIndex < ringBuffer.consumerSize(), "Consumer index must be between 0 and " + (ringBuffer.consumerSize() - 1));
+        Preconditions.checkArgument(checkpoint == null || ringBuffer.consumerSize() == checkpoint.consumerSize(), "Checkpoint consumer size must be equal to the ring buffer one");
+        Preconditions.checkArgument(startSequence <= journal.sequence(), "Start sequence must not be greater than the journal sequence");
+
+        this.ringBuffer = ringBuffer;
+        this.consumerIndex = consumerIndex;
+        this.journal = journal;
+        this.buffer = ringBuffer.buffer();
+        this.checkpoint = checkpoint;
+        this.sequence = startSequence;
+    }
+
+    /**
+     * @return the number of records consumed since the start of the stream, records already journaled included
+     */
+    public long sequence()
+    {
+        return sequence;
+    }
+
+    /**
+     * Journals the available records as one batch.
+     *
+     * @return the number of records journaled
+     */
+    public int journal()
+    {
+        return journal(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Journals the available records as one batch, with a limit.
+     * The records already in the journal, replayed after a restart, are consumed without being appended.
+     *
+     * @param limit the maximum number of records to journal, records already journaled excluded
+     * @return the number of records journaled, records already journaled excluded
+     */
+    public int journal(int limit)
+    {
+        final long startPosition = ringBuffer.consumerPosition(consumerIndex);
+        long position = startPosition;
+        int journaled = 0;
+
+        while (journaled < limit)
+        {
+            long recordPosition = ringBuffer.recordPosition(consumerIndex, position);
+            if (recordPosition == NO_RECORD)
+            {
+                break;
+            }
+
+            if (sequence >= journal.sequence())
+            {
+                int recordOffset = offset(recordPosition);
+                int messageLength = buffer.getInt(recordOffset);
+                int messageTypeId = buffer.getInt(recordOffset + Integer.BYTES);
+                journal.append(messageTypeId, buffer, recordOffset + HEADER_LENGTH, messageLength);
+                journaled++;
+            }
+
+            position = ringBuffer.nextPosition(recordPosition);
+            sequence++;
+        }
+
+        if (position != startPosition)
+        {
+            if (journaled > 0)
+            {
+                journal.endBatch();
+            }
+            ringBuffer.commitConsumed(consumerIndex, startPosition, position);
+
+            if (checkpoint != null)
+            {
+                // the records are checkpointed once journaled, the replay after a restart starts at most from them
+                checkpoint.updateProducerSequence(journal.sequence());
+                checkpoint.updateConsumerSequence(consumerIndex, sequence);
+            }
+        }
+
+        return journaled;
+    }
+}
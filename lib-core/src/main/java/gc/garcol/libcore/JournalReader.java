@@ -0,0 +1,251 @@
+package gc.garcol.libcore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static gc.garcol.libcore.Journal.ALIGNMENT;
+import static gc.garcol.libcore.Journal.HEADER_LENGTH;
+import static gc.garcol.libcore.OneToManyRingBuffer.INSUFFICIENT_CAPACITY;
+
+/**
+ * Reads the messages of a {@link Journal} in order, from its first message or from any sequence with {@link #seek(long)}.
+ * <p>
+ * The messages can be replayed into a {@link OneToManyRingBuffer} at startup with {@link #replay(OneToManyRingBuffer, int)},
+ * which copies them from the mapped segments straight into the claimed records of the ring buffer.
+ * <p>
+ * A reader must be driven by a single thread, and is not meant to read a journal being appended to.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class JournalReader
+{
+    private final Path directory;
+    private final int indexInterval;
+
+    private UnsafeBuffer scratchBuffer;
+    private long[] segmentSequences;
+    private int segmentIndex;
+    private MappedByteBuffer segment;
+    private int segmentLength;
+    private long sequence;
+    private int position;
+
+    /**
+     * Constructs a JournalReader starting at the first message of the journal, with an index entry every 64 messages.
+     *
+     * @param directory the directory of the segment files
+     */
+    public JournalReader(Path directory)
+    {
+        this(directory, 64);
+    }
+
+    /**
+     * Constructs a JournalReader starting at the first message of the journal.
+     *
+     * @param directory     the directory of the segment files
+     * @param indexInterval the number of messages between two index entries the journal has been written with
+     */
+    public JournalReader(Path directory, int indexInterval)
+    {
+        Preconditions.checkArgument(indexInterval >= 1, "Index interval must be greater than 0");
+        this.directory = directory;
+        this.indexInterval = indexInterval;
+        this.segmentSequences = Journal.segmentSequences(directory);
+        if (segmentSequences.length > 0)
+        {
+            openSegment(0);
+        }
+    }
+
+    /**
+     * @return the sequence of the next message to read
+     */
+    public long sequence()
+    {
+        return sequence;
+    }
+
+    /**
+     * Moves the reader to the message of the specified sequence, using the index of its segment.
+     *
+     * @param sequence the sequence of the next message to read
+     * @return true if the journal contains the message, false otherwise
+     */
+    public boolean seek(long sequence)
+    {
+        segmentSequences = Journal.segmentSequences(directory);
+        int index = segmentSequences.length - 1;
+        while (index >= 0 && segmentSequences[index] > sequence)
+        {
+            index--;
+        }
+        if (index < 0)
+        {
+            return false;
+        }
+
+        openSegment(index);
+        long relativeSequence = sequence - this.sequence;
+        long entry = relativeSequence / indexInterval;
+        int indexedPosition = 0;
+        Path indexPath = Journal.indexPath(directory, this.sequence);
+        if (entry > 0 && Files.exists(indexPath) && (entry + 1) * Integer.BYTES <= fileSize(indexPath))
+        {
+            MappedByteBuffer indexBuffer = Journal.map(indexPath, (int)fileSize(indexPath), FileChannel.MapMode.READ_ONLY);
+            indexedPosition = indexBuffer.getInt((int)entry * Integer.BYTES);
+        }
+        if (indexedPosition > 0)
+        {
+            position = indexedPosition;
+            this.sequence += entry * indexInterval;
+        }
+
+        while (this.sequence < sequence)
+        {
+            int recordLength = recordLength();
+            if (recordLength == 0)
+            {
+                return false;
+            }
+            position += BitUtil.align(recordLength, ALIGNMENT);
+            this.sequence++;
+        }
+        return recordLength() != 0 || nextSegment();
+    }
+
+    /**
+     * Reads messages from the journal.
+     *
+     * @param handler the handler to process the messages
+     * @return the number of messages read
+     */
+    public int read(final MessageHandler handler)
+    {
+        return read(handler, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads messages from the journal with a limit.
+     *
+     * @param handler the handler to process the messages, the buffer is a scratch copy starting at index 0
+     * @param limit   the maximum number of messages to read
+     * @return the number of messages read
+     */
+    public int read(final MessageHandler handler, int limit)
+    {
+        int read = 0;
+        int recordLength;
+        while (read < limit && (recordLength = nextRecordLength()) != 0)
+        {
+            int messageLength = recordLength - HEADER_LENGTH;
+            int messageTypeId = segment.getInt(position + Integer.BYTES);
+            scratchBuffer.putBytes(0, segment, position + HEADER_LENGTH, messageLength);
+            if (!handler.onMessage(messageTypeId, scratchBuffer, 0, messageLength))
+            {
+                break;
+            }
+
+            position += BitUtil.align(recordLength, ALIGNMENT);
+            sequence++;
+            read++;
+        }
+        return read;
+    }
+
+    /**
+     * Replays messages from the journal into a ring buffer, until the ring buffer is full or the limit is reached.
+     *
+     * @param ringBuffer the ring buffer to write the messages to
+     * @param limit      the maximum number of messages to replay
+     * @return the number of messages replayed
+     */
+    public int replay(OneToManyRingBuffer ringBuffer, int limit)
+    {
+        final UnsafeBuffer buffer = ringBuffer.buffer();
+        int replayed = 0;
+        int recordLength;
+        while (replayed < limit && (recordLength = nextRecordLength()) != 0)
+        {
+            int messageLength = recordLength - HEADER_LENGTH;
+            int messageTypeId = segment.getInt(position + Integer.BYTES);
+            int index = ringBuffer.tryClaim(messageTypeId, messageLength);
+            if (index == INSUFFICIENT_CAPACITY)
+            {
+                break;
+            }
+            buffer.putBytes(index, segment, position + HEADER_LENGTH, messageLength);
+            ringBuffer.commit();
+
+            position += BitUtil.align(recordLength, ALIGNMENT);
+            sequence++;
+            replayed++;
+        }
+        return replayed;
+    }
+
+    /**
+     * @return the record length of the next message, moving to the next segment at the end of the current one,
+     * or 0 if there is no next message
+     */
+    private int nextRecordLength()
+    {
+        int recordLength = recordLength();
+        if (recordLength == 0 && nextSegment())
+        {
+            recordLength = recordLength();
+        }
+        return recordLength;
+    }
+
+    private int recordLength()
+    {
+        return segment == null || position + HEADER_LENGTH > segmentLength ? 0 : segment.getInt(position);
+    }
+
+    private boolean nextSegment()
+    {
+        if (segmentIndex + 1 >= segmentSequences.length)
+        {
+            segmentSequences = Journal.segmentSequences(directory);
+        }
+        if (segmentIndex + 1 >= segmentSequences.length || segmentSequences[segmentIndex + 1] != sequence)
+        {
+            return false;
+        }
+        openSegment(segmentIndex + 1);
+        return true;
+    }
+
+    private void openSegment(int segmentIndex)
+    {
+        Path path = Journal.segmentPath(directory, segmentSequences[segmentIndex]);
+        segmentLength = (int)fileSize(path);
+        if (scratchBuffer == null || scratchBuffer.capacity() < segmentLength)
+        {
+            scratchBuffer = new UnsafeBuffer(segmentLength);
+        }
+
+        this.segmentIndex = segmentIndex;
+        this.segment = Journal.map(path, segmentLength, FileChannel.MapMode.READ_ONLY);
+        this.sequence = segmentSequences[segmentIndex];
+        this.position = 0;
+    }
+
+    private static long fileSize(Path path)
+    {
+        try
+        {
+            return Files.size(path);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package gc.garcol.libcore;
+
+import static gc.garcol.libcore.OneToManyRingBuffer.HEADER_LENGTH;
+import static gc.garcol.libcore.OneToManyRingBuffer.NO_RECORD;
+import static gc.garcol.libcore.RingBufferUtil.offset;
+
+/**
+ * A many-producer front end made of one single-producer lane per producer thread, merged into a target
+ * {@link OneToManyRingBuffer} by a sequencer.
+ * <p>
+ * Each lane is a {@link OneToManyRingBuffer} with a single consumer, the sequencer, and is written by one producer
+ * thread only, so the producers never contend on a shared claim position or cache line. The sequencer copies the
+ * messages once from the lanes into the target with a {@link RingBufferRelay}; the order of the messages of a lane is
+ * kept, and a full target leaves the messages in their lanes, which in turn applies backpressure to their producers.
+ * <p>
+ * The lanes are merged with a {@link MergePolicy}. With {@link MergePolicy#TIMESTAMP}, each message must start with
+ * its timestamp, a long in native byte order, and the messages available are merged in timestamp order: a message
+ * published later into a lane with a lower timestamp than an already merged one is not reordered.
+ * <p>
+ * The sequencer must be driven by a single thread, the only producer of the target.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class LaneSequencer
+{
+    /**
+     * How the messages of the lanes are merged.
+     */
+    public enum MergePolicy
+    {
+        /**
+         * Round-robin over the lanes, up to a quantum of messages from each lane in turn.
+         */
+        FAIR,
+
+        /**
+         * The message with the lowest timestamp among the heads of the lanes first.
+         */
+        TIMESTAMP
+    }
+
+    private final OneToManyRingBuffer[] lanes;
+    private final OneToManyRingBuffer target;
+    private final RingBufferRelay relay;
+    private final MergePolicy mergePolicy;
+    private final int quantum;
+
+    private int nextLane;
+
+    /**
+     * Constructs a LaneSequencer with a quantum of 16 messages per lane for the {@link MergePolicy#FAIR} policy.
+     *
+     * @param laneSize     the number of lanes, one per producer thread
+     * @param lanePowSize  the power of two size for each lane
+     * @param target       the ring buffer to merge the lanes into
+     * @param mergePolicy  the merge policy
+     */
+    public LaneSequencer(int laneSize, int lanePowSize, OneToManyRingBuffer target, MergePolicy mergePolicy)
+    {
+        this(laneSize, lanePowSize, target, mergePolicy, 16);
+    }
+
+    /**
+     * Constructs a LaneSequencer.
+     *
+     * @param laneSize     the number of lanes, one per producer thread
+     * @param lanePowSize  the power of two size for each lane
+     * @param target       the ring buffer to merge the lanes into
+     * @param mergePolicy  the merge policy
+     * @param quantum      the maximum number of messages merged from a lane in turn with the {@link MergePolicy#FAIR} policy
+     */
+    public LaneSequencer(int laneSize, int lanePowSize, OneToManyRingBuffer target, MergePolicy mergePolicy, int quantum)
+    {
+        Preconditions.checkArgument(laneSize >= 1, "Lane size must be greater than 0");
+        Preconditions.checkArgument(quantum >= 1, "Quantum must be greater than 0");
+
+        this.lanes = new OneToManyRingBuffer[laneSize];
+        for (int i = 0; i < laneSize; i++)
+        {
+            lanes[i] = new OneToManyRingBuffer(lanePowSize, 1);
+        }
+        this.target = target;
+        this.relay = new RingBufferRelay(target);
+        this.mergePolicy = mergePolicy;
+        this.quantum = quantum;
+    }
+
+    /**
+     * @return the number of lanes
+     */
+    public int laneSize()
+    {
+        return lanes.length;
+    }
+
+    /**
+     * @param laneIndex the index of the lane
+     * @return the lane, to be written by a single producer thread
+     */
+    public OneToManyRingBuffer lane(int laneIndex)
+    {
+        return lanes[laneIndex];
+    }
+
+    /**
+     * @return the ring buffer the lanes are merged into
+     */
+    public OneToManyRingBuffer target()
+    {
+        return target;
+    }
+
+    /**
+     * Merges the messages available in the lanes into the target.
+     *
+     * @param limit the maximum number of messages to merge
+     * @return the number of messages merged
+     */
+    public int sequence(int limit)
+    {
+        return mergePolicy == MergePolicy.FAIR ? sequenceFair(limit) : sequenceByTimestamp(limit);
+    }
+
+    private int sequenceFair(int limit)
+    {
+        int sequenced = 0;
+        int idleLanes = 0;
+
+        // a round ends once every lane in a row has nothing to merge
+        while (sequenced < limit && idleLanes < lanes.length)
+        {
+            int relayed = relay.relay(lanes[nextLane], 0, Math.min(quantum, limit - sequenced));
+            idleLanes = relayed == 0 ? idleLanes + 1 : 0;
+            sequenced += relayed;
+            nextLane = nextLane + 1 == lanes.length ? 0 : nextLane + 1;
+        }
+
+        return sequenced;
+    }
+
+    private int sequenceByTimestamp(int limit)
+    {
+        int sequenced = 0;
+
+        while (sequenced < limit)
+        {
+            int earliestLane = -1;
+            long earliestPosition = NO_RECORD;
+            long earliestTimestamp = Long.MAX_VALUE;
+
+            for (int i = 0; i < lanes.length; i++)
+            {
+                long recordPosition = lanes[i].recordPosition(0, lanes[i].consumerPosition(0));
+                if (recordPosition != NO_RECORD)
+                {
+                    long timestamp = lanes[i].buffer().getLong(offset(recordPosition) + HEADER_LENGTH);
+                    if (earliestLane < 0 || timestamp < earliestTimestamp)
+                    {
+                        earliestLane = i;
+                        earliestPosition = recordPosition;
+                        earliestTimestamp = timestamp;
+                    }
+                }
+            }
+
+            if (earliestLane < 0 || !relayOne(lanes[earliestLane], earliestPosition))
+            {
+                break;
+            }
+            sequenced++;
+        }
+
+        relay.commit();
+        return sequenced;
+    }
+
+    private boolean relayOne(OneToManyRingBuffer lane, long recordPosition)
+    {
+        final UnsafeBuffer laneBuffer = lane.buffer();
+        final int recordOffset = offset(recordPosition);
+        final int messageLength = laneBuffer.getInt(recordOffset);
+        final int messageTypeId = laneBuffer.getInt(recordOffset + Integer.BYTES);
+
+        if (!relay.onMessage(messageTypeId, laneBuffer, recordOffset + HEADER_LENGTH, messageLength))
+        {
+            return false;
+        }
+
+        lane.commitConsumed(0, lane.consumerPosition(0), lane.nextPosition(recordPosition));
+        return true;
+    }
+}
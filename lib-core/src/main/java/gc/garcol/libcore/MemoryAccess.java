@@ -1,7 +1,9 @@
 package gc.garcol.libcore;
 
+import java.lang.invoke.VarHandle;
+
 /**
- * Utility class for memory access operations using Unsafe.
+ * Utility class for memory fences, using the VarHandle fences which do not depend on Unsafe.
  *
  * @author thaivc
  * @since 2024
@@ -18,28 +20,28 @@ public class MemoryAccess
 
     /**
      * Ensures that all previous loads are visible to subsequent loads.
-     * This method uses Unsafe's loadFence to provide the memory fence.
+     * This method uses VarHandle's acquireFence to provide the memory fence.
      */
     public static void loadFence()
     {
-        UnsafeHelper.UNSAFE.loadFence();
+        VarHandle.acquireFence();
     }
 
     /**
      * Ensures that all previous stores are visible to subsequent stores.
-     * This method uses Unsafe's storeFence to provide the memory fence.
+     * This method uses VarHandle's releaseFence to provide the memory fence.
      */
     public static void storeFence()
     {
-        UnsafeHelper.UNSAFE.storeFence();
+        VarHandle.releaseFence();
     }
 
     /**
      * Ensures that all previous loads and stores are visible to subsequent loads and stores.
-     * This method uses Unsafe's fullFence to provide the memory fence.
+     * This method uses VarHandle's fullFence to provide the memory fence.
      */
     public static void fullFence()
     {
-        UnsafeHelper.UNSAFE.fullFence();
+        VarHandle.fullFence();
     }
 }
\ No newline at end of file
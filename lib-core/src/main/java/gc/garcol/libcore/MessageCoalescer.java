@@ -0,0 +1,209 @@
+package gc.garcol.libcore;
+
+import java.nio.ByteBuffer;
+
+import static gc.garcol.libcore.OneToManyRingBuffer.INSUFFICIENT_CAPACITY;
+
+/**
+ * Packs small messages into batch records of a {@link OneToManyRingBuffer}, so that the fixed cost of a ring record
+ * is paid once per batch instead of once per message.
+ * <p>
+ * The messages are staged until the next one does not fit, {@link #flush()} is called, or the oldest staged message
+ * is older than the maximum delay when {@link #poll(long)} is called, the time being measured by the caller's clock.
+ * A message too large to be staged is written as its own record, after the staged ones.
+ * <p>
+ * A batch record has the batch type identifier and contains the messages in order, each one being:
+ * length: 4 bytes | type: 4 bytes | message, aligned to {@link #ALIGNMENT}.
+ * The consumers unpack them with a {@link CoalescedMessageHandler}.
+ * <p>
+ * A coalescer must be driven by the producer thread of the ring buffer.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class MessageCoalescer
+{
+    /**
+     * The length of the header of each message of a batch in bytes.
+     */
+    public static final int HEADER_LENGTH = Integer.BYTES * 2; // length, type
+
+    /**
+     * Alignment as a multiple of bytes for each message of a batch.
+     */
+    public static final int ALIGNMENT = Long.BYTES;
+
+    private static final int OVERSIZED = -2;
+
+    private final OneToManyRingBuffer ringBuffer;
+    private final int batchTypeId;
+    private final long maxDelayNs;
+    private final UnsafeBuffer batch;
+
+    private int batchLength;
+    private int batchSize;
+    private long firstStagedNs;
+
+    /**
+     * Constructs a MessageCoalescer.
+     *
+     * @param ringBuffer     the ring buffer to write the batches to
+     * @param batchTypeId    the type identifier of the batch records
+     * @param maxBatchLength the maximum length of a batch in bytes, a batch being flushed when the next message does not fit
+     * @param maxDelayNs     the maximum delay of a staged message, see {@link #poll(long)}
+     */
+    public MessageCoalescer(OneToManyRingBuffer ringBuffer, int batchTypeId, int maxBatchLength, long maxDelayNs)
+    {
+        Preconditions.checkArgument(maxBatchLength >= HEADER_LENGTH && maxBatchLength % ALIGNMENT == 0, "Max batch length must be a multiple of " + ALIGNMENT + " not less than " + HEADER_LENGTH);
+        Preconditions.checkArgument(OneToManyRingBuffer.alignedRecordLength(maxBatchLength) <= ringBuffer.capacity() >> 3, "Max batch length must fit in a record of the ring buffer");
+        Preconditions.checkArgument(maxDelayNs >= 0, "Max delay must not be negative");
+
+        this.ringBuffer = ringBuffer;
+        this.batchTypeId = batchTypeId;
+        this.maxDelayNs = maxDelayNs;
+        this.batch = new UnsafeBuffer(maxBatchLength);
+    }
+
+    /**
+     * @return the number of staged messages
+     */
+    public int batchSize()
+    {
+        return batchSize;
+    }
+
+    /**
+     * Stages a message, flushing the staged ones first if it does not fit.
+     *
+     * @param msgTypeId the type identifier of the message
+     * @param message   the message, the limit must be equal to the message length
+     * @param nowNs     the current time of the caller's clock
+     * @return true if the message was staged or written, false if the ring buffer is full
+     * @throws IllegalArgumentException if the type identifier is the one of the batch records
+     */
+    public boolean offer(int msgTypeId, ByteBuffer message, long nowNs)
+    {
+        final int messageLength = message.limit();
+        final int index = stage(msgTypeId, messageLength, nowNs);
+        if (index == INSUFFICIENT_CAPACITY)
+        {
+            return false;
+        }
+        if (index == OVERSIZED)
+        {
+            return ringBuffer.write(msgTypeId, message);
+        }
+
+        batch.putBytes(index, message, 0, messageLength);
+        return true;
+    }
+
+    /**
+     * Stages a message, flushing the staged ones first if it does not fit.
+     *
+     * @param msgTypeId the type identifier of the message
+     * @param buffer    the buffer containing the message
+     * @param index     the index of the message in the buffer
+     * @param length    the length of the message
+     * @param nowNs     the current time of the caller's clock
+     * @return true if the message was staged or written, false if the ring buffer is full
+     * @throws IllegalArgumentException if the type identifier is the one of the batch records
+     */
+    public boolean offer(int msgTypeId, UnsafeBuffer buffer, int index, int length, long nowNs)
+    {
+        final int batchIndex = stage(msgTypeId, length, nowNs);
+        if (batchIndex == INSUFFICIENT_CAPACITY)
+        {
+            return false;
+        }
+        if (batchIndex == OVERSIZED)
+        {
+            return write(msgTypeId, buffer, index, length);
+        }
+
+        batch.putBytes(batchIndex, buffer, index, length);
+        return true;
+    }
+
+    /**
+     * Flushes the staged messages if the oldest one has been staged for the maximum delay.
+     *
+     * @param nowNs the current time of the caller's clock
+     * @return the number of messages flushed
+     */
+    public int poll(long nowNs)
+    {
+        if (batchSize > 0 && nowNs - firstStagedNs >= maxDelayNs)
+        {
+            return flush();
+        }
+        return 0;
+    }
+
+    /**
+     * Writes the staged messages to the ring buffer as one batch record.
+     *
+     * @return the number of messages flushed, 0 if there is none or the ring buffer is full
+     */
+    public int flush()
+    {
+        if (batchSize == 0 || !write(batchTypeId, batch, 0, batchLength))
+        {
+            return 0;
+        }
+
+        final int flushed = batchSize;
+        batchLength = 0;
+        batchSize = 0;
+        return flushed;
+    }
+
+    /**
+     * Reserves the space of a message in the batch, writing its header.
+     *
+     * @return the index of the message in the batch, {@link #OVERSIZED} if it must be written as its own record,
+     * or {@link OneToManyRingBuffer#INSUFFICIENT_CAPACITY} if the staged messages could not be flushed to make room
+     */
+    private int stage(int msgTypeId, int messageLength, long nowNs)
+    {
+        // the message would be unpacked as a batch
+        Preconditions.checkArgument(msgTypeId != batchTypeId, "Message type must not be the batch type " + batchTypeId);
+
+        final int alignedLength = BitUtil.align(HEADER_LENGTH + messageLength, ALIGNMENT);
+        if (batchLength + alignedLength > batch.capacity())
+        {
+            if (batchSize > 0 && flush() == 0)
+            {
+                return INSUFFICIENT_CAPACITY;
+            }
+            if (alignedLength > batch.capacity())
+            {
+                return OVERSIZED;
+            }
+        }
+
+        if (batchSize == 0)
+        {
+            firstStagedNs = nowNs;
+        }
+        final int index = batchLength;
+        batch.putInt(index, messageLength);
+        batch.putInt(index + Integer.BYTES, msgTypeId);
+        batchLength += alignedLength;
+        batchSize++;
+        return index + HEADER_LENGTH;
+    }
+
+    private boolean write(int msgTypeId, UnsafeBuffer buffer, int index, int length)
+    {
+        final int recordIndex = ringBuffer.tryClaim(msgTypeId, length);
+        if (recordIndex == INSUFFICIENT_CAPACITY)
+        {
+            return false;
+        }
+
+        ringBuffer.buffer().putBytes(recordIndex, buffer, index, length);
+        ringBuffer.commit();
+        return true;
+    }
+}
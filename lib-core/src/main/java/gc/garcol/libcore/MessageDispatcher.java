@@ -0,0 +1,107 @@
+package gc.garcol.libcore;
+
+/**
+ * Dispatches messages to the handlers subscribed to their type through a table indexed by the message type identifier.
+ * <p>
+ * Messages of unsubscribed types are skipped without any handler call. When passed to
+ * {@link OneToManyRingBuffer#read(int, MessageDispatcher, int)}, a run of records of unsubscribed types is skipped
+ * by walking the record headers and committing the consumer position once for the whole run.
+ * <p>
+ * Subscriptions must not be changed while the dispatcher is being used to read.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class MessageDispatcher implements MessageHandler
+{
+    private final MessageHandler[] handlers;
+    private int subscriptionSize;
+
+    /**
+     * Constructs a MessageDispatcher for the message types from 0 to the specified maximum.
+     *
+     * @param maxMsgTypeId the maximum message type identifier that can be subscribed
+     */
+    public MessageDispatcher(int maxMsgTypeId)
+    {
+        Preconditions.checkArgument(maxMsgTypeId >= 0 && maxMsgTypeId < 1 << 20, "Max message type id must be between 0 and 2^20");
+        handlers = new MessageHandler[maxMsgTypeId + 1];
+    }
+
+    /**
+     * Subscribes a handler to a message type, replacing the previous handler of the type if any.
+     *
+     * @param msgTypeId the type identifier of the messages
+     * @param handler   the handler to process the messages of the type
+     * @return this dispatcher
+     */
+    public MessageDispatcher subscribe(int msgTypeId, MessageHandler handler)
+    {
+        checkMsgTypeId(msgTypeId);
+        Preconditions.checkArgument(handler != null, "Handler must not be null");
+        if (handlers[msgTypeId] == null)
+        {
+            subscriptionSize++;
+        }
+        handlers[msgTypeId] = handler;
+        return this;
+    }
+
+    /**
+     * Unsubscribes the handler of a message type, the messages of the type are skipped from then on.
+     *
+     * @param msgTypeId the type identifier of the messages
+     * @return this dispatcher
+     */
+    public MessageDispatcher unsubscribe(int msgTypeId)
+    {
+        checkMsgTypeId(msgTypeId);
+        if (handlers[msgTypeId] != null)
+        {
+            subscriptionSize--;
+        }
+        handlers[msgTypeId] = null;
+        return this;
+    }
+
+    /**
+     * @param msgTypeId the type identifier of the messages
+     * @return true if a handler is subscribed to the message type, false otherwise
+     */
+    public boolean isSubscribed(int msgTypeId)
+    {
+        return handler(msgTypeId) != null;
+    }
+
+    /**
+     * @return the number of subscribed message types
+     */
+    public int subscriptionSize()
+    {
+        return subscriptionSize;
+    }
+
+    /**
+     * Dispatches the message to the handler subscribed to its type, or skips it.
+     *
+     * @return the result of the subscribed handler, or true if the message type is not subscribed
+     */
+    public boolean onMessage(int msgTypeId, UnsafeBuffer buffer, int index, int length)
+    {
+        final MessageHandler handler = handler(msgTypeId);
+        return handler == null || handler.onMessage(msgTypeId, buffer, index, length);
+    }
+
+    /**
+     * @return the handler subscribed to the message type, or null if none
+     */
+    MessageHandler handler(int msgTypeId)
+    {
+        return Integer.compareUnsigned(msgTypeId, handlers.length) < 0 ? handlers[msgTypeId] : null;
+    }
+
+    private void checkMsgTypeId(int msgTypeId)
+    {
+        Preconditions.checkArgument(msgTypeId >= 0 && msgTypeId < handlers.length, "Message type id must be between 0 and " + (handlers.length - 1));
+    }
+}
@@ -8,18 +8,30 @@ import static gc.garcol.libcore.RingBufferUtil.*;
  * A ring buffer that supports one producer and multiple consumers.
  * Provides methods to write messages to the buffer and read messages from the buffer.
  * Ensures memory visibility guarantees using happen-before relationships.
+ * <p>
+ * Each position has a single writer, so it is published with a release store and loaded by the others with an
+ * acquire load, which is enough for a happen-before relationship without the StoreLoad fence of a volatile store.
+ * The volatile protocol can be restored with {@code -Dgc.garcol.libcore.volatilePositions=true} to measure the difference.
  *
  * @author thaivc
  * @since 2024
  */
 public class OneToManyRingBuffer
 {
+    /**
+     * True to store and load the positions with volatile semantics instead of release and acquire semantics.
+     */
+    static final boolean VOLATILE_POSITIONS = Boolean.getBoolean("gc.garcol.libcore.volatilePositions");
+
     private final UnsafeBuffer unsafeBuffer;
 
     /**
-     * The pointers buffer contains the producer position and consumer positions.
+     * The pointers buffer contains the producer position, consumer positions, retained position and the barrier position
+     * cached by each consumer, followed by its eviction flag. When no record is retained, the retained position is the
+     * position up to which the last consumer clears the consumed bytes.
      * <p>
-     * [64 padding bytes] | producer position: 8 bytes |  [(64 - 8) padding bytes] | consumer position 1: 8 bytes | ... | [(64 - 8) padding bytes] | consumer position n: 8 bytes | 64 padding bytes
+     * [64 padding bytes] | producer position: 8 bytes | producer laps: 8 bytes | [(64 - 16) padding bytes] | consumer position 1: 8 bytes | ... | [(64 - 8) padding bytes] | consumer position n: 8 bytes | [(64 - 8) padding bytes] | retained position: 8 bytes
+     * | [(64 - 8) padding bytes] | cached barrier position 1: 8 bytes | evicted 1: 4 bytes | ... | [(64 - 12) padding bytes] | cached barrier position n: 8 bytes | evicted n: 4 bytes | 64 padding bytes
      */
     private final UnsafeBuffer pointers;
 
@@ -27,9 +39,33 @@ public class OneToManyRingBuffer
     private final int maxRecordLength;
     private final int lastConsumerIndex;
     private final int consumerSize;
+    private final int retainedLength;
 
     private final int producerPointerIndex;
+    private final int producerLapsIndex;
     private final int[] consumerPointerIndexes;
+    private final int retainedPointerIndex;
+    private final int[] cachedBarrierIndexes;
+
+    /**
+     * The producer position after the records claimed so far, published on {@link #commit()}, only accessed by the producer.
+     */
+    private long claimedProducerPosition;
+
+    /**
+     * The number of times the producer has jumped to the beginning of the buffer, claimed and published,
+     * and the sequence of the next record, only accessed by the producer.
+     */
+    private long claimedProducerLaps;
+    private long publishedProducerLaps;
+    private long claimedSequence;
+
+    /**
+     * The gating positions last loaded by the producer, only accessed by the producer.
+     * They are older than the current ones, so the space they leave is available for sure.
+     */
+    private long cachedFirstConsumerPosition;
+    private long cachedLastConsumerPosition;
 
     /**
      * The length of the header in bytes.
@@ -45,6 +81,21 @@ public class OneToManyRingBuffer
      */
     public static final int ALIGNMENT = Long.BYTES * 8; // padding to align the record in order to prevent false sharing
 
+    /**
+     * The length of the sequence written in the padding at the end of each record.
+     */
+    static final int SEQUENCE_LENGTH = Long.BYTES;
+
+    /**
+     * Returned by the record lookups when no record is available.
+     */
+    static final long NO_RECORD = -1;
+
+    /**
+     * Returned by {@link #tryClaim(int, int)} when there is not enough space for the record.
+     */
+    static final int INSUFFICIENT_CAPACITY = -1;
+
     /**
      * Constructs a OneToManyRingBuffer with the specified size and number of consumers.
      *
@@ -52,17 +103,36 @@ public class OneToManyRingBuffer
      * @param consumerSize the number of consumers
      */
     public OneToManyRingBuffer(int powSize, int consumerSize)
+    {
+        this(powSize, consumerSize, 0);
+    }
+
+    /**
+     * Constructs a OneToManyRingBuffer keeping the consumed records of a retained window behind the last consumer,
+     * the consumers can be rewound into that window with {@link #rewind(int, long)}.
+     * <p>
+     * The records of the retained window are not cleared and the producer does not overwrite them,
+     * so the capacity available to the producer is reduced by the retained length.
+     *
+     * @param powSize        the power of two size for the ring buffer
+     * @param consumerSize   the number of consumers
+     * @param retainedLength the number of bytes of consumed records to retain behind the last consumer, 0 to retain none
+     */
+    public OneToManyRingBuffer(int powSize, int consumerSize, int retainedLength)
     {
         Preconditions.checkArgument(powSize >= 10, "Ring buffer size must be greater than 1024");
         Preconditions.checkArgument(powSize <= 31, "Ring buffer size must be less than 2^31");
         Preconditions.checkArgument(consumerSize >= 1, "Consumer size must be greater than 0");
+        Preconditions.checkArgument(retainedLength >= 0 && retainedLength <= 1 << (powSize - 1), "Retained length must be between 0 and half of the ring buffer size");
 
         capacity = 1 << powSize;
         unsafeBuffer = new UnsafeBuffer(capacity);
-        pointers = new UnsafeBuffer(Long.BYTES * 8 + Long.BYTES + (Long.BYTES * 7 + Long.BYTES) * consumerSize + Long.BYTES * 8);
+        pointers = new UnsafeBuffer(Long.BYTES * 8 + Long.BYTES + (Long.BYTES * 7 + Long.BYTES) * (consumerSize * 2 + 1) + Long.BYTES * 8);
         lastConsumerIndex = consumerSize - 1;
+        this.retainedLength = retainedLength;
 
         producerPointerIndex = Long.BYTES * 8;
+        producerLapsIndex = producerPointerIndex + Long.BYTES;
         consumerPointerIndexes = new int[consumerSize];
         this.consumerSize = consumerSize;
 
@@ -71,6 +141,13 @@ public class OneToManyRingBuffer
         {
             consumerPointerIndexes[i] = consumerPointerIndexes[i - 1] + Long.BYTES + Long.BYTES * 7; // padding + consumer-pointer-block + padding
         }
+        retainedPointerIndex = consumerPointerIndexes[lastConsumerIndex] + Long.BYTES + Long.BYTES * 7;
+        cachedBarrierIndexes = new int[consumerSize];
+        cachedBarrierIndexes[0] = retainedPointerIndex + Long.BYTES + Long.BYTES * 7;
+        for (int i = 1; i < consumerSize; i++)
+        {
+            cachedBarrierIndexes[i] = cachedBarrierIndexes[i - 1] + Long.BYTES + Long.BYTES * 7;
+        }
 
         maxRecordLength = capacity >> 3;
     }
@@ -85,17 +162,256 @@ public class OneToManyRingBuffer
     public boolean write(int msgTypeId, ByteBuffer message)
     {
         int messageLength = message.limit();
+        int index = tryClaim(msgTypeId, messageLength);
+        if (index == INSUFFICIENT_CAPACITY)
+        {
+            return false;
+        }
+
+        unsafeBuffer.putBytes(index, message, 0, messageLength);
+        commit();
+
+        return true;
+    }
+
+    /**
+     * Writes a message from a range of a buffer to the ring buffer, e.g. a record of another ring buffer.
+     *
+     * @param msgTypeId the type identifier of the message
+     * @param buffer    the buffer containing the message, heap or direct
+     * @param index     the index of the message in the buffer
+     * @param length    the length of the message
+     * @return true if the message was written successfully, false otherwise
+     */
+    public boolean write(int msgTypeId, ByteBuffer buffer, int index, int length)
+    {
+        int messageIndex = tryClaim(msgTypeId, length);
+        if (messageIndex == INSUFFICIENT_CAPACITY)
+        {
+            return false;
+        }
+
+        unsafeBuffer.putBytes(messageIndex, buffer, index, length);
+        commit();
+
+        return true;
+    }
+
+    /**
+     * Writes a message from a byte array to the ring buffer.
+     *
+     * @param msgTypeId the type identifier of the message
+     * @param message   the array containing the message
+     * @param offset    the offset of the message in the array
+     * @param length    the length of the message
+     * @return true if the message was written successfully, false otherwise
+     */
+    public boolean write(int msgTypeId, byte[] message, int offset, int length)
+    {
+        int index = tryClaim(msgTypeId, length);
+        if (index == INSUFFICIENT_CAPACITY)
+        {
+            return false;
+        }
+
+        unsafeBuffer.putBytes(index, message, offset, length);
+        commit();
+
+        return true;
+    }
+
+    /**
+     * Writes a message made of two parts to the ring buffer, both copied straight into the record.
+     *
+     * @param msgTypeId the type identifier of the message
+     * @param first     the first part of the message, heap or direct, the limit must be equal to its length
+     * @param second    the second part of the message, heap or direct, the limit must be equal to its length
+     * @return true if the message was written successfully, false otherwise
+     */
+    public boolean write(int msgTypeId, ByteBuffer first, ByteBuffer second)
+    {
+        return write(msgTypeId, first, 0, first.limit(), second, 0, second.limit());
+    }
+
+    /**
+     * Writes a message made of three parts to the ring buffer, each part being copied straight into the record.
+     *
+     * @param msgTypeId the type identifier of the message
+     * @param first     the first part of the message, heap or direct, the limit must be equal to its length
+     * @param second    the second part of the message, heap or direct, the limit must be equal to its length
+     * @param third     the third part of the message, heap or direct, the limit must be equal to its length
+     * @return true if the message was written successfully, false otherwise
+     */
+    public boolean write(int msgTypeId, ByteBuffer first, ByteBuffer second, ByteBuffer third)
+    {
+        int index = tryClaim(msgTypeId, first.limit() + second.limit() + third.limit());
+        if (index == INSUFFICIENT_CAPACITY)
+        {
+            return false;
+        }
+
+        unsafeBuffer.putBytes(index, first, 0, first.limit());
+        unsafeBuffer.putBytes(index + first.limit(), second, 0, second.limit());
+        unsafeBuffer.putBytes(index + first.limit() + second.limit(), third, 0, third.limit());
+        commit();
+
+        return true;
+    }
+
+    /**
+     * Writes a message made of several parts to the ring buffer, each part being copied straight into the record.
+     * <p>
+     * A varargs call allocates the array of parts: on a hot path, the caller passes an array it reuses, or the
+     * fixed-arity writes for two and three parts.
+     *
+     * @param msgTypeId the type identifier of the message
+     * @param parts     the parts of the message in order, heap or direct, the limit of each one must be equal to its length
+     * @return true if the message was written successfully, false otherwise
+     */
+    public boolean write(int msgTypeId, ByteBuffer... parts)
+    {
+        int messageLength = 0;
+        for (ByteBuffer part : parts)
+        {
+            messageLength += part.limit();
+        }
+
+        int index = tryClaim(msgTypeId, messageLength);
+        if (index == INSUFFICIENT_CAPACITY)
+        {
+            return false;
+        }
+
+        for (ByteBuffer part : parts)
+        {
+            unsafeBuffer.putBytes(index, part, 0, part.limit());
+            index += part.limit();
+        }
+        commit();
+
+        return true;
+    }
+
+    /**
+     * Writes a message made of a header and a payload to the ring buffer, both copied straight into the record.
+     *
+     * @param msgTypeId     the type identifier of the message
+     * @param header        the buffer containing the header, heap or direct
+     * @param headerIndex   the index of the header in its buffer
+     * @param headerLength  the length of the header
+     * @param payload       the buffer containing the payload, heap or direct
+     * @param payloadIndex  the index of the payload in its buffer
+     * @param payloadLength the length of the payload
+     * @return true if the message was written successfully, false otherwise
+     */
+    public boolean write(
+        int msgTypeId,
+        ByteBuffer header,
+        int headerIndex,
+        int headerLength,
+        ByteBuffer payload,
+        int payloadIndex,
+        int payloadLength
+    )
+    {
+        int index = tryClaim(msgTypeId, headerLength + payloadLength);
+        if (index == INSUFFICIENT_CAPACITY)
+        {
+            return false;
+        }
+
+        unsafeBuffer.putBytes(index, header, headerIndex, headerLength);
+        unsafeBuffer.putBytes(index + headerLength, payload, payloadIndex, payloadLength);
+        commit();
+
+        return true;
+    }
+
+    /**
+     * Writes a message made of a header and a payload to the ring buffer, both copied straight into the record.
+     *
+     * @param msgTypeId     the type identifier of the message
+     * @param header        the array containing the header
+     * @param headerOffset  the offset of the header in the array
+     * @param headerLength  the length of the header
+     * @param payload       the buffer containing the payload, heap or direct
+     * @param payloadIndex  the index of the payload in its buffer
+     * @param payloadLength the length of the payload
+     * @return true if the message was written successfully, false otherwise
+     */
+    public boolean write(
+        int msgTypeId,
+        byte[] header,
+        int headerOffset,
+        int headerLength,
+        ByteBuffer payload,
+        int payloadIndex,
+        int payloadLength
+    )
+    {
+        int index = tryClaim(msgTypeId, headerLength + payloadLength);
+        if (index == INSUFFICIENT_CAPACITY)
+        {
+            return false;
+        }
+
+        unsafeBuffer.putBytes(index, header, headerOffset, headerLength);
+        unsafeBuffer.putBytes(index + headerLength, payload, payloadIndex, payloadLength);
+        commit();
+
+        return true;
+    }
+
+    /**
+     * Claims a record for a message of the specified length and writes its header.
+     * The message must then be written at the returned index and published with {@link #commit()}.
+     * Several records can be claimed in a row, a single commit publishes them all.
+     *
+     * @param msgTypeId     the type identifier of the message
+     * @param messageLength the length of the message
+     * @return the index of the message in the buffer, or {@link #INSUFFICIENT_CAPACITY} if there is not enough space
+     */
+    int tryClaim(int msgTypeId, int messageLength)
+    {
         final int recordLength = calculateRecordLength(messageLength);
         final int alignedRecordLength = BitUtil.align(recordLength, ALIGNMENT);
         checkMsgLength(alignedRecordLength, maxRecordLength);
 
-        // [1] happen-before guarantee for reads
-        long currentProducerPosition = pointers.getLongVolatile(producerPointerIndex);
+        // the producer is the only writer of its position, the records claimed and not committed yet come first
+        long currentProducerPosition = claimedProducerPosition;
+
+        // the cached gating positions are enough as long as they leave space for the record
+        int index = tryClaim(msgTypeId, messageLength, alignedRecordLength, currentProducerPosition, cachedFirstConsumerPosition, cachedLastConsumerPosition);
+        if (index != INSUFFICIENT_CAPACITY)
+        {
+            return index;
+        }
+
+        // [1] happen-before guarantee for reads: the records before the consumer positions are not read anymore,
+        // the evicted consumers do not gate the producer, the last consumer is never evicted
+        int firstConsumerIndex = 0;
+        while (isEvicted(firstConsumerIndex))
+        {
+            firstConsumerIndex++;
+        }
+        cachedFirstConsumerPosition = loadPosition(consumerPointerIndexes[firstConsumerIndex]);
+        // the records retained behind the last consumer must not be overwritten either
+        cachedLastConsumerPosition = retainedLength > 0
+            ? loadPosition(retainedPointerIndex)
+            : firstConsumerIndex == lastConsumerIndex ? cachedFirstConsumerPosition : loadPosition(consumerPointerIndexes[lastConsumerIndex]);
 
-        // when [1] happened, the [1] ensures that the these instructions are loaded from the main memory as well
-        long firstConsumerPosition = pointers.getLong(consumerPointerIndexes[0]);
-        long lastConsumerPosition = consumerSize == 1 ? firstConsumerPosition : pointers.getLong(consumerPointerIndexes[lastConsumerIndex]);
+        return tryClaim(msgTypeId, messageLength, alignedRecordLength, currentProducerPosition, cachedFirstConsumerPosition, cachedLastConsumerPosition);
+    }
 
+    private int tryClaim(
+        int msgTypeId,
+        int messageLength,
+        int alignedRecordLength,
+        long currentProducerPosition,
+        long firstConsumerPosition,
+        long lastConsumerPosition
+    )
+    {
         int currentProducerOffset = offset(currentProducerPosition);
         boolean currentProducerFlip = flip(currentProducerPosition);
         int firstConsumerOffset = offset(firstConsumerPosition);
@@ -123,12 +439,14 @@ public class OneToManyRingBuffer
                 // . . . . . . C3 . C2 . C1 . . P . . x
                 if (lastConsumerOffset > alignedRecordLength - 1)
                 {
+                    // the zero length marks the skipped tail, which is not cleared when records are retained
+                    unsafeBuffer.putInt(currentProducerOffset, 0);
                     realStartOfRecord = 0; // jump to the beginning of the buffer
                     shouldFlip = true;
                 }
                 else
                 {
-                    return false;
+                    return INSUFFICIENT_CAPACITY;
                 }
             }
             // else keeping the realStartOfRecord = producerOffset.get();
@@ -142,7 +460,7 @@ public class OneToManyRingBuffer
             // .  C1  .  . P  .  .  .  C3 .  .  . C2  .  .  x
             if (expectedEndOffsetOfRecord >= lastConsumerOffset)
             {
-                return false;
+                return INSUFFICIENT_CAPACITY;
             }
 
             // else keeping the realStartOfRecord = producerOffset.get();
@@ -156,17 +474,35 @@ public class OneToManyRingBuffer
         int nextProducerOffset = (realStartOfRecord + alignedRecordLength) % capacity; // maybe nextProducerOffset == 0
 
         // when [2] happened, the [2] ensures that the these instructions are synchronized into main memory as well
-        buffer.putBytes(realStartOfRecord + HEADER_LENGTH, message, 0, messageLength);
         buffer.putInt(realStartOfRecord, messageLength);
         buffer.putInt(realStartOfRecord + Integer.BYTES, msgTypeId);
+        // the sequence lets the readers which do not gate the producer count the records they have missed
+        buffer.putLong(realStartOfRecord + alignedRecordLength - SEQUENCE_LENGTH, claimedSequence++);
 
         shouldFlip |= nextProducerOffset == 0;
         boolean newProducerFlip = shouldFlip != currentProducerFlip;
-        long newProducerPosition = position(nextProducerOffset, newProducerFlip);
-        // [2]: happen-before guarantee for writes
-        pointers.putLongVolatile(producerPointerIndex, newProducerPosition);
+        claimedProducerPosition = position(nextProducerOffset, newProducerFlip);
+        if (shouldFlip)
+        {
+            claimedProducerLaps++;
+        }
 
-        return true;
+        return realStartOfRecord + HEADER_LENGTH;
+    }
+
+    /**
+     * Publishes the records claimed by {@link #tryClaim(int, int)} since the last commit.
+     */
+    void commit()
+    {
+        // the laps are published before the position they belong to, see producerAbsolutePosition()
+        if (claimedProducerLaps != publishedProducerLaps)
+        {
+            storePosition(producerLapsIndex, claimedProducerLaps);
+            publishedProducerLaps = claimedProducerLaps;
+        }
+        // [2]: happen-before guarantee for writes, the record is written before the position is published
+        storePosition(producerPointerIndex, claimedProducerPosition);
     }
 
     /**
@@ -201,6 +537,75 @@ public class OneToManyRingBuffer
         return limit;
     }
 
+    /**
+     * Reads the messages of the types subscribed to the dispatcher for the specified consumer.
+     *
+     * @param consumerIndex the index of the consumer
+     * @param dispatcher    the dispatcher of the messages to their handlers
+     * @return the number of messages read, skipped messages excluded
+     */
+    public int read(int consumerIndex, final MessageDispatcher dispatcher)
+    {
+        return read(consumerIndex, dispatcher, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads the messages of the types subscribed to the dispatcher for the specified consumer with a limit.
+     * <p>
+     * The records of unsubscribed types are skipped without calling any handler, and the consumer position is
+     * committed once for a whole run of skipped records instead of once per record.
+     *
+     * @param consumerIndex the index of the consumer
+     * @param dispatcher    the dispatcher of the messages to their handlers
+     * @param limit         the maximum number of messages to read, skipped messages excluded
+     * @return the number of messages read, skipped messages excluded
+     */
+    public int read(int consumerIndex, final MessageDispatcher dispatcher, int limit)
+    {
+        long committedPosition = pointers.getLong(consumerPointerIndexes[consumerIndex]);
+        long position = committedPosition;
+        int read = 0;
+
+        while (read < limit)
+        {
+            long recordPosition = recordPosition(consumerIndex, position);
+            if (recordPosition == NO_RECORD)
+            {
+                break;
+            }
+
+            int recordOffset = offset(recordPosition);
+            int messageTypeId = unsafeBuffer.getInt(recordOffset + Integer.BYTES);
+            MessageHandler handler = dispatcher.handler(messageTypeId);
+
+            if (handler != null)
+            {
+                int messageLength = unsafeBuffer.getInt(recordOffset);
+                if (!handler.onMessage(messageTypeId, unsafeBuffer, recordOffset + HEADER_LENGTH, messageLength))
+                {
+                    break;
+                }
+
+                long nextPosition = nextPosition(recordPosition);
+                commitConsumed(consumerIndex, committedPosition, nextPosition);
+                committedPosition = nextPosition;
+                position = nextPosition;
+                read++;
+            }
+            else
+            {
+                position = nextPosition(recordPosition);
+            }
+        }
+
+        if (position != committedPosition)
+        {
+            commitConsumed(consumerIndex, committedPosition, position);
+        }
+
+        return read;
+    }
+
     /**
      * Reads one message from the ring buffer for the specified consumer.
      *
@@ -210,109 +615,447 @@ public class OneToManyRingBuffer
      */
     public boolean readOne(int consumerIndex, final MessageHandler handler)
     {
-        // [1] happen-before guarantee for reads
-        long barrierPosition = consumerIndex == 0
-            ? pointers.getLongVolatile(producerPointerIndex)
-            : pointers.getLongVolatile(consumerPointerIndexes[consumerIndex - 1]);
+        long currentConsumerPosition = pointers.getLong(consumerPointerIndexes[consumerIndex]);
+
+        // [1] happen-before guarantee for reads, from the acquire load of the barrier position, possibly cached
+        long recordPosition = recordPosition(consumerIndex, currentConsumerPosition);
+        if (recordPosition == NO_RECORD)
+        {
+            return false;
+        }
+
+        // R  E C O R D
+        // C  . . . . . P . . . . . x
+
+        // or, past the skipped tail
+
+        // R  E C O R D
+        // C1 . . . . . P . . . . .C2 0 0 0
+        int recordOffset = offset(recordPosition);
+        int messageLength = unsafeBuffer.getInt(recordOffset);
+        int messageTypeId = unsafeBuffer.getInt(recordOffset + Integer.BYTES);
+
+        boolean consumeSuccess = handler.onMessage(messageTypeId, unsafeBuffer, recordOffset + HEADER_LENGTH, messageLength);
+
+        if (!consumeSuccess)
+        {
+            return false;
+        }
+
+        // [2] happen-before guarantee for writes: the record, and the skipped tail before it, are cleared if needed
+        // before the consumer position is released
+        commitConsumed(consumerIndex, currentConsumerPosition, nextPosition(recordPosition));
+
+        return true;
+    }
+
+    /**
+     * @return the capacity of the ring buffer in bytes
+     */
+    public int capacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * Touches every page of the ring buffer, so that the first lap runs without page faults.
+     * Must be called before the first message is written, e.g. right after the construction.
+     *
+     * @param parallelism the maximum number of threads touching the pages, a large ring buffer being split between them
+     */
+    public void preTouch(int parallelism)
+    {
+        unsafeBuffer.preTouch(parallelism);
+    }
 
-        int previousBarrier = offset(barrierPosition);
-        boolean previousFlip = flip(barrierPosition);
+    /**
+     * @return the number of consumers
+     */
+    public int consumerSize()
+    {
+        return consumerSize;
+    }
 
-        long currentConsumerPosition = pointers.getLong(consumerPointerIndexes[consumerIndex]);
-        int currentConsumerOffset = offset(currentConsumerPosition);
-        boolean currentConsumerFlip = flip(currentConsumerPosition);
+    UnsafeBuffer buffer()
+    {
+        return unsafeBuffer;
+    }
 
-        if (sameCircle(currentConsumerFlip, previousFlip))
+    /**
+     * The position the specified consumer must not pass: the position of the previous consumer which is not evicted,
+     * the producer position if there is none.
+     */
+    long barrierPosition(int consumerIndex)
+    {
+        int previousConsumerIndex = consumerIndex - 1;
+        while (previousConsumerIndex >= 0 && isEvicted(previousConsumerIndex))
         {
+            previousConsumerIndex--;
+        }
+        return previousConsumerIndex < 0
+            ? loadPosition(producerPointerIndex)
+            : loadPosition(consumerPointerIndexes[previousConsumerIndex]);
+    }
+
+    /**
+     * @param consumerIndex the index of the consumer
+     * @return the number of bytes published by the producer and not consumed yet by the consumer, meaningless once evicted
+     */
+    public long lag(int consumerIndex)
+    {
+        final long consumerPosition = consumerPosition(consumerIndex);
+        return distance(consumerPosition, producerPosition());
+    }
+
+    /**
+     * Evicts a consumer, e.g. a stuck non-critical one, so that it gates neither the producer nor the following consumers
+     * anymore: the following consumer depends on the previous consumer which is not evicted, or on the producer.
+     * <p>
+     * An evicted consumer reads no message anymore, and the message it may be handling while evicted can be overwritten
+     * by the producer. The last consumer can not be evicted, it clears the consumed records and keeps gating the producer,
+     * nor can the consumers of a ring buffer retaining the consumed records.
+     *
+     * @param consumerIndex the index of the consumer
+     */
+    public void evict(int consumerIndex)
+    {
+        Preconditions.checkArgument(isEvictable(consumerIndex), "Consumer " + consumerIndex + " can not be evicted");
+        pointers.putIntVolatile(cachedBarrierIndexes[consumerIndex] + Long.BYTES, 1);
+    }
+
+    /**
+     * @param consumerIndex the index of the consumer
+     * @return true if the consumer can be evicted by {@link #evict(int)}, false otherwise
+     */
+    public boolean isEvictable(int consumerIndex)
+    {
+        return consumerIndex >= 0 && consumerIndex < lastConsumerIndex && retainedLength == 0;
+    }
 
-            // . . . . . P . . . . . x
-            //           C1
+    /**
+     * @param consumerIndex the index of the consumer
+     * @return true if the consumer has been evicted, false otherwise
+     */
+    public boolean isEvicted(int consumerIndex)
+    {
+        return pointers.getIntAcquire(cachedBarrierIndexes[consumerIndex] + Long.BYTES) != 0;
+    }
 
-            // or
+    long producerPosition()
+    {
+        return loadPosition(producerPointerIndex);
+    }
 
-            // . . . . . C1 . . . . . x
-            //           C2
-            if (currentConsumerOffset >= previousBarrier)
+    /**
+     * @return the number of bytes published by the producer since the creation of the ring buffer,
+     * skipped tails included
+     */
+    long producerAbsolutePosition()
+    {
+        while (true)
+        {
+            final long laps = loadPosition(producerLapsIndex);
+            final long position = loadPosition(producerPointerIndex);
+            if (laps == loadPosition(producerLapsIndex))
             {
-                return false;
+                // the laps of a jump may be published while the position before it is still the last one
+                final long positionLaps = ((laps & 1) == 1) == flip(position) ? laps : laps - 1;
+                return positionLaps * capacity + offset(position);
             }
+        }
+    }
 
-            // R  E C O R D
-            // C  . . . . . P . . . . . x
+    /**
+     * @return the number of bytes published by the producer since the creation of the ring buffer up to
+     * the position before which the bytes may be overwritten or cleared, an upper bound as it only moves forward
+     */
+    long gatingAbsolutePosition()
+    {
+        final long gatingPosition = loadPosition(retainedPointerIndex);
+        final long producerAbsolutePosition = producerAbsolutePosition();
+        // loaded after the gating position, the producer is at most one lap ahead of it, or the distance is shorter
+        final long producerPosition = position((int)(producerAbsolutePosition & (capacity - 1)), ((producerAbsolutePosition / capacity) & 1) == 1);
+        return producerAbsolutePosition - distance(gatingPosition, producerPosition);
+    }
+
+    /**
+     * @param consumerIndex the index of the consumer
+     * @return the position of the next record the consumer reads
+     */
+    public long consumerPosition(int consumerIndex)
+    {
+        return loadPosition(consumerPointerIndexes[consumerIndex]);
+    }
+
+    /**
+     * @return the position of the oldest record retained behind the last consumer,
+     * the position of the last consumer if no record is retained
+     */
+    public long retainedPosition()
+    {
+        return retainedLength > 0 ? loadPosition(retainedPointerIndex) : consumerPosition(lastConsumerIndex);
+    }
+
+    /**
+     * Rewinds a consumer back to a position between the {@link #retainedPosition()} and its current position,
+     * the records from that position are read again.
+     * <p>
+     * The following consumers which are ahead of the position are rewound to it as well, so that no consumer passes
+     * the one it depends on. It must be called while the rewound consumers are not reading.
+     *
+     * @param consumerIndex the index of the consumer
+     * @param position      the position of a record previously returned by {@link #consumerPosition(int)}
+     * @throws IllegalArgumentException if the position is not the position of a record of that window
+     */
+    public void rewind(int consumerIndex, long position)
+    {
+        final long retainedPosition = retainedPosition();
+        final long currentPosition = pointers.getLong(consumerPointerIndexes[consumerIndex]);
 
-            // or
+        long recordPosition = retainedPosition;
+        while (recordPosition != position)
+        {
+            Preconditions.checkArgument(recordPosition != currentPosition, "Position is not a retained record position");
+            recordPosition = nextBoundary(recordPosition);
+        }
 
-            // R  E C O R D
-            // C1 . . . . . C2 . . . . . x
+        final long rewoundLength = distance(retainedPosition, position);
+        for (int i = lastConsumerIndex; i > consumerIndex; i--)
+        {
+            if (distance(retainedPosition, pointers.getLong(consumerPointerIndexes[i])) > rewoundLength)
+            {
+                pointers.putLongVolatile(consumerPointerIndexes[i], position);
+            }
+            // the barrier cached by a following consumer may be ahead of the rewound one, it is loaded again
+            pointers.putLongVolatile(cachedBarrierIndexes[i], pointers.getLong(consumerPointerIndexes[i]));
         }
+        pointers.putLongVolatile(consumerPointerIndexes[consumerIndex], position);
+        pointers.putLongVolatile(cachedBarrierIndexes[consumerIndex], position);
+    }
 
-        // when [1] happened, the [1] ensures that the these instructions are loaded from the main memory as well
-        int messageLength = unsafeBuffer.getInt(currentConsumerOffset);
+    /**
+     * Rewinds a consumer back by a number of messages, at most to the {@link #retainedPosition()}.
+     * See {@link #rewind(int, long)}.
+     *
+     * @param consumerIndex the index of the consumer
+     * @param messageCount  the number of messages to read again
+     * @return the number of messages the consumer has been rewound by, less than the requested one if not retained
+     */
+    public int rewindMessages(int consumerIndex, int messageCount)
+    {
+        Preconditions.checkArgument(messageCount >= 0, "Message count must not be negative");
+        final long retainedPosition = retainedPosition();
+        final long currentPosition = pointers.getLong(consumerPointerIndexes[consumerIndex]);
 
-        if (messageLength == 0)
+        int retainedMessages = 0;
+        for (long position = retainedPosition; position != currentPosition; position = nextBoundary(position))
         {
+            if (unsafeBuffer.getInt(offset(position)) != 0)
+            {
+                retainedMessages++;
+            }
+        }
 
-            //  . . . . . . C2 0 0 0
-            //              C1
-            //              P
-            if (sameCircle(currentConsumerFlip, previousFlip))
+        final int rewoundMessages = Math.min(messageCount, retainedMessages);
+        long position = retainedPosition;
+        for (int skipped = 0; skipped < retainedMessages - rewoundMessages; position = nextBoundary(position))
+        {
+            if (unsafeBuffer.getInt(offset(position)) != 0)
             {
-                return false;
+                skipped++;
             }
+        }
 
-            // R  E C O R D
-            // C1 . . . . . P . . . . .C2 0 0 0
+        rewind(consumerIndex, position);
+        return rewoundMessages;
+    }
 
-            // or
+    /**
+     * Commits the position of a consumer. For the last consumer, moves the retained window along with it.
+     */
+    void commitConsumerPosition(int consumerIndex, long position)
+    {
+        storePosition(consumerPointerIndexes[consumerIndex], position);
 
-            //
-            // P . . . . . . C1 0 0 0
+        if (retainedLength > 0 && consumerIndex == lastConsumerIndex)
+        {
+            long retainedPosition = pointers.getLong(retainedPointerIndex);
+            final long startPosition = retainedPosition;
+            while (distance(retainedPosition, position) > retainedLength)
+            {
+                retainedPosition = nextBoundary(retainedPosition);
+            }
+            if (retainedPosition != startPosition)
+            {
+                storePosition(retainedPointerIndex, retainedPosition);
+            }
+        }
+    }
 
-            // when [2] happened, the [2] ensures that the these instructions are synchronized into main memory as well
-            unsafeBuffer.clearBytes(currentConsumerOffset, capacity - 1);
+    /**
+     * Commits the position of a consumer which has consumed the records from a position up to that one,
+     * clearing them if needed.
+     */
+    void commitConsumed(int consumerIndex, long fromPosition, long toPosition)
+    {
+        if (clearsConsumed(consumerIndex))
+        {
+            // the readers which do not gate the producer must not read the bytes being cleared, see gatingAbsolutePosition()
+            storePosition(retainedPointerIndex, toPosition);
+            MemoryAccess.storeFence();
+            clearBytes(fromPosition, toPosition);
+        }
+        commitConsumerPosition(consumerIndex, toPosition);
+    }
 
-            int nextConsumerOffset = 0;
-            boolean newFlip = !currentConsumerFlip;
-            long newConsumerPosition = position(nextConsumerOffset, newFlip);
+    /**
+     * The consumed records are cleared by the last consumer unless they are retained.
+     */
+    boolean clearsConsumed(int consumerIndex)
+    {
+        return consumerIndex == lastConsumerIndex && retainedLength == 0;
+    }
 
-            // [2] happen-before guarantee for writes
-            pointers.putLongVolatile(consumerPointerIndexes[consumerIndex], newConsumerPosition);
-            return readOne(consumerIndex, handler);
+    /**
+     * Resolves the position of the record the specified consumer would read next from the given position,
+     * skipping the zeroed tail left behind when the producer jumped to the beginning of the buffer.
+     * <p>
+     * The barrier position is cached by the consumer and loaded again only when the cached one leaves no record,
+     * so it must be called by the single thread of the consumer, see {@link #sharedRecordPosition(int, long)} otherwise.
+     *
+     * @param consumerIndex the index of the consumer
+     * @param position      the position to read from
+     * @return the position of the record, or {@link #NO_RECORD} if no record is available yet
+     */
+    long recordPosition(int consumerIndex, long position)
+    {
+        final int cachedBarrierIndex = cachedBarrierIndexes[consumerIndex];
+        if (pointers.getIntAcquire(cachedBarrierIndex + Long.BYTES) != 0)
+        {
+            // evicted: the records it has not read may be overwritten already
+            return NO_RECORD;
         }
 
-        int messageTypeId = unsafeBuffer.getInt(currentConsumerOffset + Integer.BYTES);
+        long recordPosition = recordPosition(position, pointers.getLong(cachedBarrierIndex));
+        if (recordPosition != NO_RECORD)
+        {
+            return recordPosition;
+        }
 
-        boolean consumeSuccess = handler.onMessage(messageTypeId, unsafeBuffer, currentConsumerOffset + HEADER_LENGTH, messageLength);
+        long barrierPosition = barrierPosition(consumerIndex);
+        pointers.putLong(cachedBarrierIndex, barrierPosition);
+        return recordPosition(position, barrierPosition);
+    }
 
-        if (!consumeSuccess)
+    /**
+     * Same as {@link #recordPosition(int, long)}, loading the barrier position on each call,
+     * for a consumer read by several threads.
+     */
+    long sharedRecordPosition(int consumerIndex, long position)
+    {
+        if (isEvicted(consumerIndex))
         {
-            return false;
+            return NO_RECORD;
         }
+        return recordPosition(position, barrierPosition(consumerIndex));
+    }
+
+    private long recordPosition(long position, long barrierPosition)
+    {
+        int offset = offset(position);
+        boolean flip = flip(position);
+        boolean sameCircle = sameCircle(flip, flip(barrierPosition));
 
-        int recordLength = calculateRecordLength(messageLength);
-        int alignedRecordLength = BitUtil.align(recordLength, ALIGNMENT);
-        int endRecordOffset = currentConsumerOffset + alignedRecordLength - 1;
+        if (sameCircle && offset >= offset(barrierPosition))
+        {
+            return NO_RECORD;
+        }
 
-        if (consumerIndex == lastConsumerIndex)
+        if (unsafeBuffer.getInt(offset) == 0)
         {
-            // when [3] happened, the [3] ensures that the these instructions are synchronized into main memory as well
-            unsafeBuffer.clearBytes(currentConsumerOffset, endRecordOffset);
+            //  . . . . . . C2 0 0 0
+            //              P
+            return sameCircle ? NO_RECORD : recordPosition(position(0, !flip), barrierPosition);
         }
 
-        int nextConsumerOffset = (endRecordOffset + 1) % capacity; // nextConsumerOffset == 0 if the endRecordOffset is at the end of the buffer
-        boolean shouldFlip = nextConsumerOffset == 0;
-        boolean newFlip = shouldFlip != currentConsumerFlip;
+        return position;
+    }
 
-        long newConsumerPosition = position(nextConsumerOffset, newFlip);
+    /**
+     * @param recordPosition the position of a written record
+     * @return the position right after the record
+     */
+    long nextPosition(long recordPosition)
+    {
+        int offset = offset(recordPosition);
+        int alignedRecordLength = alignedRecordLength(unsafeBuffer.getInt(offset));
+        int nextOffset = (offset + alignedRecordLength) % capacity;
+        return position(nextOffset, (nextOffset == 0) != flip(recordPosition));
+    }
 
-        // [3] happen-before guarantee for writes
-        pointers.putLongVolatile(consumerPointerIndexes[consumerIndex], newConsumerPosition);
+    /**
+     * @return the position of the record or skipped tail following the one at the position
+     */
+    private long nextBoundary(long position)
+    {
+        return unsafeBuffer.getInt(offset(position)) == 0 ? position(0, !flip(position)) : nextPosition(position);
+    }
 
-        return true;
+    /**
+     * @return the number of bytes from a position to another one, at most one lap ahead
+     */
+    private long distance(long fromPosition, long toPosition)
+    {
+        int length = offset(toPosition) - offset(fromPosition);
+        return sameCircle(flip(fromPosition), flip(toPosition)) ? length : length + capacity;
+    }
+
+    /**
+     * Clears the consumed bytes from a position up to another one, at most one lap ahead.
+     */
+    private void clearBytes(long fromPosition, long toPosition)
+    {
+        int fromOffset = offset(fromPosition);
+        int toOffset = offset(toPosition);
+
+        if (sameCircle(flip(fromPosition), flip(toPosition)))
+        {
+            if (toOffset > fromOffset)
+            {
+                unsafeBuffer.clearBytes(fromOffset, toOffset - 1);
+            }
+            return;
+        }
+
+        unsafeBuffer.clearBytes(fromOffset, capacity - 1);
+        if (toOffset > 0)
+        {
+            unsafeBuffer.clearBytes(0, toOffset - 1);
+        }
+    }
+
+    static int alignedRecordLength(int messageLength)
+    {
+        return BitUtil.align(messageLength + HEADER_LENGTH + EXTRA_PADDING_LENGTH, ALIGNMENT);
     }
 
     private int calculateRecordLength(int messageLength)
     {
         return messageLength + HEADER_LENGTH + EXTRA_PADDING_LENGTH;
     }
+
+    private long loadPosition(int pointerIndex)
+    {
+        return VOLATILE_POSITIONS ? pointers.getLongVolatile(pointerIndex) : pointers.getLongAcquire(pointerIndex);
+    }
+
+    private void storePosition(int pointerIndex, long position)
+    {
+        if (VOLATILE_POSITIONS)
+        {
+            pointers.putLongVolatile(pointerIndex, position);
+            return;
+        }
+        pointers.putLongRelease(pointerIndex, position);
+    }
 }
@@ -0,0 +1,297 @@
+package gc.garcol.libcore;
+
+import static gc.garcol.libcore.OneToManyRingBuffer.ALIGNMENT;
+import static gc.garcol.libcore.OneToManyRingBuffer.HEADER_LENGTH;
+import static gc.garcol.libcore.OneToManyRingBuffer.NO_RECORD;
+import static gc.garcol.libcore.RingBufferUtil.*;
+
+/**
+ * A pool of workers processing the records of one consumer index out of order, whose results are released
+ * strictly in ring order.
+ * <p>
+ * Workers claim records with a CAS on a shared claim position and write their results into a bounded window of
+ * preallocated result slots. A single releasing thread drains the slots in ring order through {@link #release(MessageHandler)},
+ * and only then the consumer position of the stage advances. Workers stop claiming when the claimed records are
+ * one window ahead of the released position.
+ * <p>
+ * The consumer index must only be read through the pool once the pool is created.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class OrderedWorkerPool
+{
+    private static final byte COMPLETED = 1;
+    private static final int ALIGNMENT_SHIFT = Integer.numberOfTrailingZeros(ALIGNMENT);
+    private static final int CLAIM_POSITION_INDEX = Long.BYTES * 8;
+    private static final int PENDING_STRIDE = Long.BYTES * 8;
+
+    private final OneToManyRingBuffer ringBuffer;
+    private final UnsafeBuffer buffer;
+    private final int consumerIndex;
+    private final int workerSize;
+    private final int capacity;
+    private final int windowMask;
+    private final int windowLength;
+    private final int slotLength;
+    private final int maxResultLength;
+
+    /**
+     * [64 padding bytes] | claim position: 8 bytes | [64 padding bytes]
+     */
+    private final UnsafeBuffer counters;
+
+    /**
+     * One completion flag per result slot.
+     */
+    private final UnsafeBuffer completions;
+
+    /**
+     * The result slots: result length: 4 bytes | unused: 4 bytes | result | padding up to the alignment.
+     */
+    private final UnsafeBuffer results;
+
+    /**
+     * The position of the record each worker has claimed but not completed yet, one per cache line.
+     */
+    private final UnsafeBuffer pendings;
+
+    /**
+     * Constructs an OrderedWorkerPool on the specified consumer index.
+     *
+     * @param ringBuffer      the ring buffer to consume
+     * @param consumerIndex   the consumer index shared by the workers
+     * @param workerSize      the number of workers
+     * @param windowSize      the number of result slots, a power of two
+     * @param maxResultLength the maximum length of a result
+     */
+    public OrderedWorkerPool(OneToManyRingBuffer ringBuffer, int consumerIndex, int workerSize, int windowSize, int maxResultLength)
+    {
+        Preconditions.checkArgument(consumerIndex >= 0 && consumerIndex < ringBuffer.consumerSize(), "Consumer index is out of range");
+        Preconditions.checkArgument(workerSize >= 1, "Worker size must be greater than 0");
+        Preconditions.checkArgument(Integer.bitCount(windowSize) == 1, "Window size must be a power of two");
+        Preconditions.checkArgument(windowSize >= workerSize, "Window size must not be less than worker size");
+        Preconditions.checkArgument((long)windowSize * ALIGNMENT <= ringBuffer.capacity(), "Window must not cover more than the ring buffer");
+        Preconditions.checkArgument(maxResultLength >= 0, "Max result length must not be negative");
+
+        this.ringBuffer = ringBuffer;
+        this.buffer = ringBuffer.buffer();
+        this.consumerIndex = consumerIndex;
+        this.workerSize = workerSize;
+        this.capacity = ringBuffer.capacity();
+        this.windowMask = windowSize - 1;
+        this.windowLength = windowSize * ALIGNMENT;
+        this.slotLength = BitUtil.align(HEADER_LENGTH + maxResultLength, ALIGNMENT);
+        this.maxResultLength = maxResultLength;
+
+        counters = new UnsafeBuffer(CLAIM_POSITION_INDEX + Long.BYTES * 8);
+        completions = new UnsafeBuffer(windowSize);
+        results = new UnsafeBuffer(slotLength * windowSize);
+        pendings = new UnsafeBuffer(PENDING_STRIDE * (workerSize + 1));
+        for (int i = 0; i < workerSize; i++)
+        {
+            pendings.putLong(pendingIndex(i), NO_RECORD);
+        }
+
+        counters.putLongVolatile(CLAIM_POSITION_INDEX, ringBuffer.consumerPosition(consumerIndex));
+    }
+
+    /**
+     * @return the number of workers
+     */
+    public int workerSize()
+    {
+        return workerSize;
+    }
+
+    /**
+     * Processes messages from the ring buffer for the specified worker.
+     *
+     * @param workerIndex the index of the worker, each worker must be driven by a single thread
+     * @param handler     the handler to process the messages
+     * @return the number of messages processed
+     */
+    public int read(int workerIndex, final ResultHandler handler)
+    {
+        return read(workerIndex, handler, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Processes messages from the ring buffer for the specified worker with a limit.
+     *
+     * @param workerIndex the index of the worker, each worker must be driven by a single thread
+     * @param handler     the handler to process the messages
+     * @param limit       the maximum number of messages to process
+     * @return the number of messages processed
+     */
+    public int read(int workerIndex, final ResultHandler handler, int limit)
+    {
+        for (int i = 0; i < limit; i++)
+        {
+            if (!readOne(workerIndex, handler))
+            {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Claims and processes one message from the ring buffer for the specified worker.
+     * <p>
+     * If the handler returns a negative length, throws, or returns a result longer than the result capacity,
+     * the worker keeps its claim and the same message is delivered again on the next read of this worker.
+     *
+     * @param workerIndex the index of the worker, each worker must be driven by a single thread
+     * @param handler     the handler to process the message
+     * @return true if a message was processed, false otherwise
+     * @throws IllegalArgumentException if the result is longer than the result capacity
+     */
+    public boolean readOne(int workerIndex, final ResultHandler handler)
+    {
+        final int pendingIndex = pendingIndex(workerIndex);
+        long recordPosition = pendings.getLong(pendingIndex);
+
+        if (recordPosition == NO_RECORD)
+        {
+            recordPosition = claim();
+            if (recordPosition == NO_RECORD)
+            {
+                return false;
+            }
+        }
+
+        int recordOffset = offset(recordPosition);
+        int messageLength = buffer.getInt(recordOffset);
+        int messageTypeId = buffer.getInt(recordOffset + Integer.BYTES);
+        int slot = slot(recordOffset);
+        int slotOffset = slot * slotLength;
+
+        // the claim is kept until the result is complete, the release would otherwise wait for its slot forever
+        pendings.putLong(pendingIndex, recordPosition);
+        int resultLength = handler.onMessage(
+            messageTypeId, buffer, recordOffset + HEADER_LENGTH, messageLength,
+            results, slotOffset + HEADER_LENGTH, maxResultLength
+        );
+
+        if (resultLength < 0)
+        {
+            return false;
+        }
+        checkMsgLength(resultLength, maxResultLength);
+
+        pendings.putLong(pendingIndex, NO_RECORD);
+        results.putInt(slotOffset, resultLength);
+        completions.putByteVolatile(slot, COMPLETED);
+
+        return true;
+    }
+
+    /**
+     * Releases the results in ring order.
+     *
+     * @param handler the handler receiving the results, with the type identifier of their messages
+     * @return the number of results released
+     */
+    public int release(final MessageHandler handler)
+    {
+        return release(handler, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Releases the results in ring order with a limit. Must be called by a single thread.
+     * <p>
+     * A result whose handler returns false is released again on the next call.
+     *
+     * @param handler the handler receiving the results, with the type identifier of their messages
+     * @param limit   the maximum number of results to release
+     * @return the number of results released
+     */
+    public int release(final MessageHandler handler, int limit)
+    {
+        final long startPosition = ringBuffer.consumerPosition(consumerIndex);
+        final long claimPosition = counters.getLongVolatile(CLAIM_POSITION_INDEX);
+
+        long position = startPosition;
+        int released = 0;
+        while (released < limit && position != claimPosition)
+        {
+            int offset = offset(position);
+            int messageLength = buffer.getInt(offset);
+
+            if (messageLength == 0)
+            {
+                // the tail skipped by the producer
+                position = position(0, !flip(position));
+                continue;
+            }
+
+            int slot = slot(offset);
+            if (completions.getByteVolatile(slot) != COMPLETED)
+            {
+                break;
+            }
+
+            int slotOffset = slot * slotLength;
+            int messageTypeId = buffer.getInt(offset + Integer.BYTES);
+            if (!handler.onMessage(messageTypeId, results, slotOffset + HEADER_LENGTH, results.getInt(slotOffset)))
+            {
+                break;
+            }
+            completions.putByte(slot, (byte)0);
+
+            position = ringBuffer.nextPosition(position);
+            released++;
+        }
+
+        if (position != startPosition)
+        {
+            // cleared by the ring buffer if needed, after the position up to which the bytes are cleared is published
+            ringBuffer.commitConsumed(consumerIndex, startPosition, position);
+        }
+
+        return released;
+    }
+
+    private long claim()
+    {
+        while (true)
+        {
+            long claimPosition = counters.getLongVolatile(CLAIM_POSITION_INDEX);
+            long recordPosition = ringBuffer.sharedRecordPosition(consumerIndex, claimPosition);
+            if (recordPosition == NO_RECORD || !insideWindow(recordPosition))
+            {
+                return NO_RECORD;
+            }
+
+            if (counters.compareAndSetLong(CLAIM_POSITION_INDEX, claimPosition, ringBuffer.nextPosition(recordPosition)))
+            {
+                return recordPosition;
+            }
+        }
+    }
+
+    /**
+     * Two records less than one window apart never share a result slot.
+     */
+    private boolean insideWindow(long recordPosition)
+    {
+        long releasedPosition = ringBuffer.consumerPosition(consumerIndex);
+        int distance = offset(recordPosition) - offset(releasedPosition);
+        if (!sameCircle(flip(recordPosition), flip(releasedPosition)))
+        {
+            distance += capacity;
+        }
+        return distance < windowLength;
+    }
+
+    private int slot(int recordOffset)
+    {
+        return (recordOffset >> ALIGNMENT_SHIFT) & windowMask;
+    }
+
+    private int pendingIndex(int workerIndex)
+    {
+        return PENDING_STRIDE * workerIndex + PENDING_STRIDE - Long.BYTES;
+    }
+}
@@ -0,0 +1,115 @@
+package gc.garcol.libcore;
+
+/**
+ * Reads one consumer index of a subset of the partitions of a {@link PartitionedRingBuffer}.
+ * <p>
+ * A partition is read by one reader at a time: the reader takes the read lock of the partition for each batch.
+ * With work stealing, a reader whose own partitions are idle reads a batch of another partition whose lock is free,
+ * which keeps the messages of that partition in order.
+ * <p>
+ * A reader must be driven by a single thread.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class PartitionReader
+{
+    private final PartitionedRingBuffer partitionedRingBuffer;
+    private final int consumerIndex;
+    private final int[] ownedPartitions;
+    private final boolean workStealing;
+    private int nextOwned;
+    private int nextStolen;
+    private int currentPartition = -1;
+
+    PartitionReader(PartitionedRingBuffer partitionedRingBuffer, int consumerIndex, int[] ownedPartitions, boolean workStealing)
+    {
+        this.partitionedRingBuffer = partitionedRingBuffer;
+        this.consumerIndex = consumerIndex;
+        this.ownedPartitions = ownedPartitions;
+        this.workStealing = workStealing;
+    }
+
+    /**
+     * @return the partition being read, to be called from the handler
+     */
+    public int currentPartition()
+    {
+        return currentPartition;
+    }
+
+    /**
+     * Reads messages from the owned partitions, stealing from the other partitions if enabled.
+     *
+     * @param handler the handler to process the messages
+     * @return the number of messages read
+     */
+    public int read(final MessageHandler handler)
+    {
+        return read(handler, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads messages from the owned partitions, stealing from the other partitions if enabled, with a limit
+     * for each partition.
+     *
+     * @param handler the handler to process the messages
+     * @param limit   the maximum number of messages to read from each partition
+     * @return the number of messages read
+     */
+    public int read(final MessageHandler handler, int limit)
+    {
+        int read = 0;
+        int ownedSize = ownedPartitions.length;
+        for (int i = 0; i < ownedSize; i++)
+        {
+            read += readPartition(ownedPartitions[(nextOwned + i) % ownedSize], handler, limit);
+        }
+        if (ownedSize > 0)
+        {
+            nextOwned = (nextOwned + 1) % ownedSize;
+        }
+
+        if (read == 0 && workStealing)
+        {
+            read = steal(handler, limit);
+        }
+
+        return read;
+    }
+
+    private int steal(final MessageHandler handler, int limit)
+    {
+        int partitionSize = partitionedRingBuffer.partitionSize();
+        for (int i = 0; i < partitionSize; i++)
+        {
+            int partition = (nextStolen + i) % partitionSize;
+            int read = readPartition(partition, handler, limit);
+            if (read > 0)
+            {
+                nextStolen = (partition + 1) % partitionSize;
+                return read;
+            }
+        }
+        return 0;
+    }
+
+    private int readPartition(int partition, final MessageHandler handler, int limit)
+    {
+        if (!partitionedRingBuffer.tryLock(partition, consumerIndex))
+        {
+            return 0;
+        }
+
+        currentPartition = partition;
+        try
+        {
+            return partitionedRingBuffer.partition(partition).read(consumerIndex, handler, limit);
+        }
+        finally
+        {
+            currentPartition = -1;
+            partitionedRingBuffer.unlock(partition, consumerIndex);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package gc.garcol.libcore;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A group of {@link OneToManyRingBuffer}s, one per partition, sharing the same size and consumers.
+ * <p>
+ * Messages are routed to a partition either explicitly or by the hash of a key, so the messages of one partition
+ * (and then of one key) keep their order. Each partition keeps the single writer design: a partition must be
+ * written by one thread at a time, and different partitions can be written from different threads.
+ * <p>
+ * Partitions are consumed through {@link PartitionReader}s, each owning a subset of the partitions of one consumer index.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class PartitionedRingBuffer
+{
+    private static final int LOCK_STRIDE = Long.BYTES * 8;
+
+    private final OneToManyRingBuffer[] partitions;
+    private final int partitionSize;
+    private final int consumerSize;
+
+    /**
+     * One read lock per partition and consumer index, one per cache line.
+     */
+    private final UnsafeBuffer readLocks;
+
+    /**
+     * Constructs a PartitionedRingBuffer.
+     *
+     * @param partitionSize the number of partitions
+     * @param powSize       the power of two size of each partition
+     * @param consumerSize  the number of consumers of each partition
+     */
+    public PartitionedRingBuffer(int partitionSize, int powSize, int consumerSize)
+    {
+        Preconditions.checkArgument(partitionSize >= 1, "Partition size must be greater than 0");
+
+        this.partitionSize = partitionSize;
+        this.consumerSize = consumerSize;
+        this.partitions = new OneToManyRingBuffer[partitionSize];
+        for (int i = 0; i < partitionSize; i++)
+        {
+            partitions[i] = new OneToManyRingBuffer(powSize, consumerSize);
+        }
+        this.readLocks = new UnsafeBuffer(LOCK_STRIDE * (partitionSize * consumerSize + 1));
+    }
+
+    /**
+     * @return the number of partitions
+     */
+    public int partitionSize()
+    {
+        return partitionSize;
+    }
+
+    /**
+     * @return the number of consumers of each partition
+     */
+    public int consumerSize()
+    {
+        return consumerSize;
+    }
+
+    /**
+     * @param partition the partition
+     * @return the ring buffer of the partition
+     */
+    public OneToManyRingBuffer partition(int partition)
+    {
+        return partitions[partition];
+    }
+
+    /**
+     * Computes the partition of a key.
+     *
+     * @param key the key
+     * @return the partition the messages of the key are routed to
+     */
+    public int partitionOf(long key)
+    {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int)((hash >>> 32) % partitionSize);
+    }
+
+    /**
+     * Writes a message to the specified partition.
+     *
+     * @param partition the partition
+     * @param msgTypeId the type identifier of the message
+     * @param message   the message to write, the limit must be equal to the message length
+     * @return true if the message was written successfully, false otherwise
+     */
+    public boolean write(int partition, int msgTypeId, ByteBuffer message)
+    {
+        return partitions[partition].write(msgTypeId, message);
+    }
+
+    /**
+     * Writes a message to the partition of the specified key.
+     *
+     * @param key       the key
+     * @param msgTypeId the type identifier of the message
+     * @param message   the message to write, the limit must be equal to the message length
+     * @return true if the message was written successfully, false otherwise
+     */
+    public boolean writeByKey(long key, int msgTypeId, ByteBuffer message)
+    {
+        return partitions[partitionOf(key)].write(msgTypeId, message);
+    }
+
+    /**
+     * Creates a reader owning the partitions {@code p} of the consumer index for which {@code p % readerSize == readerIndex}.
+     *
+     * @param consumerIndex the consumer index
+     * @param readerIndex   the index of the reader
+     * @param readerSize    the number of readers sharing the consumer index
+     * @param workStealing  true if the reader reads the partitions of the other readers while its own are idle
+     * @return the reader
+     */
+    public PartitionReader reader(int consumerIndex, int readerIndex, int readerSize, boolean workStealing)
+    {
+        Preconditions.checkArgument(readerIndex >= 0 && readerIndex < readerSize, "Reader index is out of range");
+
+        int[] ownedPartitions = new int[(partitionSize - readerIndex + readerSize - 1) / readerSize];
+        for (int i = 0; i < ownedPartitions.length; i++)
+        {
+            ownedPartitions[i] = readerIndex + i * readerSize;
+        }
+        return reader(consumerIndex, ownedPartitions, workStealing);
+    }
+
+    /**
+     * Creates a reader owning the specified partitions of the consumer index.
+     *
+     * @param consumerIndex   the consumer index
+     * @param ownedPartitions the partitions owned by the reader
+     * @param workStealing    true if the reader reads the other partitions while its own are idle
+     * @return the reader
+     */
+    public PartitionReader reader(int consumerIndex, int[] ownedPartitions, boolean workStealing)
+    {
+        Preconditions.checkArgument(consumerIndex >= 0 && consumerIndex < consumerSize, "Consumer index is out of range");
+        for (int partition : ownedPartitions)
+        {
+            Preconditions.checkArgument(partition >= 0 && partition < partitionSize, "Partition is out of range");
+        }
+
+        return new PartitionReader(this, consumerIndex, ownedPartitions.clone(), workStealing);
+    }
+
+    boolean tryLock(int partition, int consumerIndex)
+    {
+        return readLocks.compareAndSetLong(lockIndex(partition, consumerIndex), 0, 1);
+    }
+
+    void unlock(int partition, int consumerIndex)
+    {
+        readLocks.putLongVolatile(lockIndex(partition, consumerIndex), 0);
+    }
+
+    private int lockIndex(int partition, int consumerIndex)
+    {
+        return LOCK_STRIDE * (partition * consumerSize + consumerIndex) + LOCK_STRIDE - Long.BYTES;
+    }
+}
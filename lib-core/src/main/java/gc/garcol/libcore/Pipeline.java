@@ -0,0 +1,248 @@
+package gc.garcol.libcore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wires the stages of a pipeline on a {@link OneToManyRingBuffer}: each stage is assigned the next consumer index,
+ * so a stage only reads the messages the previous stages are done with, and is polled by its own threads.
+ * <pre>{@code
+ * Pipeline pipeline = Pipeline.from(20)
+ *     .then("journal", (ringBuffer, consumerIndex) -> new JournalConsumer(ringBuffer, consumerIndex, journal)::journal)
+ *     .then("logic", logicHandler)
+ *     .parallel("output", replicateHandler, auditHandler)
+ *     .start();
+ * pipeline.ringBuffer().write(msgTypeId, message);
+ * }</pre>
+ * The stages of a {@link #parallel(String, MessageHandler...)} group run on their own threads, but they are still
+ * assigned consecutive consumer indexes, as the ring buffer gates each consumer on the previous one:
+ * a member of the group never passes the members before it.
+ * <p>
+ * The pipeline must be built and started by a single thread, the producer writes to {@link #ringBuffer()} once started.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class Pipeline implements AutoCloseable
+{
+    private final int powSize;
+    private final List<PipelineStage> stages = new ArrayList<>();
+    private final Map<String, PipelineStage> stagesByName = new HashMap<>();
+
+    private OneToManyRingBuffer ringBuffer;
+    private IdleStrategy idleStrategy = IdleStrategy.yielding();
+    private int batchSize = Integer.MAX_VALUE;
+    private boolean started;
+
+    private Pipeline(int powSize, OneToManyRingBuffer ringBuffer)
+    {
+        this.powSize = powSize;
+        this.ringBuffer = ringBuffer;
+    }
+
+    /**
+     * Starts building a pipeline on a ring buffer created on {@link #start()} with one consumer per stage.
+     *
+     * @param powSize the power of two size for the ring buffer
+     * @return the pipeline
+     */
+    public static Pipeline from(int powSize)
+    {
+        return new Pipeline(powSize, null);
+    }
+
+    /**
+     * Starts building a pipeline on an existing ring buffer, which must have exactly one consumer per stage.
+     *
+     * @param ringBuffer the ring buffer of the pipeline
+     * @return the pipeline
+     */
+    public static Pipeline from(OneToManyRingBuffer ringBuffer)
+    {
+        return new Pipeline(0, ringBuffer);
+    }
+
+    /**
+     * Sets the idle strategy of the threads of the stages, {@link IdleStrategy#yielding()} by default.
+     *
+     * @param idleStrategy the idle strategy
+     * @return this pipeline
+     */
+    public Pipeline idleStrategy(IdleStrategy idleStrategy)
+    {
+        checkNotStarted();
+        this.idleStrategy = idleStrategy;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of messages read by a poll of the message handler stages, unlimited by default.
+     *
+     * @param batchSize the maximum number of messages read by a poll
+     * @return this pipeline
+     */
+    public Pipeline batchSize(int batchSize)
+    {
+        checkNotStarted();
+        Preconditions.checkArgument(batchSize >= 1, "Batch size must be greater than 0");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Adds a stage handling the messages on one thread.
+     *
+     * @param name    the name of the stage, also the name of its thread
+     * @param handler the handler of the messages
+     * @return this pipeline
+     */
+    public Pipeline then(String name, MessageHandler handler)
+    {
+        return then(name, (ringBuffer, consumerIndex) -> {
+            final int limit = batchSize;
+            return () -> ringBuffer.read(consumerIndex, handler, limit);
+        });
+    }
+
+    /**
+     * Adds a stage polling the work created for its consumer index on one thread, e.g. a {@link JournalConsumer}.
+     *
+     * @param name    the name of the stage, also the name of its thread
+     * @param factory the factory of the work of the stage
+     * @return this pipeline
+     */
+    public Pipeline then(String name, StageFactory factory)
+    {
+        return add(name, factory);
+    }
+
+    /**
+     * Adds a group of stages handling the same messages, each one on its own thread.
+     *
+     * @param name     the name of the group, the stages are named after it followed by their position in the group
+     * @param handlers the handlers of the messages, one per stage
+     * @return this pipeline
+     */
+    public Pipeline parallel(String name, MessageHandler... handlers)
+    {
+        Preconditions.checkArgument(handlers.length >= 1, "Parallel stages must not be empty");
+        for (int i = 0; i < handlers.length; i++)
+        {
+            then(name + "-" + i, handlers[i]);
+        }
+        return this;
+    }
+
+    /**
+     * Adds a stage of competing workers, each message being handled by one of them, see {@link WorkerPool}.
+     *
+     * @param name       the name of the stage, its threads are named after it followed by the worker index
+     * @param workerSize the number of workers, each one on its own thread
+     * @param handler    the handler of the messages, called concurrently by the workers
+     * @return this pipeline
+     */
+    public Pipeline workers(String name, int workerSize, MessageHandler handler)
+    {
+        Preconditions.checkArgument(workerSize >= 1, "Worker size must be greater than 0");
+
+        // the pool is created along with the work of the first worker, before any thread starts
+        final WorkerPool[] workerPool = new WorkerPool[1];
+        final StageFactory[] factories = new StageFactory[workerSize];
+        for (int i = 0; i < workerSize; i++)
+        {
+            final int workerIndex = i;
+            factories[i] = (ringBuffer, consumerIndex) -> {
+                if (workerPool[0] == null)
+                {
+                    workerPool[0] = new WorkerPool(ringBuffer, consumerIndex, workerSize);
+                }
+                final WorkerPool pool = workerPool[0];
+                final int limit = batchSize;
+                return () -> pool.read(workerIndex, handler, limit);
+            };
+        }
+        return add(name, factories);
+    }
+
+    /**
+     * Creates the ring buffer if needed, then starts the threads of every stage.
+     *
+     * @return this pipeline
+     */
+    public Pipeline start()
+    {
+        checkNotStarted();
+        Preconditions.checkArgument(!stages.isEmpty(), "Pipeline must have at least one stage");
+
+        if (ringBuffer == null)
+        {
+            ringBuffer = new OneToManyRingBuffer(powSize, stages.size());
+        }
+        Preconditions.checkArgument(ringBuffer.consumerSize() == stages.size(), "Ring buffer must have " + stages.size() + " consumers, one per stage");
+
+        started = true;
+        for (PipelineStage stage : stages)
+        {
+            stage.start(ringBuffer, idleStrategy);
+        }
+        return this;
+    }
+
+    /**
+     * @return the ring buffer of the pipeline, null until started if created by the pipeline
+     */
+    public OneToManyRingBuffer ringBuffer()
+    {
+        return ringBuffer;
+    }
+
+    /**
+     * @param name the name of the stage
+     * @return the stage, or null if there is no stage of that name
+     */
+    public PipelineStage stage(String name)
+    {
+        return stagesByName.get(name);
+    }
+
+    /**
+     * @return the stages in the order of their consumer indexes
+     */
+    public List<PipelineStage> stages()
+    {
+        return Collections.unmodifiableList(stages);
+    }
+
+    /**
+     * Stops the threads of every stage, from the first stage to the last one, and waits for them.
+     */
+    public void close()
+    {
+        if (started)
+        {
+            for (PipelineStage stage : stages)
+            {
+                stage.stop();
+            }
+        }
+    }
+
+    private Pipeline add(String name, StageFactory... factories)
+    {
+        checkNotStarted();
+        Preconditions.checkArgument(!stagesByName.containsKey(name), "Stage " + name + " already exists");
+
+        PipelineStage stage = new PipelineStage(name, stages.size(), factories);
+        stages.add(stage);
+        stagesByName.put(name, stage);
+        return this;
+    }
+
+    private void checkNotStarted()
+    {
+        Preconditions.checkArgument(!started, "Pipeline is already started");
+    }
+}
@@ -0,0 +1,175 @@
+package gc.garcol.libcore;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntSupplier;
+
+/**
+ * A stage of a {@link Pipeline}: the threads polling the work of one consumer index of its ring buffer,
+ * and the handle to their metrics and shutdown.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class PipelineStage
+{
+    /**
+     * One counter per cache line, so that the threads of the stage do not share the line of their counters.
+     */
+    private static final int COUNTER_STRIDE = 8;
+
+    private final String name;
+    private final int consumerIndex;
+    private final StageFactory[] factories;
+    private final AtomicLongArray processedMessages;
+
+    private volatile boolean running;
+    private OneToManyRingBuffer ringBuffer;
+    private Thread[] threads;
+
+    /**
+     * Constructs a PipelineStage polled by one thread per factory.
+     *
+     * @param name          the name of the stage
+     * @param consumerIndex the consumer index assigned to the stage
+     * @param factories     the factories of the work of each thread
+     */
+    PipelineStage(String name, int consumerIndex, StageFactory... factories)
+    {
+        this.name = name;
+        this.consumerIndex = consumerIndex;
+        this.factories = factories;
+        this.processedMessages = new AtomicLongArray(COUNTER_STRIDE * (factories.length + 1));
+    }
+
+    /**
+     * @return the name of the stage
+     */
+    public String name()
+    {
+        return name;
+    }
+
+    /**
+     * @return the consumer index assigned to the stage
+     */
+    public int consumerIndex()
+    {
+        return consumerIndex;
+    }
+
+    /**
+     * @return the number of threads of the stage
+     */
+    public int threadSize()
+    {
+        return factories.length;
+    }
+
+    /**
+     * @return the number of messages processed by the threads of the stage
+     */
+    public long processedMessages()
+    {
+        long processed = 0;
+        for (int i = 0; i < factories.length; i++)
+        {
+            processed += processedMessages.get(counterIndex(i));
+        }
+        return processed;
+    }
+
+    /**
+     * @return the number of bytes published by the producer and not consumed yet by the stage
+     */
+    public long lag()
+    {
+        return ringBuffer.lag(consumerIndex);
+    }
+
+    /**
+     * @return true if a thread of the stage is running, false otherwise
+     */
+    public boolean isRunning()
+    {
+        if (threads == null)
+        {
+            return false;
+        }
+        for (Thread thread : threads)
+        {
+            if (thread.isAlive())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stops the threads of the stage after their current poll and waits for them.
+     * The following stages stop receiving messages, and the producer is blocked once the ring buffer is full.
+     */
+    public void stop()
+    {
+        running = false;
+        boolean interrupted = false;
+        for (Thread thread : threads)
+        {
+            while (thread.isAlive())
+            {
+                try
+                {
+                    thread.join();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Creates the work of each thread, then starts the threads.
+     */
+    void start(OneToManyRingBuffer ringBuffer, IdleStrategy idleStrategy)
+    {
+        this.ringBuffer = ringBuffer;
+        this.running = true;
+        this.threads = new Thread[factories.length];
+
+        for (int i = 0; i < factories.length; i++)
+        {
+            final IntSupplier work = factories[i].create(ringBuffer, consumerIndex);
+            final int counterIndex = counterIndex(i);
+            threads[i] = new Thread(() -> {
+                long processed = 0;
+                while (running)
+                {
+                    int workCount = work.getAsInt();
+                    if (workCount > 0)
+                    {
+                        processed += workCount;
+                        processedMessages.lazySet(counterIndex, processed);
+                    }
+                    idleStrategy.idle(workCount);
+                }
+            }, factories.length == 1 ? name : name + "-" + i);
+            threads[i].setDaemon(true);
+        }
+
+        for (Thread thread : threads)
+        {
+            thread.start();
+        }
+    }
+
+    private static int counterIndex(int threadIndex)
+    {
+        return COUNTER_STRIDE * (threadIndex + 1);
+    }
+}
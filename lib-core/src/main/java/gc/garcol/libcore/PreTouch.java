@@ -0,0 +1,83 @@
+package gc.garcol.libcore;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Touches every page of a memory range ahead of its use, so that its page faults are taken once at startup
+ * instead of on the hot path of the first lap.
+ * <p>
+ * A large range is split between several threads, each one touching a contiguous part of it.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+final class PreTouch
+{
+    /**
+     * The smallest page size of the supported platforms, touching every page of a larger page size too.
+     */
+    static final int PAGE_SIZE = 4096;
+
+    /**
+     * The minimum number of bytes touched by each thread.
+     */
+    static final int MIN_LENGTH_PER_THREAD = 1 << 24;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private PreTouch()
+    {
+    }
+
+    /**
+     * Touches the byte at the start index, then the first byte of each following page of the range.
+     *
+     * @param fromIndex   the index of the first byte of the range
+     * @param toIndex     the index after the last byte of the range
+     * @param parallelism the maximum number of threads
+     * @param touch       writes the byte at the index it accepts
+     */
+    static void preTouch(final int fromIndex, final int toIndex, final int parallelism, final IntConsumer touch)
+    {
+        Preconditions.checkArgument(parallelism >= 1, "Parallelism must be greater than 0");
+
+        final int threadSize = Math.min(parallelism, Math.max(1, (toIndex - fromIndex) / MIN_LENGTH_PER_THREAD));
+        if (threadSize == 1)
+        {
+            touchRange(fromIndex, toIndex, touch);
+            return;
+        }
+
+        final int chunkLength = BitUtil.align((toIndex - fromIndex + threadSize - 1) / threadSize, PAGE_SIZE);
+        final Thread[] threads = new Thread[threadSize];
+        for (int i = 0; i < threadSize; i++)
+        {
+            final int chunkStart = fromIndex + i * chunkLength;
+            final int chunkEnd = Math.min(toIndex, chunkStart + chunkLength);
+            threads[i] = new Thread(() -> touchRange(chunkStart, chunkEnd, touch), "pre-touch-" + i);
+            threads[i].start();
+        }
+
+        try
+        {
+            for (Thread thread : threads)
+            {
+                thread.join();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while pre-touching", e);
+        }
+    }
+
+    private static void touchRange(final int fromIndex, final int toIndex, final IntConsumer touch)
+    {
+        for (int index = fromIndex; index < toIndex; index = (index & -PAGE_SIZE) + PAGE_SIZE)
+        {
+            touch.accept(index);
+        }
+    }
+}
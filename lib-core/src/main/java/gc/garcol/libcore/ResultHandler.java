@@ -0,0 +1,26 @@
+package gc.garcol.libcore;
+
+/**
+ * Functional interface for processing a message into a result, used by the workers of an {@link OrderedWorkerPool}.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+@FunctionalInterface
+public interface ResultHandler
+{
+
+    /**
+     * Called for the processing of each message claimed by a worker.
+     *
+     * @param msgTypeId      the type identifier of the message
+     * @param buffer         the buffer containing the message
+     * @param index          the starting index of the message in the buffer
+     * @param length         the length of the message in the buffer
+     * @param resultBuffer   the buffer to write the result into
+     * @param resultIndex    the starting index of the result in the result buffer
+     * @param resultCapacity the maximum length of the result
+     * @return the length of the written result, or a negative value if the message should be delivered again
+     */
+    int onMessage(int msgTypeId, UnsafeBuffer buffer, int index, int length, UnsafeBuffer resultBuffer, int resultIndex, int resultCapacity);
+}
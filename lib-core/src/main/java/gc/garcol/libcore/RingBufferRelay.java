@@ -0,0 +1,162 @@
+package gc.garcol.libcore;
+
+import java.nio.ByteBuffer;
+
+import static gc.garcol.libcore.OneToManyRingBuffer.HEADER_LENGTH;
+import static gc.garcol.libcore.OneToManyRingBuffer.INSUFFICIENT_CAPACITY;
+import static gc.garcol.libcore.OneToManyRingBuffer.NO_RECORD;
+import static gc.garcol.libcore.RingBufferUtil.offset;
+
+/**
+ * Relays messages from a source ring buffer into a target {@link OneToManyRingBuffer}, as the producer of the target.
+ * <p>
+ * Each message is copied once, from the source memory straight into a record claimed in the target, without any
+ * intermediate buffer nor limit on the message length other than the one of the target. The claimed records are
+ * published together by {@link #commit()}, and a full target applies backpressure: the message which does not fit is left
+ * unconsumed in the source, the same as an ABORT, until the consumers of the target make room for it. A message too
+ * long for the target is left unconsumed in the source as well, once the messages before it are published.
+ * <p>
+ * The source is either a consumer of a {@link OneToManyRingBuffer}, relayed in batches by {@link #relay(OneToManyRingBuffer, int, int)},
+ * or any ring buffer read with this relay as its {@link MessageHandler}, or with {@link #offer(int, ByteBuffer, int, int)},
+ * followed by a {@link #commit()}.
+ * <p>
+ * A relay must be driven by a single thread, the only producer of the target.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class RingBufferRelay implements MessageHandler
+{
+    private final OneToManyRingBuffer target;
+    private final UnsafeBuffer targetBuffer;
+    private final int maxMessageLength;
+
+    private int pendingMessages;
+
+    /**
+     * Constructs a RingBufferRelay.
+     *
+     * @param target the ring buffer to relay the messages to
+     */
+    public RingBufferRelay(OneToManyRingBuffer target)
+    {
+        this.target = target;
+        this.targetBuffer = target.buffer();
+        this.maxMessageLength = (target.capacity() >> 3) - HEADER_LENGTH - OneToManyRingBuffer.EXTRA_PADDING_LENGTH;
+    }
+
+    /**
+     * Relays the messages available to a consumer of a source ring buffer, committing both ring buffers once for the batch.
+     *
+     * @param source        the ring buffer to relay the messages from
+     * @param consumerIndex the index of the consumer of the source
+     * @param limit         the maximum number of messages to relay
+     * @return the number of messages relayed
+     * @throws IllegalArgumentException if the next message is too long for the target, the messages relayed before it are
+     *                                  committed and it is left unconsumed in the source
+     */
+    public int relay(OneToManyRingBuffer source, int consumerIndex, int limit)
+    {
+        final UnsafeBuffer sourceBuffer = source.buffer();
+        final long startPosition = source.consumerPosition(consumerIndex);
+        long position = startPosition;
+        int relayed = 0;
+        boolean oversized = false;
+
+        while (relayed < limit)
+        {
+            long recordPosition = source.recordPosition(consumerIndex, position);
+            if (recordPosition == NO_RECORD)
+            {
+                break;
+            }
+
+            int recordOffset = offset(recordPosition);
+            int messageLength = sourceBuffer.getInt(recordOffset);
+            if (messageLength > maxMessageLength)
+            {
+                // the batch is committed first, the next relay would otherwise copy its messages again
+                oversized = true;
+                break;
+            }
+
+            int messageTypeId = sourceBuffer.getInt(recordOffset + Integer.BYTES);
+            int index = target.tryClaim(messageTypeId, messageLength);
+            if (index == INSUFFICIENT_CAPACITY)
+            {
+                break;
+            }
+
+            targetBuffer.putBytes(index, sourceBuffer, recordOffset + HEADER_LENGTH, messageLength);
+            position = source.nextPosition(recordPosition);
+            relayed++;
+        }
+
+        if (relayed > 0)
+        {
+            // the copies are published before the source records can be overwritten
+            target.commit();
+            source.commitConsumed(consumerIndex, startPosition, position);
+        }
+        Preconditions.checkArgument(!oversized, "Message length must not be greater than " + maxMessageLength);
+        return relayed;
+    }
+
+    /**
+     * Copies a message into a claimed record of the target, published on the next {@link #commit()}.
+     *
+     * @return true if the message has been copied, false if the target is full and the message must be offered again
+     */
+    public boolean onMessage(int msgTypeId, UnsafeBuffer buffer, int index, int length)
+    {
+        int targetIndex = target.tryClaim(msgTypeId, length);
+        if (targetIndex == INSUFFICIENT_CAPACITY)
+        {
+            return false;
+        }
+
+        targetBuffer.putBytes(targetIndex, buffer, index, length);
+        pendingMessages++;
+        return true;
+    }
+
+    /**
+     * Copies a message from a range of a buffer, e.g. the memory of a foreign ring buffer, into a claimed record of the
+     * target, published on the next {@link #commit()}.
+     *
+     * @param msgTypeId the type identifier of the message
+     * @param buffer    the buffer containing the message, heap or direct
+     * @param index     the index of the message in the buffer
+     * @param length    the length of the message
+     * @return true if the message has been copied, false if the target is full and the message must be offered again
+     */
+    public boolean offer(int msgTypeId, ByteBuffer buffer, int index, int length)
+    {
+        int targetIndex = target.tryClaim(msgTypeId, length);
+        if (targetIndex == INSUFFICIENT_CAPACITY)
+        {
+            return false;
+        }
+
+        targetBuffer.putBytes(targetIndex, buffer, index, length);
+        pendingMessages++;
+        return true;
+    }
+
+    /**
+     * Publishes the messages copied by {@link #onMessage(int, UnsafeBuffer, int, int)} and
+     * {@link #offer(int, ByteBuffer, int, int)} since the last commit.
+     *
+     * @return the number of messages published
+     */
+    public int commit()
+    {
+        final int committed = pendingMessages;
+        if (committed > 0)
+        {
+            target.commit();
+            pendingMessages = 0;
+        }
+        return committed;
+    }
+}
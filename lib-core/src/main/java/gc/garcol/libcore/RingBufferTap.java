@@ -0,0 +1,156 @@
+package gc.garcol.libcore;
+
+import static gc.garcol.libcore.OneToManyRingBuffer.HEADER_LENGTH;
+import static gc.garcol.libcore.OneToManyRingBuffer.SEQUENCE_LENGTH;
+
+/**
+ * A read-only cursor following the producer of a {@link OneToManyRingBuffer} without a consumer index, for diagnostics,
+ * sampling or debugging: the tap is never part of the gating, so a slow tap never slows the producer nor the consumers.
+ * <p>
+ * Each message is copied into a scratch buffer and validated before being handed to the handler: the record has not
+ * been overwritten nor cleared as long as it is not behind the position gating the producer. When the tap falls behind it, the tap
+ * has been lapped and resynchronizes to the latest position of the producer, the messages skipped being counted from
+ * the sequences of the records.
+ * <p>
+ * A tap starts at the position of the producer and must be driven by a single thread.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class RingBufferTap
+{
+    private final OneToManyRingBuffer ringBuffer;
+    private final UnsafeBuffer buffer;
+    private final UnsafeBuffer scratchBuffer;
+    private final int capacity;
+    private final int mask;
+    private final int maxMessageLength;
+
+    private long cursor;
+    private long nextSequence;
+    private long lappedCount;
+    private long skippedMessages;
+
+    /**
+     * Constructs a RingBufferTap starting at the position of the producer.
+     *
+     * @param ringBuffer the ring buffer to tap
+     */
+    public RingBufferTap(OneToManyRingBuffer ringBuffer)
+    {
+        this.ringBuffer = ringBuffer;
+        this.buffer = ringBuffer.buffer();
+        this.capacity = ringBuffer.capacity();
+        this.mask = capacity - 1;
+        this.maxMessageLength = (capacity >> 3) - HEADER_LENGTH - OneToManyRingBuffer.EXTRA_PADDING_LENGTH;
+        this.scratchBuffer = new UnsafeBuffer(maxMessageLength);
+        this.cursor = ringBuffer.producerAbsolutePosition();
+        this.nextSequence = -1;
+    }
+
+    /**
+     * @return the number of times the tap has been lapped
+     */
+    public long lappedCount()
+    {
+        return lappedCount;
+    }
+
+    /**
+     * @return the number of messages skipped because the tap has been lapped
+     */
+    public long skippedMessages()
+    {
+        return skippedMessages;
+    }
+
+    /**
+     * Reads messages from the ring buffer.
+     *
+     * @param handler the handler to process the messages, the buffer is a scratch copy starting at index 0
+     * @return the number of messages read
+     */
+    public int read(final MessageHandler handler)
+    {
+        return read(handler, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads messages from the ring buffer with a limit.
+     * <p>
+     * A message whose handler returns false is delivered again on the next read, unless it has been overwritten by then.
+     *
+     * @param handler the handler to process the messages, the buffer is a scratch copy starting at index 0
+     * @param limit   the maximum number of messages to read
+     * @return the number of messages read
+     */
+    public int read(final MessageHandler handler, int limit)
+    {
+        int read = 0;
+        while (read < limit && cursor < ringBuffer.producerAbsolutePosition())
+        {
+            final int recordOffset = (int)cursor & mask;
+            final int messageLength = buffer.getInt(recordOffset);
+            if (messageLength == 0 && validate(cursor))
+            {
+                // the skipped tail, the next record is at the beginning of the buffer
+                cursor += capacity - recordOffset;
+                continue;
+            }
+
+            // a length out of bounds is torn by the producer, the validation fails
+            final int alignedRecordLength = messageLength > 0 && messageLength <= maxMessageLength
+                ? OneToManyRingBuffer.alignedRecordLength(messageLength)
+                : 0;
+            if (alignedRecordLength == 0 || recordOffset + alignedRecordLength > capacity)
+            {
+                resync();
+                break;
+            }
+
+            final int messageTypeId = buffer.getInt(recordOffset + Integer.BYTES);
+            final long sequence = buffer.getLong(recordOffset + alignedRecordLength - SEQUENCE_LENGTH);
+            scratchBuffer.putBytes(0, buffer, recordOffset + HEADER_LENGTH, messageLength);
+            if (!validate(cursor))
+            {
+                resync();
+                break;
+            }
+
+            if (nextSequence >= 0 && sequence > nextSequence)
+            {
+                skippedMessages += sequence - nextSequence;
+            }
+            nextSequence = sequence;
+
+            if (!handler.onMessage(messageTypeId, scratchBuffer, 0, messageLength))
+            {
+                break;
+            }
+
+            nextSequence = sequence + 1;
+            cursor += alignedRecordLength;
+            read++;
+        }
+        return read;
+    }
+
+    /**
+     * The record at the position has not been overwritten if it is not behind the position gating the producer.
+     */
+    private boolean validate(long position)
+    {
+        // the record is read before the gating position
+        MemoryAccess.loadFence();
+        return position >= ringBuffer.gatingAbsolutePosition();
+    }
+
+    /**
+     * Jumps to the position of the producer, the sequence of the next message read tells how many were skipped.
+     */
+    private void resync()
+    {
+        lappedCount++;
+        cursor = ringBuffer.producerAbsolutePosition();
+    }
+}
@@ -0,0 +1,216 @@
+package gc.garcol.libcore;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static gc.garcol.libcore.OneToManyRingBuffer.INSUFFICIENT_CAPACITY;
+
+/**
+ * An overflow mode for the producer of a {@link OneToManyRingBuffer}: the messages which do not fit in the ring buffer
+ * are spilled, in order, into a memory-mapped spill file instead of stalling the producer, so that a short burst is
+ * absorbed at disk bandwidth instead of propagating backpressure upstream.
+ * <p>
+ * The spill file is a circular buffer of records aligned to {@link #ALIGNMENT}: record length: 4 bytes | type: 4 bytes |
+ * message. A zero record length marks the skipped end of the file. While messages are spilled, every new message is
+ * spilled after them, and {@link #drain(int)} moves the spilled messages into the ring buffer as the consumers free
+ * some space, so the consumers read every message in order from the ring buffer only. Once the spill file is drained,
+ * the messages are written straight into the ring buffer again.
+ * <p>
+ * A spilling ring buffer must be driven by a single thread, the only producer of the ring buffer, which calls
+ * {@link #drain(int)} in its duty cycle while {@link #isSpilling()}.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class SpillingRingBuffer
+{
+    /**
+     * The length of the header in bytes.
+     * The header contains the record length and the type of the message.
+     */
+    public static final int HEADER_LENGTH = Integer.BYTES * 2; // record length, type
+
+    /**
+     * Alignment as a multiple of bytes for each record.
+     */
+    public static final int ALIGNMENT = Long.BYTES;
+
+    private final OneToManyRingBuffer ringBuffer;
+    private final UnsafeBuffer buffer;
+    private final MappedByteBuffer spill;
+    private final int spillLength;
+    private final int maxMessageLength;
+
+    private long writePosition;
+    private long readPosition;
+    private long spilledMessages;
+
+    /**
+     * Constructs a SpillingRingBuffer.
+     *
+     * @param ringBuffer  the ring buffer to write into
+     * @param spillFile   the spill file, created if it does not exist, its content is overwritten
+     * @param spillLength the length of the spill file in bytes
+     */
+    public SpillingRingBuffer(OneToManyRingBuffer ringBuffer, Path spillFile, int spillLength)
+    {
+        Preconditions.checkArgument(spillLength >= 1 << 10, "Spill length must be greater than 1024");
+        Preconditions.checkArgument(spillLength % ALIGNMENT == 0, "Spill length must be a multiple of " + ALIGNMENT);
+
+        this.ringBuffer = ringBuffer;
+        this.buffer = ringBuffer.buffer();
+        this.spill = Journal.map(spillFile, spillLength, FileChannel.MapMode.READ_WRITE);
+        this.spillLength = spillLength;
+        // a spilled message must fit in the ring buffer
+        this.maxMessageLength = (ringBuffer.capacity() >> 3) - OneToManyRingBuffer.HEADER_LENGTH - OneToManyRingBuffer.EXTRA_PADDING_LENGTH;
+    }
+
+    /**
+     * @return the ring buffer written into
+     */
+    public OneToManyRingBuffer ringBuffer()
+    {
+        return ringBuffer;
+    }
+
+    /**
+     * @return true if some messages are waiting in the spill file
+     */
+    public boolean isSpilling()
+    {
+        return spilledMessages > 0;
+    }
+
+    /**
+     * @return the number of messages waiting in the spill file
+     */
+    public long spilledMessages()
+    {
+        return spilledMessages;
+    }
+
+    /**
+     * @return the number of bytes of the spill file in use, skipped end included
+     */
+    public long spilledBytes()
+    {
+        return writePosition - readPosition;
+    }
+
+    /**
+     * Writes a message to the ring buffer, or to the spill file if the ring buffer is full or messages are waiting
+     * in the spill file.
+     *
+     * @param msgTypeId the type identifier of the message
+     * @param message   the message to write, the limit must be equal to the message length
+     * @return true if the message was written successfully, false if neither the ring buffer nor the spill file has space
+     */
+    public boolean write(int msgTypeId, ByteBuffer message)
+    {
+        return write(msgTypeId, message, 0, message.limit());
+    }
+
+    /**
+     * Writes a message from a range of a buffer to the ring buffer, or to the spill file if the ring buffer is full
+     * or messages are waiting in the spill file.
+     *
+     * @param msgTypeId the type identifier of the message
+     * @param buffer    the buffer containing the message, heap or direct
+     * @param index     the index of the message in the buffer
+     * @param length    the length of the message
+     * @return true if the message was written successfully, false if neither the ring buffer nor the spill file has space
+     */
+    public boolean write(int msgTypeId, ByteBuffer buffer, int index, int length)
+    {
+        if (spilledMessages > 0)
+        {
+            drain(Integer.MAX_VALUE);
+        }
+
+        // the fast path, nothing is waiting in the spill file
+        if (spilledMessages == 0 && ringBuffer.write(msgTypeId, buffer, index, length))
+        {
+            return true;
+        }
+
+        return spill(msgTypeId, buffer, index, length);
+    }
+
+    /**
+     * Moves the spilled messages into the ring buffer, in order, until the ring buffer is full.
+     *
+     * @param limit the maximum number of messages to move
+     * @return the number of messages moved
+     */
+    public int drain(int limit)
+    {
+        int drained = 0;
+        while (drained < limit && spilledMessages > 0)
+        {
+            final int offset = (int)(readPosition % spillLength);
+            final int recordLength = spill.getInt(offset);
+            if (recordLength == 0)
+            {
+                // the skipped end, the next record is at the beginning of the file
+                readPosition += spillLength - offset;
+                continue;
+            }
+
+            final int messageLength = recordLength - HEADER_LENGTH;
+            final int index = ringBuffer.tryClaim(spill.getInt(offset + Integer.BYTES), messageLength);
+            if (index == INSUFFICIENT_CAPACITY)
+            {
+                break;
+            }
+            buffer.putBytes(index, spill, offset + HEADER_LENGTH, messageLength);
+
+            readPosition += BitUtil.align(recordLength, ALIGNMENT);
+            spilledMessages--;
+            drained++;
+        }
+
+        if (drained > 0)
+        {
+            ringBuffer.commit();
+        }
+        if (spilledMessages == 0)
+        {
+            // the next burst is spilled from the beginning of the file, in pages still resident
+            writePosition = 0;
+            readPosition = 0;
+        }
+        return drained;
+    }
+
+    private boolean spill(int msgTypeId, ByteBuffer buffer, int index, int length)
+    {
+        Preconditions.checkArgument(length <= maxMessageLength, "Message length must not be greater than " + maxMessageLength);
+
+        final int recordLength = HEADER_LENGTH + length;
+        final int alignedRecordLength = BitUtil.align(recordLength, ALIGNMENT);
+        int offset = (int)(writePosition % spillLength);
+        final int tailLength = spillLength - offset;
+        final int requiredLength = alignedRecordLength > tailLength ? tailLength + alignedRecordLength : alignedRecordLength;
+        if (writePosition - readPosition + requiredLength > spillLength)
+        {
+            return false;
+        }
+
+        if (alignedRecordLength > tailLength)
+        {
+            spill.putInt(offset, 0);
+            writePosition += tailLength;
+            offset = 0;
+        }
+
+        spill.putInt(offset, recordLength);
+        spill.putInt(offset + Integer.BYTES, msgTypeId);
+        spill.put(offset + HEADER_LENGTH, buffer, index, length);
+
+        writePosition += alignedRecordLength;
+        spilledMessages++;
+        return true;
+    }
+}
@@ -0,0 +1,24 @@
+package gc.garcol.libcore;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Functional interface for creating the work of a {@link Pipeline} stage once its consumer index is assigned,
+ * e.g. {@code (ringBuffer, consumerIndex) -> new JournalConsumer(ringBuffer, consumerIndex, journal)::journal}.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+@FunctionalInterface
+public interface StageFactory
+{
+
+    /**
+     * Called once when the pipeline starts.
+     *
+     * @param ringBuffer    the ring buffer of the pipeline
+     * @param consumerIndex the index of the consumer assigned to the stage
+     * @return the work of the stage, polled by its thread, returning the number of messages processed
+     */
+    IntSupplier create(OneToManyRingBuffer ringBuffer, int consumerIndex);
+}
@@ -0,0 +1,249 @@
+package gc.garcol.libcore;
+
+import java.util.Arrays;
+
+import static gc.garcol.libcore.OneToManyRingBuffer.INSUFFICIENT_CAPACITY;
+
+/**
+ * A hashed timer wheel publishing an expiry record into a {@link OneToManyRingBuffer} when a timer expires,
+ * e.g. for order expiries and retry timeouts delivered back into a pipeline.
+ * <p>
+ * The timers live in preallocated primitive arrays: each bucket of the wheel is a doubly linked list of timer slots,
+ * the unused slots form a free list, so scheduling and cancelling are O(1) and produce no garbage. A timer further
+ * than one turn of the wheel stays in its bucket and is skipped until its deadline.
+ * <p>
+ * An expiry record has the type of its timer and the message: correlation id: 8 bytes | deadline: 8 bytes,
+ * in native byte order. When the ring buffer is full, the expired timers are kept and published by a later poll.
+ * <p>
+ * A timer wheel must be driven by a single thread, e.g. the duty cycle of a consumer, which is the only producer
+ * of the ring buffer.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class TimerWheel
+{
+    /**
+     * Returned by {@link #schedule(int, long, long)} when every timer slot is in use.
+     */
+    public static final long NULL_TIMER = -1;
+
+    /**
+     * The length of an expiry record message.
+     */
+    public static final int EXPIRY_LENGTH = Long.BYTES * 2; // correlation id, deadline
+
+    private static final int NONE = -1;
+
+    private final OneToManyRingBuffer ringBuffer;
+    private final UnsafeBuffer buffer;
+    private final long startTimeNs;
+    private final long tickNs;
+    private final int bucketMask;
+
+    private final int[] bucketHeads;
+    private final long[] deadlines;
+    private final long[] correlationIds;
+    private final int[] msgTypeIds;
+    private final int[] buckets;
+    private final int[] nexts;
+    private final int[] previouses;
+    private final int[] generations;
+
+    private int freeHead;
+    private int timerCount;
+    private long currentTick;
+
+    /**
+     * Constructs a TimerWheel.
+     *
+     * @param ringBuffer    the ring buffer to publish the expiry records into
+     * @param startTimeNs   the time the ticks are counted from, e.g. the current {@link System#nanoTime()}
+     * @param tickNs        the duration of a tick, the resolution of the timers
+     * @param ticksPerWheel the number of buckets of the wheel, a power of two
+     * @param maxTimers     the maximum number of timers scheduled at once
+     */
+    public TimerWheel(OneToManyRingBuffer ringBuffer, long startTimeNs, long tickNs, int ticksPerWheel, int maxTimers)
+    {
+        Preconditions.checkArgument(tickNs > 0, "Tick duration must be greater than 0");
+        Preconditions.checkArgument(ticksPerWheel > 0 && Integer.bitCount(ticksPerWheel) == 1, "Ticks per wheel must be a power of two");
+        Preconditions.checkArgument(maxTimers > 0, "Max timers must be greater than 0");
+
+        this.ringBuffer = ringBuffer;
+        this.buffer = ringBuffer.buffer();
+        this.startTimeNs = startTimeNs;
+        this.tickNs = tickNs;
+        this.bucketMask = ticksPerWheel - 1;
+
+        this.bucketHeads = new int[ticksPerWheel];
+        Arrays.fill(bucketHeads, NONE);
+        this.deadlines = new long[maxTimers];
+        this.correlationIds = new long[maxTimers];
+        this.msgTypeIds = new int[maxTimers];
+        this.buckets = new int[maxTimers];
+        this.nexts = new int[maxTimers];
+        this.previouses = new int[maxTimers];
+        this.generations = new int[maxTimers];
+
+        // the free list is linked through the next slots
+        for (int i = 0; i < maxTimers; i++)
+        {
+            nexts[i] = i + 1 < maxTimers ? i + 1 : NONE;
+        }
+        this.freeHead = 0;
+    }
+
+    /**
+     * @return the number of timers scheduled and not expired nor cancelled yet
+     */
+    public int timerCount()
+    {
+        return timerCount;
+    }
+
+    /**
+     * Schedules a timer.
+     *
+     * @param msgTypeId     the type identifier of the expiry record
+     * @param correlationId the correlation id carried by the expiry record
+     * @param deadlineNs    the time the timer expires at, on the clock of {@link #poll(long)}
+     * @return the id of the timer, or {@link #NULL_TIMER} if every timer slot is in use
+     */
+    public long schedule(int msgTypeId, long correlationId, long deadlineNs)
+    {
+        final int timer = freeHead;
+        if (timer == NONE)
+        {
+            return NULL_TIMER;
+        }
+        freeHead = nexts[timer];
+
+        // a deadline already passed expires on the next poll
+        final long tick = Math.max(currentTick, Math.floorDiv(deadlineNs - startTimeNs, tickNs));
+        final int bucket = (int)(tick & bucketMask);
+
+        deadlines[timer] = deadlineNs;
+        correlationIds[timer] = correlationId;
+        msgTypeIds[timer] = msgTypeId;
+        buckets[timer] = bucket;
+
+        final int head = bucketHeads[bucket];
+        previouses[timer] = NONE;
+        nexts[timer] = head;
+        if (head != NONE)
+        {
+            previouses[head] = timer;
+        }
+        bucketHeads[bucket] = timer;
+        // the generation is odd while the slot is scheduled
+        generations[timer]++;
+        timerCount++;
+
+        return ((long)generations[timer] << 32) | timer;
+    }
+
+    /**
+     * Cancels a timer.
+     *
+     * @param timerId the id returned by {@link #schedule(int, long, long)}
+     * @return true if the timer has been cancelled, false if it has expired or been cancelled already
+     */
+    public boolean cancel(long timerId)
+    {
+        final int timer = (int)timerId;
+        if (timerId == NULL_TIMER || timer < 0 || timer >= deadlines.length
+            || generations[timer] != (int)(timerId >>> 32) || (generations[timer] & 1) == 0)
+        {
+            return false;
+        }
+
+        remove(timer);
+        return true;
+    }
+
+    /**
+     * Publishes the expiry records of the timers expired at the current time, in the order of their ticks,
+     * until the ring buffer is full.
+     * After an idle gap longer than a turn of the wheel, each bucket is scanned once and the wheel moves straight to the
+     * current tick, so a poll never scans more than one turn.
+     *
+     * @param nowNs the current time
+     * @return the number of timers expired
+     */
+    public int poll(long nowNs)
+    {
+        final long nowTick = Math.floorDiv(nowNs - startTimeNs, tickNs);
+        // every timer left after a full turn expires later than the current time
+        final long lastTick = Math.min(nowTick, currentTick + bucketMask);
+        int expired = 0;
+
+        while (currentTick <= lastTick)
+        {
+            int timer = bucketHeads[(int)(currentTick & bucketMask)];
+            while (timer != NONE)
+            {
+                final int next = nexts[timer];
+                if (deadlines[timer] <= nowNs)
+                {
+                    if (!publish(timer))
+                    {
+                        return expired;
+                    }
+                    remove(timer);
+                    expired++;
+                }
+                timer = next;
+            }
+
+            // the current tick is scanned again on the next poll, for the timers of the tick not expired yet
+            if (currentTick == lastTick)
+            {
+                currentTick = nowTick;
+                break;
+            }
+            currentTick++;
+        }
+
+        return expired;
+    }
+
+    private boolean publish(int timer)
+    {
+        final int index = ringBuffer.tryClaim(msgTypeIds[timer], EXPIRY_LENGTH);
+        if (index == INSUFFICIENT_CAPACITY)
+        {
+            return false;
+        }
+
+        buffer.putLong(index, correlationIds[timer]);
+        buffer.putLong(index + Long.BYTES, deadlines[timer]);
+        ringBuffer.commit();
+        return true;
+    }
+
+    /**
+     * Unlinks a timer from its bucket and returns its slot to the free list, invalidating its id.
+     */
+    private void remove(int timer)
+    {
+        final int next = nexts[timer];
+        final int previous = previouses[timer];
+        if (previous == NONE)
+        {
+            bucketHeads[buckets[timer]] = next;
+        }
+        else
+        {
+            nexts[previous] = next;
+        }
+        if (next != NONE)
+        {
+            previouses[next] = previous;
+        }
+
+        generations[timer]++;
+        nexts[timer] = freeHead;
+        freeHead = timer;
+        timerCount--;
+    }
+}
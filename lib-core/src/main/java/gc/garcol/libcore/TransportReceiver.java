@@ -0,0 +1,287 @@
+package gc.garcol.libcore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.NetworkChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import static gc.garcol.libcore.OneToManyRingBuffer.HEADER_LENGTH;
+import static gc.garcol.libcore.OneToManyRingBuffer.INSUFFICIENT_CAPACITY;
+
+/**
+ * Receives the messages sent by a {@link TransportSender} over TCP or UDP and publishes them into a local
+ * {@link OneToManyRingBuffer}, as its producer.
+ * <p>
+ * The bytes are received into a direct buffer and each message is copied from it into a claimed record of the ring buffer.
+ * When the ring buffer is full, the receiver stops reading from the channel until the pending messages are published,
+ * so TCP flow control slows the sender down. With TCP, one connection is accepted at a time, and the complete frames
+ * received before the connection closes are still published. A frame longer than the receive buffer or than a record
+ * of the ring buffer closes the connection, or drops the rest of the datagram.
+ * <p>
+ * A receiver must be driven by a single thread.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class TransportReceiver implements AutoCloseable
+{
+    private final OneToManyRingBuffer ringBuffer;
+    private final UnsafeBuffer buffer;
+    private final boolean datagram;
+    private final NetworkChannel channel;
+    private final ByteBuffer receiveBuffer;
+    private final int maxMessageLength;
+
+    private SocketChannel connection;
+    private int readIndex;
+
+    /**
+     * Constructs a TransportReceiver over TCP, with a 64 KiB receive buffer.
+     *
+     * @param ringBuffer   the ring buffer to publish the messages to
+     * @param localAddress the address to listen to
+     * @return the receiver
+     */
+    public static TransportReceiver tcp(OneToManyRingBuffer ringBuffer, SocketAddress localAddress)
+    {
+        return new TransportReceiver(ringBuffer, localAddress, false, 1 << 16);
+    }
+
+    /**
+     * Constructs a TransportReceiver over UDP, with a 64 KiB receive buffer.
+     *
+     * @param ringBuffer   the ring buffer to publish the messages to
+     * @param localAddress the address to listen to
+     * @return the receiver
+     */
+    public static TransportReceiver udp(OneToManyRingBuffer ringBuffer, SocketAddress localAddress)
+    {
+        return new TransportReceiver(ringBuffer, localAddress, true, 1 << 16);
+    }
+
+    /**
+     * Constructs a TransportReceiver.
+     *
+     * @param ringBuffer          the ring buffer to publish the messages to
+     * @param localAddress        the address to listen to
+     * @param datagram            true to receive over UDP, false to receive over TCP
+     * @param receiveBufferLength the length of the receive buffer, not less than a frame or a datagram
+     */
+    public TransportReceiver(OneToManyRingBuffer ringBuffer, SocketAddress localAddress, boolean datagram, int receiveBufferLength)
+    {
+        Preconditions.checkArgument(receiveBufferLength > HEADER_LENGTH, "Receive buffer length must be greater than the header length");
+
+        this.ringBuffer = ringBuffer;
+        this.buffer = ringBuffer.buffer();
+        this.datagram = datagram;
+        this.receiveBuffer = ByteBuffer.allocateDirect(receiveBufferLength).order(ByteOrder.nativeOrder());
+        this.receiveBuffer.limit(0);
+        // a frame must fit in the receive buffer, and its message in a record of the ring buffer
+        this.maxMessageLength = Math.min(
+            receiveBufferLength - HEADER_LENGTH,
+            (ringBuffer.capacity() >> 3) - HEADER_LENGTH - OneToManyRingBuffer.EXTRA_PADDING_LENGTH
+        );
+
+        try
+        {
+            if (datagram)
+            {
+                DatagramChannel datagramChannel = DatagramChannel.open();
+                datagramChannel.configureBlocking(false);
+                datagramChannel.bind(localAddress);
+                channel = datagramChannel;
+            }
+            else
+            {
+                ServerSocketChannel serverChannel = ServerSocketChannel.open();
+                serverChannel.configureBlocking(false);
+                serverChannel.bind(localAddress);
+                channel = serverChannel;
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the address the receiver listens to
+     */
+    public SocketAddress localAddress()
+    {
+        try
+        {
+            return channel.getLocalAddress();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Publishes the pending messages, then receives and publishes more if all of them have been published.
+     *
+     * @return the number of messages published
+     */
+    public int receive()
+    {
+        int published = publish();
+        if (readIndex < receiveBuffer.limit() && datagram)
+        {
+            return published;
+        }
+
+        try
+        {
+            if (datagram)
+            {
+                receiveBuffer.clear();
+                ((DatagramChannel)channel).receive(receiveBuffer);
+                receiveBuffer.flip();
+                readIndex = 0;
+            }
+            else if (connected())
+            {
+                // keep the partial frame at the beginning of the buffer, then append to it
+                receiveBuffer.position(readIndex).compact();
+                readIndex = 0;
+                int read;
+                try
+                {
+                    read = connection.read(receiveBuffer);
+                }
+                catch (IOException e)
+                {
+                    read = -1;
+                }
+                receiveBuffer.flip();
+                if (read < 0)
+                {
+                    closeConnection();
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            closeConnection();
+        }
+
+        return published + publish();
+    }
+
+    /**
+     * Closes the channels.
+     */
+    public void close()
+    {
+        closeConnection();
+        try
+        {
+            channel.close();
+        }
+        catch (IOException ignored)
+        {
+        }
+    }
+
+    /**
+     * Publishes the complete frames of the receive buffer until the ring buffer is full.
+     */
+    private int publish()
+    {
+        final int limit = receiveBuffer.limit();
+        int published = 0;
+
+        while (limit - readIndex >= HEADER_LENGTH)
+        {
+            int messageLength = receiveBuffer.getInt(readIndex);
+            if (messageLength < 0 || messageLength > maxMessageLength)
+            {
+                // a corrupted or oversized frame never completes, the rest of the datagram or stream can not be framed
+                receiveBuffer.limit(readIndex);
+                closeConnection();
+                break;
+            }
+            if (limit - readIndex - HEADER_LENGTH < messageLength)
+            {
+                break;
+            }
+
+            int messageTypeId = receiveBuffer.getInt(readIndex + Integer.BYTES);
+            int index = ringBuffer.tryClaim(messageTypeId, messageLength);
+            if (index == INSUFFICIENT_CAPACITY)
+            {
+                break;
+            }
+            buffer.putBytes(index, receiveBuffer, readIndex + HEADER_LENGTH, messageLength);
+            ringBuffer.commit();
+
+            readIndex += HEADER_LENGTH + messageLength;
+            published++;
+        }
+
+        return published;
+    }
+
+    private boolean connected() throws IOException
+    {
+        if (connection == null)
+        {
+            connection = ((ServerSocketChannel)channel).accept();
+            if (connection != null)
+            {
+                connection.configureBlocking(false);
+            }
+        }
+        return connection != null;
+    }
+
+    private void closeConnection()
+    {
+        if (connection != null)
+        {
+            try
+            {
+                connection.close();
+            }
+            catch (IOException ignored)
+            {
+            }
+            connection = null;
+        }
+        if (!datagram)
+        {
+            // the complete frames are still published, the trailing partial frame of a broken connection belongs to
+            // a batch the sender has not committed, which is sent again from its start on the next connection
+            receiveBuffer.limit(completeFramesLimit());
+        }
+    }
+
+    /**
+     * @return the end of the last complete frame of the receive buffer
+     */
+    private int completeFramesLimit()
+    {
+        final int limit = receiveBuffer.limit();
+        int index = readIndex;
+
+        while (limit - index >= HEADER_LENGTH)
+        {
+            int messageLength = receiveBuffer.getInt(index);
+            if (messageLength < 0 || messageLength > maxMessageLength || limit - index - HEADER_LENGTH < messageLength)
+            {
+                break;
+            }
+            index += HEADER_LENGTH + messageLength;
+        }
+
+        return index;
+    }
+}
@@ -0,0 +1,294 @@
+package gc.garcol.libcore;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.SocketChannel;
+
+import static gc.garcol.libcore.OneToManyRingBuffer.HEADER_LENGTH;
+import static gc.garcol.libcore.OneToManyRingBuffer.NO_RECORD;
+import static gc.garcol.libcore.RingBufferUtil.offset;
+
+/**
+ * A consumer of a {@link OneToManyRingBuffer} forwarding its records to a {@link TransportReceiver} over TCP or UDP.
+ * <p>
+ * The records available to the consumer are sent in batches, each one with a single gathering write of views on the
+ * ring buffer memory. On the wire, each message is framed by the header of its ring record: length: 4 bytes | type: 4 bytes,
+ * in native byte order. With UDP, a batch is one datagram.
+ * <p>
+ * The consumer position is committed once a whole batch has been written, so a slow or disconnected receiver
+ * applies backpressure up to the producer. When the channel fails, it is closed and reconnected after the reconnect
+ * interval, and the pending batch is sent again from its start: messages are delivered at least once.
+ * <p>
+ * A sender must be driven by a single thread.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class TransportSender implements AutoCloseable
+{
+    private final OneToManyRingBuffer ringBuffer;
+    private final int consumerIndex;
+    private final UnsafeBuffer buffer;
+    private final SocketAddress remoteAddress;
+    private final boolean datagram;
+    private final int maxBatchLength;
+    private final long reconnectIntervalNs;
+    private final ByteBuffer[] views;
+
+    private GatheringByteChannel channel;
+    private boolean connected;
+    private long disconnectedNs;
+
+    private int batchSize;
+    private long batchStartPosition;
+    private long batchEndPosition;
+
+    private long sentBatches;
+    private long disconnects;
+
+    /**
+     * Constructs a TransportSender over TCP, with batches of up to 64 messages and 64 KiB.
+     *
+     * @param ringBuffer    the ring buffer to forward
+     * @param consumerIndex the index of the consumer of the ring buffer
+     * @param remoteAddress the address of the receiver
+     * @return the sender
+     */
+    public static TransportSender tcp(OneToManyRingBuffer ringBuffer, int consumerIndex, SocketAddress remoteAddress)
+    {
+        return new TransportSender(ringBuffer, consumerIndex, remoteAddress, false, 64, 1 << 16, 1_000_000_000L);
+    }
+
+    /**
+     * Constructs a TransportSender over UDP, with batches of up to 64 messages within one datagram.
+     *
+     * @param ringBuffer        the ring buffer to forward
+     * @param consumerIndex     the index of the consumer of the ring buffer
+     * @param remoteAddress     the address of the receiver
+     * @param maxDatagramLength the maximum length of a datagram
+     * @return the sender
+     */
+    public static TransportSender udp(OneToManyRingBuffer ringBuffer, int consumerIndex, SocketAddress remoteAddress, int maxDatagramLength)
+    {
+        return new TransportSender(ringBuffer, consumerIndex, remoteAddress, true, 64, maxDatagramLength, 1_000_000_000L);
+    }
+
+    /**
+     * Constructs a TransportSender.
+     *
+     * @param ringBuffer          the ring buffer to forward
+     * @param consumerIndex       the index of the consumer of the ring buffer
+     * @param remoteAddress       the address of the receiver
+     * @param datagram            true to send over UDP, false to send over TCP
+     * @param maxBatchSize        the maximum number of messages of a batch
+     * @param maxBatchLength      the maximum number of bytes of a batch, the maximum length of a datagram with UDP
+     * @param reconnectIntervalNs the minimum interval between two connection attempts
+     */
+    public TransportSender(
+        OneToManyRingBuffer ringBuffer,
+        int consumerIndex,
+        SocketAddress remoteAddress,
+        boolean datagram,
+        int maxBatchSize,
+        int maxBatchLength,
+        long reconnectIntervalNs
+    )
+    {
+        Preconditions.checkArgument(consumerIndex >= 0 && consumerIndex < ringBuffer.consumerSize(), "Consumer index must be between 0 and " + (ringBuffer.consumerSize() - 1));
+        Preconditions.checkArgument(maxBatchSize >= 1 && maxBatchSize <= 1024, "Max batch size must be between 1 and 1024");
+        Preconditions.checkArgument(maxBatchLength >= HEADER_LENGTH, "Max batch length must not be less than the header length");
+        Preconditions.checkArgument(reconnectIntervalNs >= 0, "Reconnect interval must not be negative");
+
+        this.ringBuffer = ringBuffer;
+        this.consumerIndex = consumerIndex;
+        this.buffer = ringBuffer.buffer();
+        this.remoteAddress = remoteAddress;
+        this.datagram = datagram;
+        this.maxBatchLength = maxBatchLength;
+        this.reconnectIntervalNs = reconnectIntervalNs;
+        this.views = new ByteBuffer[maxBatchSize];
+        for (int i = 0; i < maxBatchSize; i++)
+        {
+            views[i] = buffer.wrap();
+        }
+        this.disconnectedNs = System.nanoTime() - reconnectIntervalNs;
+    }
+
+    /**
+     * @return true if the channel to the receiver is connected, false otherwise
+     */
+    public boolean isConnected()
+    {
+        return connected;
+    }
+
+    /**
+     * @return the number of batches sent, each one with a single write
+     */
+    public long sentBatches()
+    {
+        return sentBatches;
+    }
+
+    /**
+     * @return the number of times the channel has been closed after a failure, connection failures included
+     */
+    public long disconnects()
+    {
+        return disconnects;
+    }
+
+    /**
+     * Sends the next batch of records, or the rest of the pending batch, connecting first if needed.
+     *
+     * @return the number of messages of the batch if it has been completely sent, 0 otherwise
+     */
+    public int send()
+    {
+        if (!connect() || batchSize == 0 && !claimBatch())
+        {
+            return 0;
+        }
+
+        try
+        {
+            channel.write(views, 0, batchSize);
+        }
+        catch (IOException e)
+        {
+            disconnect();
+            return 0;
+        }
+
+        if (views[batchSize - 1].hasRemaining())
+        {
+            // the socket buffer is full, the rest of the batch is sent on the next call
+            return 0;
+        }
+
+        final int sent = batchSize;
+        ringBuffer.commitConsumed(consumerIndex, batchStartPosition, batchEndPosition);
+        batchSize = 0;
+        sentBatches++;
+        return sent;
+    }
+
+    /**
+     * Closes the channel to the receiver.
+     */
+    public void close()
+    {
+        closeChannel();
+    }
+
+    private boolean claimBatch()
+    {
+        final long startPosition = ringBuffer.consumerPosition(consumerIndex);
+        long position = startPosition;
+        int batchLength = 0;
+        int size = 0;
+
+        while (size < views.length)
+        {
+            long recordPosition = ringBuffer.recordPosition(consumerIndex, position);
+            if (recordPosition == NO_RECORD)
+            {
+                break;
+            }
+
+            int recordOffset = offset(recordPosition);
+            int frameLength = HEADER_LENGTH + buffer.getInt(recordOffset);
+            if (batchLength + frameLength > maxBatchLength)
+            {
+                Preconditions.checkArgument(size > 0, "Message length must not be greater than " + (maxBatchLength - HEADER_LENGTH));
+                break;
+            }
+
+            views[size].clear().position(recordOffset).limit(recordOffset + frameLength);
+            batchLength += frameLength;
+            size++;
+            position = ringBuffer.nextPosition(recordPosition);
+        }
+
+        batchSize = size;
+        batchStartPosition = startPosition;
+        batchEndPosition = position;
+        return size > 0;
+    }
+
+    private boolean connect()
+    {
+        if (connected)
+        {
+            return true;
+        }
+
+        try
+        {
+            if (channel == null)
+            {
+                if (System.nanoTime() - disconnectedNs < reconnectIntervalNs)
+                {
+                    return false;
+                }
+
+                if (datagram)
+                {
+                    DatagramChannel datagramChannel = DatagramChannel.open();
+                    channel = datagramChannel;
+                    datagramChannel.configureBlocking(false);
+                    datagramChannel.connect(remoteAddress);
+                    connected = true;
+                }
+                else
+                {
+                    SocketChannel socketChannel = SocketChannel.open();
+                    channel = socketChannel;
+                    socketChannel.configureBlocking(false);
+                    socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    connected = socketChannel.connect(remoteAddress);
+                }
+            }
+            else
+            {
+                connected = ((SocketChannel)channel).finishConnect();
+            }
+        }
+        catch (IOException e)
+        {
+            disconnect();
+            return false;
+        }
+
+        return connected;
+    }
+
+    private void disconnect()
+    {
+        closeChannel();
+        disconnects++;
+        disconnectedNs = System.nanoTime();
+        // the records of an interrupted batch are still uncommitted, the batch is claimed again from its start
+        batchSize = 0;
+    }
+
+    private void closeChannel()
+    {
+        if (channel != null)
+        {
+            try
+            {
+                channel.close();
+            }
+            catch (IOException ignored)
+            {
+            }
+            channel = null;
+        }
+        connected = false;
+    }
+}
@@ -1,13 +1,26 @@
 package gc.garcol.libcore;
 
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
 
 import static gc.garcol.libcore.BufferUtil.ARRAY_BASE_OFFSET;
+import static gc.garcol.libcore.UnsafeHelper.UNSAFE;
+import static gc.garcol.libcore.UnsafeHelper.UNSAFE_ACCESS;
 
 /**
  * A buffer that uses the Unsafe class for fast memory operations.
  * Provides methods to put and get primitive types and byte arrays.
  * Ensures memory visibility guarantees using Unsafe operations.
+ * <p>
+ * When Unsafe is not available, see {@link UnsafeHelper}, the same operations are done with VarHandles viewing the
+ * byte array in native byte order: no {@code --add-opens} is needed then. The access mode is a static final constant,
+ * so the JIT compiler removes the branch of the other one.
+ * The volatile, acquire, release and compare-and-set operations require an index aligned to the size of the value.
  *
  * @author thaivc
  * @since 2024
@@ -15,6 +28,10 @@ import static gc.garcol.libcore.BufferUtil.ARRAY_BASE_OFFSET;
 public class UnsafeBuffer
 {
 
+    private static final VarHandle BYTE_HANDLE = MethodHandles.arrayElementVarHandle(byte[].class);
+    private static final VarHandle INT_HANDLE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final VarHandle LONG_HANDLE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
     private final byte[] buffer;
 
     /**
@@ -27,6 +44,73 @@ public class UnsafeBuffer
         buffer = new byte[initialCapacity];
     }
 
+    /**
+     * @return the capacity of the buffer in bytes
+     */
+    public int capacity()
+    {
+        return buffer.length;
+    }
+
+    /**
+     * @return a ByteBuffer sharing the memory of this buffer, in native byte order
+     */
+    ByteBuffer wrap()
+    {
+        return ByteBuffer.wrap(buffer).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Writes a zero byte into every page of the buffer, so that no page fault is taken when the buffer is first written.
+     * Must be called before the buffer holds any data.
+     *
+     * @param parallelism the maximum number of threads touching the pages, a large buffer being split between them
+     */
+    public void preTouch(final int parallelism)
+    {
+        PreTouch.preTouch(0, buffer.length, parallelism, index -> buffer[index] = 0);
+    }
+
+    /**
+     * Exposes a range of this buffer as a read-only ByteBuffer, in native byte order, without copying.
+     * <p>
+     * The view shares the memory of this buffer: once the range is released to the producer, e.g. after the message
+     * handler has returned, its content may be overwritten.
+     *
+     * @param index  the index of the first byte of the range
+     * @param length the number of bytes of the range
+     * @return the view, positioned at 0 with a limit of length
+     */
+    public ByteBuffer view(final int index, final int length)
+    {
+        return ByteBuffer.wrap(buffer, index, length).slice().asReadOnlyBuffer().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Writes a range of this buffer to the specified channel straight from its memory, without copying it into a
+     * ByteBuffer first.
+     * <p>
+     * The write stops early when a non-blocking channel accepts no more bytes.
+     *
+     * @param index   the index of the first byte of the range
+     * @param length  the number of bytes of the range
+     * @param channel the channel to write to
+     * @return the number of bytes written
+     * @throws IOException if the channel fails
+     */
+    public int transferTo(final int index, final int length, final WritableByteChannel channel) throws IOException
+    {
+        final ByteBuffer view = ByteBuffer.wrap(buffer, index, length);
+        while (view.hasRemaining())
+        {
+            if (channel.write(view) == 0)
+            {
+                break;
+            }
+        }
+        return view.position() - index;
+    }
+
     /**
      * Puts an integer value at the specified index.
      *
@@ -35,7 +119,12 @@ public class UnsafeBuffer
      */
     public void putInt(final int index, final int value)
     {
-        UnsafeHelper.UNSAFE.putInt(buffer, ARRAY_BASE_OFFSET + index, value);
+        if (UNSAFE_ACCESS)
+        {
+            UNSAFE.putInt(buffer, ARRAY_BASE_OFFSET + index, value);
+            return;
+        }
+        INT_HANDLE.set(buffer, index, value);
     }
 
     /**
@@ -46,7 +135,91 @@ public class UnsafeBuffer
      */
     public int getInt(final int index)
     {
-        return UnsafeHelper.UNSAFE.getInt(buffer, ARRAY_BASE_OFFSET + index);
+        if (UNSAFE_ACCESS)
+        {
+            return UNSAFE.getInt(buffer, ARRAY_BASE_OFFSET + index);
+        }
+        return (int)INT_HANDLE.get(buffer, index);
+    }
+
+    /**
+     * Puts an integer value at the specified index with volatile semantics.
+     *
+     * @param index the index at which the value will be put
+     * @param value the integer value to put
+     */
+    public void putIntVolatile(final int index, final int value)
+    {
+        if (UNSAFE_ACCESS)
+        {
+            UNSAFE.putIntVolatile(buffer, ARRAY_BASE_OFFSET + index, value);
+            return;
+        }
+        INT_HANDLE.setVolatile(buffer, index, value);
+    }
+
+    /**
+     * Gets an integer value from the specified index with volatile semantics.
+     *
+     * @param index the index from which the value will be retrieved
+     * @return the integer value at the specified index
+     */
+    public int getIntVolatile(final int index)
+    {
+        if (UNSAFE_ACCESS)
+        {
+            return UNSAFE.getIntVolatile(buffer, ARRAY_BASE_OFFSET + index);
+        }
+        return (int)INT_HANDLE.getVolatile(buffer, index);
+    }
+
+    /**
+     * Puts an integer value at the specified index with release semantics, the store is not reordered with prior loads and stores.
+     *
+     * @param index the index at which the value will be put
+     * @param value the integer value to put
+     */
+    public void putIntRelease(final int index, final int value)
+    {
+        if (UNSAFE_ACCESS)
+        {
+            UNSAFE.putOrderedInt(buffer, ARRAY_BASE_OFFSET + index, value);
+            return;
+        }
+        INT_HANDLE.setRelease(buffer, index, value);
+    }
+
+    /**
+     * Gets an integer value from the specified index with acquire semantics, the load is not reordered with subsequent loads and stores.
+     *
+     * @param index the index from which the value will be retrieved
+     * @return the integer value at the specified index
+     */
+    public int getIntAcquire(final int index)
+    {
+        if (UNSAFE_ACCESS)
+        {
+            // sun.misc.Unsafe has no acquire load, a volatile load costs the same on x86 and ARM
+            return UNSAFE.getIntVolatile(buffer, ARRAY_BASE_OFFSET + index);
+        }
+        return (int)INT_HANDLE.getAcquire(buffer, index);
+    }
+
+    /**
+     * Atomically sets an integer value at the specified index if the current value equals the expected value.
+     *
+     * @param index         the index of the value
+     * @param expectedValue the expected current value
+     * @param updateValue   the new value
+     * @return true if the value was updated, false otherwise
+     */
+    public boolean compareAndSetInt(final int index, final int expectedValue, final int updateValue)
+    {
+        if (UNSAFE_ACCESS)
+        {
+            return UNSAFE.compareAndSwapInt(buffer, ARRAY_BASE_OFFSET + index, expectedValue, updateValue);
+        }
+        return INT_HANDLE.compareAndSet(buffer, index, expectedValue, updateValue);
     }
 
     /**
@@ -57,7 +230,12 @@ public class UnsafeBuffer
      */
     public void putLong(final int index, final long value)
     {
-        UnsafeHelper.UNSAFE.putLong(buffer, ARRAY_BASE_OFFSET + index, value);
+        if (UNSAFE_ACCESS)
+        {
+            UNSAFE.putLong(buffer, ARRAY_BASE_OFFSET + index, value);
+            return;
+        }
+        LONG_HANDLE.set(buffer, index, value);
     }
 
     /**
@@ -68,7 +246,54 @@ public class UnsafeBuffer
      */
     public void putLongVolatile(final int index, final long value)
     {
-        UnsafeHelper.UNSAFE.putLongVolatile(buffer, ARRAY_BASE_OFFSET + index, value);
+        if (UNSAFE_ACCESS)
+        {
+            UNSAFE.putLongVolatile(buffer, ARRAY_BASE_OFFSET + index, value);
+            return;
+        }
+        LONG_HANDLE.setVolatile(buffer, index, value);
+    }
+
+    /**
+     * Puts a long value at the specified index with ordered semantics, the store is not reordered with prior stores.
+     *
+     * @param index the index at which the value will be put
+     * @param value the long value to put
+     */
+    public void putLongOrdered(final int index, final long value)
+    {
+        if (UNSAFE_ACCESS)
+        {
+            UNSAFE.putOrderedLong(buffer, ARRAY_BASE_OFFSET + index, value);
+            return;
+        }
+        LONG_HANDLE.setRelease(buffer, index, value);
+    }
+
+    /**
+     * Puts a long value at the specified index with release semantics, same as {@link #putLongOrdered(int, long)}.
+     *
+     * @param index the index at which the value will be put
+     * @param value the long value to put
+     */
+    public void putLongRelease(final int index, final long value)
+    {
+        putLongOrdered(index, value);
+    }
+
+    /**
+     * Gets a long value from the specified index with acquire semantics, the load is not reordered with subsequent loads and stores.
+     *
+     * @param index the index from which the value will be retrieved
+     * @return the long value at the specified index
+     */
+    public long getLongAcquire(final int index)
+    {
+        if (UNSAFE_ACCESS)
+        {
+            return UNSAFE.getLongVolatile(buffer, ARRAY_BASE_OFFSET + index);
+        }
+        return (long)LONG_HANDLE.getAcquire(buffer, index);
     }
 
     /**
@@ -79,7 +304,11 @@ public class UnsafeBuffer
      */
     public long getLong(final int index)
     {
-        return UnsafeHelper.UNSAFE.getLong(buffer, ARRAY_BASE_OFFSET + index);
+        if (UNSAFE_ACCESS)
+        {
+            return UNSAFE.getLong(buffer, ARRAY_BASE_OFFSET + index);
+        }
+        return (long)LONG_HANDLE.get(buffer, index);
     }
 
     /**
@@ -90,11 +319,94 @@ public class UnsafeBuffer
      */
     public long getLongVolatile(final int index)
     {
-        return UnsafeHelper.UNSAFE.getLongVolatile(buffer, ARRAY_BASE_OFFSET + index);
+        if (UNSAFE_ACCESS)
+        {
+            return UNSAFE.getLongVolatile(buffer, ARRAY_BASE_OFFSET + index);
+        }
+        return (long)LONG_HANDLE.getVolatile(buffer, index);
+    }
+
+    /**
+     * Atomically sets a long value at the specified index if the current value equals the expected value.
+     *
+     * @param index         the index of the value
+     * @param expectedValue the expected current value
+     * @param updateValue   the new value
+     * @return true if the value was updated, false otherwise
+     */
+    public boolean compareAndSetLong(final int index, final long expectedValue, final long updateValue)
+    {
+        if (UNSAFE_ACCESS)
+        {
+            return UNSAFE.compareAndSwapLong(buffer, ARRAY_BASE_OFFSET + index, expectedValue, updateValue);
+        }
+        return LONG_HANDLE.compareAndSet(buffer, index, expectedValue, updateValue);
+    }
+
+    /**
+     * Puts a byte value at the specified index.
+     *
+     * @param index the index at which the value will be put
+     * @param value the byte value to put
+     */
+    public void putByte(final int index, final byte value)
+    {
+        if (UNSAFE_ACCESS)
+        {
+            UNSAFE.putByte(buffer, ARRAY_BASE_OFFSET + index, value);
+            return;
+        }
+        buffer[index] = value;
+    }
+
+    /**
+     * Gets a byte value from the specified index.
+     *
+     * @param index the index from which the value will be retrieved
+     * @return the byte value at the specified index
+     */
+    public byte getByte(final int index)
+    {
+        if (UNSAFE_ACCESS)
+        {
+            return UNSAFE.getByte(buffer, ARRAY_BASE_OFFSET + index);
+        }
+        return buffer[index];
+    }
+
+    /**
+     * Puts a byte value at the specified index with volatile semantics.
+     *
+     * @param index the index at which the value will be put
+     * @param value the byte value to put
+     */
+    public void putByteVolatile(final int index, final byte value)
+    {
+        if (UNSAFE_ACCESS)
+        {
+            UNSAFE.putByteVolatile(buffer, ARRAY_BASE_OFFSET + index, value);
+            return;
+        }
+        BYTE_HANDLE.setVolatile(buffer, index, value);
     }
 
     /**
-     * Puts bytes from the specified ByteBuffer into this buffer.
+     * Gets a byte value from the specified index with volatile semantics.
+     *
+     * @param index the index from which the value will be retrieved
+     * @return the byte value at the specified index
+     */
+    public byte getByteVolatile(final int index)
+    {
+        if (UNSAFE_ACCESS)
+        {
+            return UNSAFE.getByteVolatile(buffer, ARRAY_BASE_OFFSET + index);
+        }
+        return (byte)BYTE_HANDLE.getVolatile(buffer, index);
+    }
+
+    /**
+     * Puts bytes from the specified ByteBuffer, heap or direct, into this buffer.
      *
      * @param index     the index at which the bytes will be put
      * @param srcBuffer the source ByteBuffer
@@ -103,13 +415,61 @@ public class UnsafeBuffer
      */
     public void putBytes(final int index, final ByteBuffer srcBuffer, final int srcIndex, final int length)
     {
+        if (!UNSAFE_ACCESS)
+        {
+            srcBuffer.get(srcIndex, buffer, index, length);
+            return;
+        }
+
+        if (srcBuffer.isDirect())
+        {
+            UNSAFE.copyMemory(null, BufferUtil.address(srcBuffer) + srcIndex, buffer, ARRAY_BASE_OFFSET + index, length);
+            return;
+        }
+
         final byte[] srcByteArray = BufferUtil.array(srcBuffer);
         final long srcBaseOffset = ARRAY_BASE_OFFSET + BufferUtil.arrayOffset(srcBuffer);
-        UnsafeHelper.UNSAFE.copyMemory(srcByteArray, srcBaseOffset + srcIndex, buffer, ARRAY_BASE_OFFSET + index, length);
+        UNSAFE.copyMemory(srcByteArray, srcBaseOffset + srcIndex, buffer, ARRAY_BASE_OFFSET + index, length);
     }
 
     /**
-     * Gets bytes from this buffer into the specified ByteBuffer.
+     * Puts bytes from the specified byte array into this buffer.
+     *
+     * @param index     the index at which the bytes will be put
+     * @param src       the source byte array
+     * @param srcOffset the offset in the source array from which the bytes will be read
+     * @param length    the number of bytes to put
+     */
+    public void putBytes(final int index, final byte[] src, final int srcOffset, final int length)
+    {
+        if (UNSAFE_ACCESS)
+        {
+            UNSAFE.copyMemory(src, ARRAY_BASE_OFFSET + srcOffset, buffer, ARRAY_BASE_OFFSET + index, length);
+            return;
+        }
+        System.arraycopy(src, srcOffset, buffer, index, length);
+    }
+
+    /**
+     * Puts bytes from the specified UnsafeBuffer into this buffer.
+     *
+     * @param index     the index at which the bytes will be put
+     * @param srcBuffer the source UnsafeBuffer
+     * @param srcIndex  the index in the source UnsafeBuffer from which the bytes will be read
+     * @param length    the number of bytes to put
+     */
+    public void putBytes(final int index, final UnsafeBuffer srcBuffer, final int srcIndex, final int length)
+    {
+        if (UNSAFE_ACCESS)
+        {
+            UNSAFE.copyMemory(srcBuffer.buffer, ARRAY_BASE_OFFSET + srcIndex, buffer, ARRAY_BASE_OFFSET + index, length);
+            return;
+        }
+        System.arraycopy(srcBuffer.buffer, srcIndex, buffer, index, length);
+    }
+
+    /**
+     * Gets bytes from this buffer into the specified ByteBuffer, heap or direct.
      *
      * @param index     the index from which the bytes will be read
      * @param dstBuffer the destination ByteBuffer
@@ -118,9 +478,21 @@ public class UnsafeBuffer
      */
     public void getBytes(final int index, final ByteBuffer dstBuffer, final int dstOffset, final int length)
     {
+        if (!UNSAFE_ACCESS)
+        {
+            dstBuffer.put(dstOffset, buffer, index, length);
+            return;
+        }
+
+        if (dstBuffer.isDirect())
+        {
+            UNSAFE.copyMemory(buffer, ARRAY_BASE_OFFSET + index, null, BufferUtil.address(dstBuffer) + dstOffset, length);
+            return;
+        }
+
         final byte[] dstByteArray = BufferUtil.array(dstBuffer);
         final long dstBaseOffset = ARRAY_BASE_OFFSET + BufferUtil.arrayOffset(dstBuffer);
-        UnsafeHelper.UNSAFE.copyMemory(buffer, ARRAY_BASE_OFFSET + index, dstByteArray, dstBaseOffset + dstOffset, length);
+        UNSAFE.copyMemory(buffer, ARRAY_BASE_OFFSET + index, dstByteArray, dstBaseOffset + dstOffset, length);
     }
 
     /**
@@ -132,6 +504,11 @@ public class UnsafeBuffer
     public void clearBytes(final int fromIndex, final int toIndex)
     {
         int messageLength = toIndex - fromIndex + 1;
-        UnsafeHelper.UNSAFE.setMemory(buffer, ARRAY_BASE_OFFSET + fromIndex, messageLength, (byte)0);
+        if (UNSAFE_ACCESS)
+        {
+            UNSAFE.setMemory(buffer, ARRAY_BASE_OFFSET + fromIndex, messageLength, (byte)0);
+            return;
+        }
+        Arrays.fill(buffer, fromIndex, fromIndex + messageLength, (byte)0);
     }
 }
\ No newline at end of file
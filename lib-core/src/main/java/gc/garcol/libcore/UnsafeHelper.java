@@ -7,7 +7,8 @@ import java.lang.reflect.Field;
 /**
  * Utility class for accessing the Unsafe class.
  * Provides a static reference to the Unsafe instance.
- * Ensures the Unsafe instance is loaded and accessible.
+ * When Unsafe is not accessible, or disabled with {@code -Dgc.garcol.libcore.unsafe=false},
+ * the buffers access their memory with VarHandles instead.
  *
  * @author thaivc
  * @since 2024
@@ -16,6 +17,11 @@ public class UnsafeHelper
 {
     static final Unsafe UNSAFE;
 
+    /**
+     * True if the buffers access their memory with Unsafe, false if they access it with VarHandles.
+     */
+    static final boolean UNSAFE_ACCESS;
+
     /**
      * Private constructor to prevent instantiation.
      */
@@ -25,15 +31,17 @@ public class UnsafeHelper
 
     static
     {
+        Unsafe unsafe = null;
         try
         {
             Field theUnsafe = Unsafe.class.getDeclaredField("theUnsafe");
             theUnsafe.setAccessible(true);
-            UNSAFE = (Unsafe)theUnsafe.get(null);
+            unsafe = (Unsafe)theUnsafe.get(null);
         }
-        catch (Exception e)
+        catch (Exception | LinkageError ignored)
         {
-            throw new RuntimeException("Unable to load Unsafe", e);
         }
+        UNSAFE = unsafe;
+        UNSAFE_ACCESS = unsafe != null && Boolean.parseBoolean(System.getProperty("gc.garcol.libcore.unsafe", "true"));
     }
 }
\ No newline at end of file
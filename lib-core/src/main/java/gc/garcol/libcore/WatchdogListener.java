@@ -0,0 +1,41 @@
+package gc.garcol.libcore;
+
+/**
+ * Listener of the alarms raised by a {@link ConsumerWatchdog}, called by the thread polling the watchdog.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public interface WatchdogListener
+{
+
+    /**
+     * Called when the lag of a consumer reaches the maximum lag, once until it falls below it again.
+     *
+     * @param consumerIndex the index of the consumer
+     * @param lag           the number of bytes published and not consumed yet by the consumer
+     */
+    default void onLag(int consumerIndex, long lag)
+    {
+    }
+
+    /**
+     * Called when a consumer has made no progress for the maximum stall time while messages are available to it,
+     * once until it makes progress again.
+     *
+     * @param consumerIndex the index of the consumer
+     * @param stalledNs     the time since the last progress of the consumer
+     */
+    default void onStall(int consumerIndex, long stalledNs)
+    {
+    }
+
+    /**
+     * Called when a stalled consumer has been evicted.
+     *
+     * @param consumerIndex the index of the consumer
+     */
+    default void onEviction(int consumerIndex)
+    {
+    }
+}
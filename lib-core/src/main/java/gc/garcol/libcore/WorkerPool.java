@@ -0,0 +1,249 @@
+package gc.garcol.libcore;
+
+import static gc.garcol.libcore.OneToManyRingBuffer.ALIGNMENT;
+import static gc.garcol.libcore.OneToManyRingBuffer.HEADER_LENGTH;
+import static gc.garcol.libcore.OneToManyRingBuffer.NO_RECORD;
+import static gc.garcol.libcore.RingBufferUtil.*;
+
+/**
+ * A pool of competing workers sharing one consumer index of a {@link OneToManyRingBuffer}.
+ * <p>
+ * Each record is handled by exactly one worker. Workers claim records with a CAS on a shared claim position,
+ * so they may complete out of order. The consumer position of the stage only advances over a contiguous run of
+ * completed records, hence the next consumers and the producer still see the pool as one logical consumer.
+ * <p>
+ * The consumer index must only be read through the pool once the pool is created.
+ *
+ * @author thaivc
+ * @since 2024
+ */
+public class WorkerPool
+{
+    private static final byte COMPLETED = 1;
+    private static final int ALIGNMENT_SHIFT = Integer.numberOfTrailingZeros(ALIGNMENT);
+    private static final int CLAIM_POSITION_INDEX = Long.BYTES * 8;
+    private static final int RELEASE_LOCK_INDEX = CLAIM_POSITION_INDEX + Long.BYTES * 8;
+    private static final int PENDING_STRIDE = Long.BYTES * 8;
+
+    private final OneToManyRingBuffer ringBuffer;
+    private final UnsafeBuffer buffer;
+    private final int consumerIndex;
+    private final int workerSize;
+
+    /**
+     * [64 padding bytes] | claim position: 8 bytes | [(64 - 8) padding bytes] | release lock: 8 bytes | [(64 - 8) padding bytes]
+     */
+    private final UnsafeBuffer counters;
+
+    /**
+     * One completion flag per aligned slot of the ring buffer.
+     */
+    private final UnsafeBuffer completions;
+
+    /**
+     * The position of the record each worker has claimed but not committed yet, one per cache line.
+     */
+    private final UnsafeBuffer pendings;
+
+    /**
+     * Constructs a WorkerPool on the specified consumer index.
+     *
+     * @param ringBuffer    the ring buffer to consume
+     * @param consumerIndex the consumer index shared by the workers
+     * @param workerSize    the number of workers
+     */
+    public WorkerPool(OneToManyRingBuffer ringBuffer, int consumerIndex, int workerSize)
+    {
+        Preconditions.checkArgument(consumerIndex >= 0 && consumerIndex < ringBuffer.consumerSize(), "Consumer index is out of range");
+        Preconditions.checkArgument(workerSize >= 1, "Worker size must be greater than 0");
+
+        this.ringBuffer = ringBuffer;
+        this.buffer = ringBuffer.buffer();
+        this.consumerIndex = consumerIndex;
+        this.workerSize = workerSize;
+
+        counters = new UnsafeBuffer(RELEASE_LOCK_INDEX + Long.BYTES * 8);
+        completions = new UnsafeBuffer(ringBuffer.capacity() >> ALIGNMENT_SHIFT);
+        pendings = new UnsafeBuffer(PENDING_STRIDE * (workerSize + 1));
+        for (int i = 0; i < workerSize; i++)
+        {
+            pendings.putLong(pendingIndex(i), NO_RECORD);
+        }
+
+        counters.putLongVolatile(CLAIM_POSITION_INDEX, ringBuffer.consumerPosition(consumerIndex));
+    }
+
+    /**
+     * @return the number of workers
+     */
+    public int workerSize()
+    {
+        return workerSize;
+    }
+
+    /**
+     * Reads messages from the ring buffer for the specified worker.
+     *
+     * @param workerIndex the index of the worker, each worker must be driven by a single thread
+     * @param handler     the handler to process the messages
+     * @return the number of messages read
+     */
+    public int read(int workerIndex, final MessageHandler handler)
+    {
+        return read(workerIndex, handler, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads messages from the ring buffer for the specified worker with a limit.
+     *
+     * @param workerIndex the index of the worker, each worker must be driven by a single thread
+     * @param handler     the handler to process the messages
+     * @param limit       the maximum number of messages to read
+     * @return the number of messages read
+     */
+    public int read(int workerIndex, final MessageHandler handler, int limit)
+    {
+        for (int i = 0; i < limit; i++)
+        {
+            if (!readOne(workerIndex, handler))
+            {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Claims and reads one message from the ring buffer for the specified worker.
+     * <p>
+     * If the handler does not commit the message or throws, the worker keeps its claim and the same message is
+     * delivered again on the next read of this worker.
+     *
+     * @param workerIndex the index of the worker, each worker must be driven by a single thread
+     * @param handler     the handler to process the message
+     * @return true if a message was read, false otherwise
+     */
+    public boolean readOne(int workerIndex, final MessageHandler handler)
+    {
+        final int pendingIndex = pendingIndex(workerIndex);
+        long recordPosition = pendings.getLong(pendingIndex);
+
+        if (recordPosition == NO_RECORD)
+        {
+            recordPosition = claim();
+            if (recordPosition == NO_RECORD)
+            {
+                release();
+                return false;
+            }
+        }
+
+        int recordOffset = offset(recordPosition);
+        int messageLength = buffer.getInt(recordOffset);
+        int messageTypeId = buffer.getInt(recordOffset + Integer.BYTES);
+
+        // the claim is kept until the message is committed, the release would otherwise wait for its slot forever
+        pendings.putLong(pendingIndex, recordPosition);
+        if (!handler.onMessage(messageTypeId, buffer, recordOffset + HEADER_LENGTH, messageLength))
+        {
+            return false;
+        }
+
+        pendings.putLong(pendingIndex, NO_RECORD);
+        completions.putByteVolatile(recordOffset >> ALIGNMENT_SHIFT, COMPLETED);
+        release();
+
+        return true;
+    }
+
+    private long claim()
+    {
+        while (true)
+        {
+            long claimPosition = counters.getLongVolatile(CLAIM_POSITION_INDEX);
+            long recordPosition = ringBuffer.sharedRecordPosition(consumerIndex, claimPosition);
+            if (recordPosition == NO_RECORD)
+            {
+                return NO_RECORD;
+            }
+
+            if (counters.compareAndSetLong(CLAIM_POSITION_INDEX, claimPosition, ringBuffer.nextPosition(recordPosition)))
+            {
+                return recordPosition;
+            }
+        }
+    }
+
+    /**
+     * Advances the consumer position over the completed records. Only one worker releases at a time,
+     * the others leave their completions to it.
+     */
+    private void release()
+    {
+        do
+        {
+            if (!counters.compareAndSetLong(RELEASE_LOCK_INDEX, 0, 1))
+            {
+                return;
+            }
+
+            releaseCompleted();
+
+            counters.putLongVolatile(RELEASE_LOCK_INDEX, 0);
+        }
+        // a completion may have been left to this releaser after it stopped scanning
+        while (releasable());
+    }
+
+    private void releaseCompleted()
+    {
+        final long startPosition = ringBuffer.consumerPosition(consumerIndex);
+        final long claimPosition = counters.getLongVolatile(CLAIM_POSITION_INDEX);
+
+        long position = startPosition;
+        while (position != claimPosition)
+        {
+            int offset = offset(position);
+            int messageLength = buffer.getInt(offset);
+
+            if (messageLength == 0)
+            {
+                // the tail skipped by the producer
+                position = position(0, !flip(position));
+                continue;
+            }
+
+            int completionIndex = offset >> ALIGNMENT_SHIFT;
+            if (completions.getByteVolatile(completionIndex) != COMPLETED)
+            {
+                break;
+            }
+            completions.putByte(completionIndex, (byte)0);
+
+            position = ringBuffer.nextPosition(position);
+        }
+
+        if (position != startPosition)
+        {
+            // cleared by the ring buffer if needed, after the position up to which the bytes are cleared is published
+            ringBuffer.commitConsumed(consumerIndex, startPosition, position);
+        }
+    }
+
+    private boolean releasable()
+    {
+        long position = ringBuffer.consumerPosition(consumerIndex);
+        if (position == counters.getLongVolatile(CLAIM_POSITION_INDEX))
+        {
+            return false;
+        }
+
+        int offset = offset(position);
+        return buffer.getInt(offset) == 0 || completions.getByteVolatile(offset >> ALIGNMENT_SHIFT) == COMPLETED;
+    }
+
+    private int pendingIndex(int workerIndex)
+    {
+        return PENDING_STRIDE * workerIndex + PENDING_STRIDE - Long.BYTES;
+    }
+}
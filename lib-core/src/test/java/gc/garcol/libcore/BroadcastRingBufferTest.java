@@ -0,0 +1,111 @@
+package gc.garcol.libcore;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author thaivc
+ * @since 2024
+ */
+public class BroadcastRingBufferTest
+{
+
+    ByteBuffer messageBufferWriter = ByteBuffer.allocate(1 << 10);
+    ByteBuffer messageBufferReader = ByteBuffer.allocate(1 << 10);
+
+    @Test
+    public void shouldReceiveInOrder()
+    {
+        BroadcastRingBuffer broadcastRingBuffer = new BroadcastRingBuffer(10);
+        BroadcastReceiver receiver = new BroadcastReceiver(broadcastRingBuffer);
+
+        for (int i = 0; i < 100; i++)
+        {
+            write(broadcastRingBuffer, i, "Hello, world! " + i);
+            int read = receiver.read((msgTypeId, buffer, index, length) -> {
+                messageBufferReader.clear();
+                buffer.getBytes(index, messageBufferReader, 0, length);
+                Assertions.assertEquals("Hello, world! " + msgTypeId, new String(messageBufferReader.array(), 0, length));
+                return true;
+            });
+            Assertions.assertEquals(1, read);
+        }
+
+        Assertions.assertEquals(0, receiver.lappedCount());
+        Assertions.assertEquals(0, receiver.lostMessages());
+    }
+
+    @Test
+    public void shouldNeverBlockProducerAndResyncLappedReceiver()
+    {
+        BroadcastRingBuffer broadcastRingBuffer = new BroadcastRingBuffer(10);
+        BroadcastReceiver receiver = new BroadcastReceiver(broadcastRingBuffer);
+
+        int messageCount = 1_000;
+        for (int i = 0; i < messageCount; i++)
+        {
+            write(broadcastRingBuffer, i, "Hello, world! " + i);
+        }
+
+        int[] lastMsgTypeId = { -1 };
+        int read = receiver.read((msgTypeId, buffer, index, length) -> {
+            Assertions.assertTrue(msgTypeId > lastMsgTypeId[0], "Message out of order");
+            lastMsgTypeId[0] = msgTypeId;
+            return true;
+        });
+
+        Assertions.assertEquals(messageCount - 1, lastMsgTypeId[0], "Receiver should catch up with the latest message");
+        Assertions.assertEquals(1, receiver.lappedCount());
+        Assertions.assertEquals(messageCount - read, receiver.lostMessages());
+    }
+
+    @Test
+    public void shouldCountLostMessagesOfSlowReceiver_1P1C()
+    {
+        BroadcastRingBuffer broadcastRingBuffer = new BroadcastRingBuffer(10);
+        BroadcastReceiver receiver = new BroadcastReceiver(broadcastRingBuffer);
+
+        int messageCount = 50_000;
+        AtomicBoolean running = new AtomicBoolean(true);
+        long[] received = new long[1];
+        CompletableFuture<?> consumer = CompletableFuture.runAsync(() -> {
+            int[] lastMsgTypeId = { -1 };
+            MessageHandler handler = (msgTypeId, buffer, index, length) -> {
+                Assertions.assertTrue(msgTypeId > lastMsgTypeId[0], "Message out of order");
+                messageBufferReader.clear();
+                buffer.getBytes(index, messageBufferReader, 0, length);
+                Assertions.assertEquals("Hello, world! " + msgTypeId, new String(messageBufferReader.array(), 0, length), "Torn message");
+                lastMsgTypeId[0] = msgTypeId;
+                received[0]++;
+                return true;
+            };
+            while (running.get() || lastMsgTypeId[0] < messageCount - 1)
+            {
+                receiver.read(handler, 3);
+                Thread.yield();
+            }
+        });
+
+        for (int i = 0; i < messageCount; i++)
+        {
+            write(broadcastRingBuffer, i, "Hello, world! " + i);
+        }
+        running.set(false);
+        consumer.join();
+
+        System.out.println("received: " + received[0] + ", lost: " + receiver.lostMessages() + ", lapped: " + receiver.lappedCount());
+        Assertions.assertEquals(messageCount, received[0] + receiver.lostMessages());
+    }
+
+    private void write(BroadcastRingBuffer broadcastRingBuffer, int msgTypeId, String message)
+    {
+        messageBufferWriter.clear();
+        ByteBufferUtil.put(messageBufferWriter, 0, message.getBytes());
+        messageBufferWriter.flip();
+        broadcastRingBuffer.write(msgTypeId, messageBufferWriter);
+    }
+}
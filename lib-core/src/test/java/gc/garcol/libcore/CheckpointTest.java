@@ -0,0 +1,198 @@
+package gc.garcol.libcore;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * @author thaivc
+ * @since 2024
+ */
+public class CheckpointTest
+{
+
+    Path directory;
+
+    @BeforeEach
+    public void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("checkpoint");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException
+    {
+        try (Stream<Path> paths = Files.walk(directory))
+        {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList())
+            {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void shouldKeepSequencesAcrossMappings()
+    {
+        Path file = directory.resolve("checkpoint");
+        Checkpoint checkpoint = new Checkpoint(file, 3);
+        checkpoint.updateProducerSequence(100);
+        checkpoint.updateConsumerSequence(0, 90);
+        checkpoint.updateConsumerSequence(1, 80);
+        checkpoint.updateConsumerSequence(2, 85);
+        checkpoint.force();
+
+        Checkpoint reopenedCheckpoint = new Checkpoint(file, 3);
+        Assertions.assertEquals(100, reopenedCheckpoint.producerSequence());
+        Assertions.assertEquals(90, reopenedCheckpoint.consumerSequence(0));
+        Assertions.assertEquals(80, reopenedCheckpoint.consumerSequence(1));
+        Assertions.assertEquals(85, reopenedCheckpoint.consumerSequence(2));
+        Assertions.assertEquals(80, reopenedCheckpoint.minConsumerSequence());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> reopenedCheckpoint.consumerSequence(3));
+    }
+
+    @Test
+    public void shouldResumeEachConsumerAfterRestart()
+    {
+        int messageCount = 1_000;
+        Path journalDirectory = directory.resolve("journal");
+        Path checkpointFile = directory.resolve("checkpoint");
+
+        // first run: every message is journaled, the consumers stop at different sequences
+        {
+            Journal journal = new Journal(journalDirectory, 1 << 14, Journal.FsyncPolicy.BATCH);
+            Checkpoint checkpoint = new Checkpoint(checkpointFile, 2);
+            OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(18, 2);
+            CheckpointedConsumer first = new CheckpointedConsumer(oneToManyRingBuffer, 0, checkpoint, 0);
+            CheckpointedConsumer second = new CheckpointedConsumer(oneToManyRingBuffer, 1, checkpoint, 0);
+
+            UnsafeBuffer buffer = new UnsafeBuffer(Integer.BYTES);
+            for (int i = 0; i < messageCount; i++)
+            {
+                buffer.putInt(0, i);
+                journal.append(i, buffer, 0, Integer.BYTES);
+                Assertions.assertTrue(oneToManyRingBuffer.write(i, ByteBuffer.allocate(Integer.BYTES)));
+            }
+            journal.endBatch();
+            checkpoint.updateProducerSequence(messageCount);
+
+            Assertions.assertEquals(800, first.read((msgTypeId, readBuffer, index, length) -> true, 800));
+            Assertions.assertEquals(500, second.read((msgTypeId, readBuffer, index, length) -> true, 500));
+            checkpoint.force();
+            journal.close();
+        }
+
+        // second run: only the messages from the lowest checkpointed sequence are replayed
+        Checkpoint checkpoint = new Checkpoint(checkpointFile, 2);
+        Assertions.assertEquals(messageCount, checkpoint.producerSequence());
+        CheckpointRecovery recovery = new CheckpointRecovery(checkpoint, new JournalReader(journalDirectory));
+        Assertions.assertEquals(500, recovery.startSequence());
+
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 2);
+        CheckpointedConsumer first = recovery.consumer(oneToManyRingBuffer, 0);
+        CheckpointedConsumer second = recovery.consumer(oneToManyRingBuffer, 1);
+
+        List<Integer> firstMessages = new ArrayList<>();
+        List<Integer> secondMessages = new ArrayList<>();
+        int replayed = 0;
+        while (first.sequence() < messageCount || second.sequence() < messageCount)
+        {
+            replayed += recovery.replay(oneToManyRingBuffer, 16);
+            first.read((msgTypeId, readBuffer, index, length) -> firstMessages.add(readBuffer.getInt(index)));
+            second.read((msgTypeId, readBuffer, index, length) -> secondMessages.add(readBuffer.getInt(index)));
+        }
+
+        Assertions.assertEquals(messageCount - 500, replayed);
+        Assertions.assertEquals(messageCount - 800, firstMessages.size());
+        Assertions.assertEquals(800, (int)firstMessages.get(0));
+        Assertions.assertEquals(messageCount - 500, secondMessages.size());
+        Assertions.assertEquals(500, (int)secondMessages.get(0));
+        Assertions.assertEquals(messageCount, checkpoint.consumerSequence(0));
+        Assertions.assertEquals(messageCount, checkpoint.minConsumerSequence());
+
+        // nothing left to replay on the next restart
+        CheckpointRecovery nextRecovery = new CheckpointRecovery(checkpoint, new JournalReader(journalDirectory));
+        Assertions.assertEquals(0, nextRecovery.replay(new OneToManyRingBuffer(12, 2), 16));
+    }
+
+    @Test
+    public void shouldNotJournalTheReplayedMessagesAgain()
+    {
+        int messageCount = 1_000;
+        Path journalDirectory = directory.resolve("journal");
+        Path checkpointFile = directory.resolve("checkpoint");
+        ByteBuffer message = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.nativeOrder());
+
+        // first run: the journal stage checkpoints the journal sequence, the next stage stops halfway
+        {
+            Journal journal = new Journal(journalDirectory, 1 << 14, Journal.FsyncPolicy.BATCH);
+            Checkpoint checkpoint = new Checkpoint(checkpointFile, 2);
+            OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(18, 2);
+            JournalConsumer journalConsumer = new JournalConsumer(oneToManyRingBuffer, 0, journal, checkpoint, 0);
+            CheckpointedConsumer second = new CheckpointedConsumer(oneToManyRingBuffer, 1, checkpoint, 0);
+
+            for (int i = 0; i < messageCount; i++)
+            {
+                Assertions.assertTrue(oneToManyRingBuffer.write(i, message.putInt(0, i)));
+            }
+            Assertions.assertEquals(messageCount, journalConsumer.journal());
+            Assertions.assertEquals(messageCount, checkpoint.producerSequence());
+            Assertions.assertEquals(messageCount, checkpoint.consumerSequence(0));
+
+            Assertions.assertEquals(500, second.read((msgTypeId, readBuffer, index, length) -> true, 500));
+            checkpoint.force();
+            journal.close();
+        }
+
+        // second run: the replayed messages reach the journal stage again without being appended
+        Checkpoint checkpoint = new Checkpoint(checkpointFile, 2);
+        CheckpointRecovery recovery = new CheckpointRecovery(checkpoint, new JournalReader(journalDirectory));
+        Assertions.assertEquals(500, recovery.startSequence());
+
+        Journal journal = new Journal(journalDirectory, 1 << 14, Journal.FsyncPolicy.BATCH);
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 2);
+        JournalConsumer journalConsumer = recovery.journalConsumer(oneToManyRingBuffer, 0, journal);
+        CheckpointedConsumer second = recovery.consumer(oneToManyRingBuffer, 1);
+
+        List<Integer> secondMessages = new ArrayList<>();
+        int journaled = 0;
+        while (journalConsumer.sequence() < messageCount || second.sequence() < messageCount)
+        {
+            recovery.replay(oneToManyRingBuffer, 16);
+            journaled += journalConsumer.journal();
+            second.read((msgTypeId, readBuffer, index, length) -> secondMessages.add(readBuffer.getInt(index)));
+        }
+
+        Assertions.assertEquals(0, journaled);
+        Assertions.assertEquals(messageCount, journal.sequence());
+        Assertions.assertEquals(messageCount - 500, secondMessages.size());
+        Assertions.assertEquals(500, (int)secondMessages.get(0));
+
+        // the next message is journaled once, after the replayed ones
+        Assertions.assertTrue(oneToManyRingBuffer.write(messageCount, message.putInt(0, messageCount)));
+        Assertions.assertEquals(1, journalConsumer.journal());
+        Assertions.assertEquals(messageCount + 1, journal.sequence());
+        Assertions.assertEquals(messageCount + 1, checkpoint.producerSequence());
+        Assertions.assertEquals(messageCount + 1, checkpoint.consumerSequence(0));
+        journal.close();
+
+        List<Integer> journaledMessages = new ArrayList<>();
+        new JournalReader(journalDirectory).read((msgTypeId, readBuffer, index, length) -> journaledMessages.add(readBuffer.getInt(index)));
+        Assertions.assertEquals(messageCount + 1, journaledMessages.size());
+        for (int i = 0; i <= messageCount; i++)
+        {
+            Assertions.assertEquals(i, (int)journaledMessages.get(i));
+        }
+    }
+}
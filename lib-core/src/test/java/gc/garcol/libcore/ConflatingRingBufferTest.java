@@ -0,0 +1,169 @@
+package gc.garcol.libcore;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author thaivc
+ * @since 2024
+ */
+public class ConflatingRingBufferTest
+{
+
+    ByteBuffer messageBufferWriter = ByteBuffer.allocate(1 << 10);
+    ByteBuffer messageBufferReader = ByteBuffer.allocate(1 << 10);
+
+    @Test
+    public void shouldReplacePendingMessageInPlace()
+    {
+        ConflatingRingBuffer conflatingRingBuffer = new ConflatingRingBuffer(10, 1, 16);
+
+        Assertions.assertTrue(write(conflatingRingBuffer, 1, 1, "price 100"));
+        Assertions.assertTrue(write(conflatingRingBuffer, 2, 1, "price 200"));
+        Assertions.assertTrue(write(conflatingRingBuffer, 1, 2, "price 101"));
+        Assertions.assertTrue(write(conflatingRingBuffer, 1, 3, "price 102"));
+
+        List<String> messages = readAll(conflatingRingBuffer, 0);
+        Assertions.assertEquals(List.of("1:3:price 102", "2:1:price 200"), messages);
+        Assertions.assertEquals(2, conflatingRingBuffer.conflatedMessages());
+    }
+
+    @Test
+    public void shouldSupersedePendingMessageOfDifferentLength()
+    {
+        ConflatingRingBuffer conflatingRingBuffer = new ConflatingRingBuffer(12, 2, 16);
+
+        Assertions.assertTrue(write(conflatingRingBuffer, 1, 1, "short"));
+        Assertions.assertTrue(write(conflatingRingBuffer, 2, 1, "price 200"));
+        Assertions.assertTrue(write(conflatingRingBuffer, 1, 2, "a much longer message which does not fit in the same record"));
+
+        List<String> expected = List.of("2:1:price 200", "1:2:a much longer message which does not fit in the same record");
+        Assertions.assertEquals(expected, readAll(conflatingRingBuffer, 0));
+        Assertions.assertEquals(expected, readAll(conflatingRingBuffer, 1));
+        Assertions.assertEquals(1, conflatingRingBuffer.conflatedMessages());
+    }
+
+    @Test
+    public void shouldRemoveTakenKeysWhenCyclingMoreKeysThanTheCapacity()
+    {
+        int keyCapacity = 1 << 14;
+        int indexSize = keyCapacity * 2;
+        int keyCount = indexSize * 4;
+        ConflatingRingBuffer conflatingRingBuffer = new ConflatingRingBuffer(23, 1, keyCapacity);
+        MessageHandler handler = (msgTypeId, buffer, index, length) -> true;
+
+        // every entry of the index is used, then taken
+        int key = 0;
+        for (; key < indexSize; key++)
+        {
+            Assertions.assertTrue(write(conflatingRingBuffer, key, 1, "price " + key));
+        }
+        Assertions.assertEquals(indexSize, conflatingRingBuffer.read(0, handler));
+
+        // the taken keys on the probe sequences are removed, a new key would otherwise scan the whole index
+        for (; key < keyCount; key++)
+        {
+            Assertions.assertTrue(write(conflatingRingBuffer, key, 1, "price " + key));
+            Assertions.assertEquals(1, conflatingRingBuffer.read(0, handler));
+        }
+        for (int absentKey = keyCount; absentKey < keyCount + indexSize; absentKey++)
+        {
+            Assertions.assertTrue(conflatingRingBuffer.probeLength(absentKey) <= 8);
+        }
+
+        for (key = keyCount; key < keyCount + 4; key++)
+        {
+            Assertions.assertTrue(write(conflatingRingBuffer, key, 1, "price 100"));
+            Assertions.assertTrue(write(conflatingRingBuffer, key, 2, "price 101"));
+        }
+        Assertions.assertEquals(4, conflatingRingBuffer.conflatedMessages());
+        Assertions.assertEquals(
+            List.of(keyCount + ":2:price 101", (keyCount + 1) + ":2:price 101", (keyCount + 2) + ":2:price 101", (keyCount + 3) + ":2:price 101"),
+            readAll(conflatingRingBuffer, 0)
+        );
+    }
+
+    @Test
+    public void shouldNotConflateTakenMessage()
+    {
+        ConflatingRingBuffer conflatingRingBuffer = new ConflatingRingBuffer(10, 1, 16);
+
+        Assertions.assertTrue(write(conflatingRingBuffer, 1, 1, "price 100"));
+        Assertions.assertEquals(List.of("1:1:price 100"), readAll(conflatingRingBuffer, 0));
+
+        Assertions.assertTrue(write(conflatingRingBuffer, 1, 2, "price 101"));
+        Assertions.assertEquals(List.of("1:2:price 101"), readAll(conflatingRingBuffer, 0));
+        Assertions.assertEquals(0, conflatingRingBuffer.conflatedMessages());
+    }
+
+    @Test
+    public void shouldDeliverLatestValueOfEachKey_1P1C()
+    {
+        int keySize = 8;
+        int messageCount = 20_000;
+        ConflatingRingBuffer conflatingRingBuffer = new ConflatingRingBuffer(10, 1, keySize);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        long[] lastValues = new long[keySize];
+        CompletableFuture<?> consumer = CompletableFuture.runAsync(() -> {
+            MessageHandler handler = (msgTypeId, buffer, index, length) -> {
+                int key = (int)ConflatingRingBuffer.key(buffer, index);
+                Assertions.assertTrue(msgTypeId > lastValues[key], "Value of key " + key + " went backward");
+                messageBufferReader.clear();
+                buffer.getBytes(index, messageBufferReader, 0, length);
+                Assertions.assertEquals("value " + msgTypeId, new String(messageBufferReader.array(), 0, length), "Torn message");
+                lastValues[key] = msgTypeId;
+                return true;
+            };
+            while (running.get())
+            {
+                conflatingRingBuffer.read(0, handler, 4);
+                Thread.yield();
+            }
+            conflatingRingBuffer.read(0, handler);
+        });
+
+        for (int i = 1; i <= messageCount; i++)
+        {
+            // same aligned length for every value up to 5 digits, replaced in place
+            while (!write(conflatingRingBuffer, i % keySize, i, "value " + i))
+            {
+                Thread.onSpinWait();
+            }
+        }
+        running.set(false);
+        consumer.join();
+
+        for (int key = 0; key < keySize; key++)
+        {
+            Assertions.assertEquals(messageCount - keySize + (key == 0 ? keySize : key), lastValues[key], "Latest value of key " + key);
+        }
+        System.out.println("conflated messages: " + conflatingRingBuffer.conflatedMessages());
+    }
+
+    private boolean write(ConflatingRingBuffer conflatingRingBuffer, long key, int msgTypeId, String message)
+    {
+        messageBufferWriter.clear();
+        ByteBufferUtil.put(messageBufferWriter, 0, message.getBytes());
+        messageBufferWriter.flip();
+        return conflatingRingBuffer.write(key, msgTypeId, messageBufferWriter);
+    }
+
+    private List<String> readAll(ConflatingRingBuffer conflatingRingBuffer, int consumerIndex)
+    {
+        List<String> messages = new ArrayList<>();
+        conflatingRingBuffer.read(consumerIndex, (msgTypeId, buffer, index, length) -> {
+            messageBufferReader.clear();
+            buffer.getBytes(index, messageBufferReader, 0, length);
+            messages.add(ConflatingRingBuffer.key(buffer, index) + ":" + msgTypeId + ":" + new String(messageBufferReader.array(), 0, length));
+            return true;
+        });
+        return messages;
+    }
+}
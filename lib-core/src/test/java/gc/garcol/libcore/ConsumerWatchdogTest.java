@@ -0,0 +1,150 @@
+package gc.garcol.libcore;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author thaivc
+ * @since 2024
+ */
+public class ConsumerWatchdogTest
+{
+
+    @Test
+    public void shouldRaiseLagAlarmOncePerEpisode()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 1);
+        List<Long> lags = new ArrayList<>();
+        ConsumerWatchdog watchdog = new ConsumerWatchdog(oneToManyRingBuffer, 1_024, Long.MAX_VALUE, new WatchdogListener()
+        {
+            @Override
+            public void onLag(int consumerIndex, long lag)
+            {
+                lags.add(lag);
+            }
+        });
+
+        Assertions.assertEquals(0, watchdog.poll(0));
+        for (int i = 0; i < 8; i++)
+        {
+            Assertions.assertTrue(oneToManyRingBuffer.write(i, ByteBuffer.allocate(Integer.BYTES)));
+        }
+        Assertions.assertEquals(8 * OneToManyRingBuffer.alignedRecordLength(Integer.BYTES), oneToManyRingBuffer.lag(0));
+        Assertions.assertEquals(1, watchdog.poll(1));
+        Assertions.assertEquals(0, watchdog.poll(2));
+        Assertions.assertEquals(1, watchdog.lagAlarms(0));
+        Assertions.assertEquals(8 * OneToManyRingBuffer.alignedRecordLength(Integer.BYTES), (long)lags.get(0));
+
+        Assertions.assertEquals(8, oneToManyRingBuffer.read(0, (msgTypeId, buffer, index, length) -> true));
+        Assertions.assertEquals(0, oneToManyRingBuffer.lag(0));
+        Assertions.assertEquals(0, watchdog.poll(3));
+
+        for (int i = 0; i < 8; i++)
+        {
+            Assertions.assertTrue(oneToManyRingBuffer.write(i, ByteBuffer.allocate(Integer.BYTES)));
+        }
+        Assertions.assertEquals(1, watchdog.poll(4));
+        Assertions.assertEquals(2, watchdog.lagAlarms(0));
+        Assertions.assertEquals(0, watchdog.stallAlarms(0));
+    }
+
+    @Test
+    public void shouldRaiseStallAlarmOnlyWhileMessagesAreAvailable()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 2);
+        List<Integer> stalledConsumers = new ArrayList<>();
+        ConsumerWatchdog watchdog = new ConsumerWatchdog(oneToManyRingBuffer, Long.MAX_VALUE, 100, new WatchdogListener()
+        {
+            @Override
+            public void onStall(int consumerIndex, long stalledNs)
+            {
+                Assertions.assertEquals(100, stalledNs);
+                stalledConsumers.add(consumerIndex);
+            }
+        });
+
+        // idle consumers are not stalled
+        Assertions.assertEquals(0, watchdog.poll(0));
+        Assertions.assertEquals(0, watchdog.poll(1_000));
+
+        Assertions.assertTrue(oneToManyRingBuffer.write(1, ByteBuffer.allocate(Integer.BYTES)));
+        Assertions.assertEquals(0, watchdog.poll(1_000));
+        Assertions.assertEquals(1, watchdog.poll(1_100));
+        Assertions.assertEquals(List.of(0), stalledConsumers);
+        Assertions.assertEquals(0, watchdog.poll(1_200));
+
+        // the first consumer moves on, the message becomes available to the second one
+        Assertions.assertEquals(1, oneToManyRingBuffer.read(0, (msgTypeId, buffer, index, length) -> true));
+        Assertions.assertEquals(0, watchdog.poll(1_250));
+        Assertions.assertEquals(1, watchdog.poll(1_300));
+        Assertions.assertEquals(List.of(0, 1), stalledConsumers);
+        Assertions.assertEquals(1, watchdog.stallAlarms(0));
+        Assertions.assertEquals(1, watchdog.stallAlarms(1));
+        Assertions.assertFalse(oneToManyRingBuffer.isEvicted(0));
+    }
+
+    @Test
+    public void shouldEvictStalledConsumerSoThatOthersKeepFlowing()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 3);
+        List<Integer> evictedConsumers = new ArrayList<>();
+        ConsumerWatchdog watchdog = new ConsumerWatchdog(oneToManyRingBuffer, Long.MAX_VALUE, 100, new WatchdogListener()
+        {
+            @Override
+            public void onEviction(int consumerIndex)
+            {
+                evictedConsumers.add(consumerIndex);
+            }
+        }).evictable(1);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> watchdog.evictable(2));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new OneToManyRingBuffer(12, 3, 1_024).evict(0));
+
+        ByteBuffer message = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.nativeOrder());
+        List<Integer> firstMessages = new ArrayList<>();
+        List<Integer> lastMessages = new ArrayList<>();
+        MessageHandler firstHandler = (msgTypeId, buffer, index, length) -> firstMessages.add(buffer.getInt(index));
+        MessageHandler lastHandler = (msgTypeId, buffer, index, length) -> lastMessages.add(buffer.getInt(index));
+
+        // the second consumer never reads: the ring buffer fills up
+        int written = 0;
+        while (oneToManyRingBuffer.write(written, message.putInt(0, written)))
+        {
+            written++;
+            oneToManyRingBuffer.read(0, firstHandler);
+        }
+        Assertions.assertEquals(0, oneToManyRingBuffer.read(2, lastHandler));
+
+        Assertions.assertEquals(0, watchdog.poll(0));
+        Assertions.assertEquals(1, watchdog.poll(100));
+        Assertions.assertEquals(List.of(1), evictedConsumers);
+        Assertions.assertTrue(oneToManyRingBuffer.isEvicted(1));
+
+        // the last consumer now depends on the first one, the evicted one reads nothing
+        int messageCount = written * 4;
+        while (written < messageCount)
+        {
+            if (oneToManyRingBuffer.write(written, message.putInt(0, written)))
+            {
+                written++;
+            }
+            oneToManyRingBuffer.read(0, firstHandler);
+            oneToManyRingBuffer.read(2, lastHandler);
+        }
+        oneToManyRingBuffer.read(0, firstHandler);
+        oneToManyRingBuffer.read(2, lastHandler);
+        Assertions.assertFalse(oneToManyRingBuffer.readOne(1, (msgTypeId, buffer, index, length) -> true));
+
+        Assertions.assertEquals(messageCount, firstMessages.size());
+        Assertions.assertEquals(messageCount, lastMessages.size());
+        for (int i = 0; i < messageCount; i++)
+        {
+            Assertions.assertEquals(i, (int)lastMessages.get(i));
+        }
+        Assertions.assertEquals(0, watchdog.poll(1_000));
+    }
+}
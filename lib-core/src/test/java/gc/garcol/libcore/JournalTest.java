@@ -0,0 +1,203 @@
+package gc.garcol.libcore;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * @author thaivc
+ * @since 2024
+ */
+public class JournalTest
+{
+
+    ByteBuffer messageBufferWriter = ByteBuffer.allocate(1 << 10);
+    ByteBuffer messageBufferReader = ByteBuffer.allocate(1 << 10);
+
+    Path directory;
+
+    @BeforeEach
+    public void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("journal");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException
+    {
+        try (Stream<Path> paths = Files.walk(directory))
+        {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList())
+            {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void shouldJournalBeforeNextConsumerAndRollSegments()
+    {
+        int messageCount = 1_000;
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 2);
+        Journal journal = new Journal(directory, 1 << 12, 16, Journal.FsyncPolicy.BATCH, 0);
+        JournalConsumer journalConsumer = new JournalConsumer(oneToManyRingBuffer, 0, journal);
+
+        List<String> processed = new ArrayList<>();
+        for (int i = 0; i < messageCount; i++)
+        {
+            while (!write(oneToManyRingBuffer, i, "Hello, world! " + i))
+            {
+                Assertions.assertEquals(0, oneToManyRingBuffer.read(1, (msgTypeId, buffer, index, length) -> true), "Only journaled messages are visible");
+                journalConsumer.journal(4);
+                oneToManyRingBuffer.read(1, (msgTypeId, buffer, index, length) -> processed.add(message(buffer, index, length)));
+            }
+        }
+        journalConsumer.journal();
+        oneToManyRingBuffer.read(1, (msgTypeId, buffer, index, length) -> processed.add(message(buffer, index, length)));
+        journal.close();
+
+        Assertions.assertEquals(messageCount, journal.sequence());
+        Assertions.assertEquals(messageCount, processed.size());
+        Assertions.assertTrue(Journal.segmentSequences(directory).length > 1, "Journal should roll segments");
+
+        JournalReader journalReader = new JournalReader(directory, 16);
+        List<String> journaled = new ArrayList<>();
+        Assertions.assertEquals(messageCount, journalReader.read((msgTypeId, buffer, index, length) -> {
+            Assertions.assertEquals("Hello, world! " + msgTypeId, message(buffer, index, length));
+            return journaled.add(message(buffer, index, length));
+        }));
+        Assertions.assertEquals(processed, journaled);
+    }
+
+    @Test
+    public void shouldSeekBySequence()
+    {
+        Journal journal = new Journal(directory, 1 << 12, 16, Journal.FsyncPolicy.NONE, 0);
+        UnsafeBuffer buffer = new UnsafeBuffer(64);
+        for (int i = 0; i < 1_000; i++)
+        {
+            buffer.putInt(0, i);
+            journal.append(i, buffer, 0, Integer.BYTES * (1 + i % 8));
+        }
+        journal.close();
+
+        JournalReader journalReader = new JournalReader(directory, 16);
+        for (long sequence : new long[] { 0, 15, 16, 17, 500, 777, 999 })
+        {
+            Assertions.assertTrue(journalReader.seek(sequence));
+            Assertions.assertEquals(sequence, journalReader.sequence());
+            Assertions.assertEquals(1, journalReader.read((msgTypeId, readBuffer, index, length) -> {
+                Assertions.assertEquals(sequence, msgTypeId);
+                Assertions.assertEquals(sequence, readBuffer.getInt(index));
+                return true;
+            }, 1));
+        }
+        Assertions.assertFalse(journalReader.seek(1_000));
+    }
+
+    @Test
+    public void shouldReplayIntoRingBuffer()
+    {
+        int messageCount = 500;
+        Journal journal = new Journal(directory, 1 << 12, Journal.FsyncPolicy.PERIODIC);
+        UnsafeBuffer buffer = new UnsafeBuffer(64);
+        for (int i = 0; i < messageCount; i++)
+        {
+            buffer.putInt(0, i);
+            journal.append(i, buffer, 0, Integer.BYTES);
+            journal.endBatch();
+        }
+        journal.close();
+
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(10, 1);
+        JournalReader journalReader = new JournalReader(directory);
+        int[] next = { 0 };
+        int replayed = 0;
+        while (replayed < messageCount)
+        {
+            replayed += journalReader.replay(oneToManyRingBuffer, 3);
+            oneToManyRingBuffer.read(0, (msgTypeId, readBuffer, index, length) -> {
+                Assertions.assertEquals(next[0], msgTypeId);
+                Assertions.assertEquals(next[0], readBuffer.getInt(index));
+                next[0]++;
+                return true;
+            });
+        }
+        Assertions.assertEquals(messageCount, next[0]);
+        Assertions.assertEquals(0, journalReader.replay(oneToManyRingBuffer, 1));
+    }
+
+    @Test
+    public void shouldAppendAfterLastRecordWhenReopened()
+    {
+        UnsafeBuffer buffer = new UnsafeBuffer(64);
+        Journal journal = new Journal(directory, 1 << 10, Journal.FsyncPolicy.BATCH);
+        for (int i = 0; i < 50; i++)
+        {
+            journal.append(i, buffer, 0, Integer.BYTES);
+        }
+        journal.close();
+
+        Journal reopenedJournal = new Journal(directory, 1 << 10, Journal.FsyncPolicy.BATCH);
+        Assertions.assertEquals(50, reopenedJournal.sequence());
+        for (int i = 50; i < 100; i++)
+        {
+            reopenedJournal.append(i, buffer, 0, Integer.BYTES);
+        }
+        reopenedJournal.close();
+
+        int[] next = { 0 };
+        new JournalReader(directory).read((msgTypeId, readBuffer, index, length) -> msgTypeId == next[0]++);
+        Assertions.assertEquals(100, next[0]);
+    }
+
+    @Test
+    public void shouldPreTouchOnlyUnwrittenPartOfSegment()
+    {
+        int segmentLength = PreTouch.MIN_LENGTH_PER_THREAD * 2;
+        UnsafeBuffer buffer = new UnsafeBuffer(64);
+        Journal journal = new Journal(directory, segmentLength, 64, Journal.FsyncPolicy.NONE, 0, 2);
+        for (int i = 0; i < 50; i++)
+        {
+            buffer.putInt(0, i);
+            journal.append(i, buffer, 0, Integer.BYTES);
+        }
+        journal.close();
+
+        // the records written before the reopening are kept
+        Journal reopenedJournal = new Journal(directory, segmentLength, 64, Journal.FsyncPolicy.NONE, 0, 2);
+        Assertions.assertEquals(50, reopenedJournal.sequence());
+        buffer.putInt(0, 50);
+        reopenedJournal.append(50, buffer, 0, Integer.BYTES);
+        reopenedJournal.close();
+
+        int[] next = { 0 };
+        new JournalReader(directory).read((msgTypeId, readBuffer, index, length) -> msgTypeId == next[0] && readBuffer.getInt(index) == next[0]++);
+        Assertions.assertEquals(51, next[0]);
+    }
+
+    private String message(UnsafeBuffer buffer, int index, int length)
+    {
+        messageBufferReader.clear();
+        buffer.getBytes(index, messageBufferReader, 0, length);
+        return new String(messageBufferReader.array(), 0, length);
+    }
+
+    private boolean write(OneToManyRingBuffer oneToManyRingBuffer, int msgTypeId, String message)
+    {
+        messageBufferWriter.clear();
+        ByteBufferUtil.put(messageBufferWriter, 0, message.getBytes());
+        messageBufferWriter.flip();
+        return oneToManyRingBuffer.write(msgTypeId, messageBufferWriter);
+    }
+}
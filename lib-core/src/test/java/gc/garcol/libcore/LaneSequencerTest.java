@@ -0,0 +1,115 @@
+package gc.garcol.libcore;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author thaivc
+ * @since 2024
+ */
+public class LaneSequencerTest
+{
+
+    @Test
+    public void shouldMergeConcurrentProducersKeepingTheirOrder()
+    {
+        int producerSize = 4;
+        int messageCount = 20_000;
+        LaneSequencer sequencer = new LaneSequencer(producerSize, 12, new OneToManyRingBuffer(14, 1), LaneSequencer.MergePolicy.FAIR);
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        List<CompletableFuture<Void>> producers = new ArrayList<>();
+        for (int producer = 0; producer < producerSize; producer++)
+        {
+            final OneToManyRingBuffer lane = sequencer.lane(producer);
+            final int producerId = producer;
+            producers.add(CompletableFuture.runAsync(() -> {
+                ByteBuffer message = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.nativeOrder());
+                for (int i = 0; i < messageCount; i++)
+                {
+                    while (!lane.write(producerId, message.putInt(0, i)))
+                    {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        CompletableFuture<Void> sequencing = CompletableFuture.runAsync(() -> {
+            while (running.get())
+            {
+                if (sequencer.sequence(256) == 0)
+                {
+                    Thread.yield();
+                }
+            }
+        });
+
+        int[] nextMessages = new int[producerSize];
+        int received = 0;
+        long deadline = System.nanoTime() + 60_000_000_000L;
+        while (received < producerSize * messageCount && System.nanoTime() < deadline)
+        {
+            received += sequencer.target().read(0, (msgTypeId, buffer, index, length) -> {
+                Assertions.assertEquals(nextMessages[msgTypeId]++, buffer.getInt(index));
+                return true;
+            });
+        }
+        running.set(false);
+        producers.forEach(CompletableFuture::join);
+        sequencing.join();
+
+        Assertions.assertEquals(producerSize * messageCount, received);
+        for (int producer = 0; producer < producerSize; producer++)
+        {
+            Assertions.assertEquals(messageCount, nextMessages[producer]);
+        }
+    }
+
+    @Test
+    public void shouldMergeLanesRoundRobin()
+    {
+        LaneSequencer sequencer = new LaneSequencer(3, 12, new OneToManyRingBuffer(12, 1), LaneSequencer.MergePolicy.FAIR, 2);
+        for (int lane = 0; lane < 3; lane++)
+        {
+            for (int i = 0; i < 4; i++)
+            {
+                Assertions.assertTrue(sequencer.lane(lane).write(lane, ByteBuffer.allocate(Integer.BYTES)));
+            }
+        }
+
+        Assertions.assertEquals(5, sequencer.sequence(5));
+        Assertions.assertEquals(7, sequencer.sequence(100));
+        Assertions.assertEquals(0, sequencer.sequence(100));
+
+        List<Integer> lanes = new ArrayList<>();
+        sequencer.target().read(0, (msgTypeId, buffer, index, length) -> lanes.add(msgTypeId));
+        Assertions.assertEquals(List.of(0, 0, 1, 1, 2, 0, 0, 1, 1, 2, 2, 2), lanes);
+    }
+
+    @Test
+    public void shouldMergeLanesInTimestampOrder()
+    {
+        LaneSequencer sequencer = new LaneSequencer(3, 12, new OneToManyRingBuffer(12, 1), LaneSequencer.MergePolicy.TIMESTAMP);
+        long[][] timestamps = {{1, 4, 9}, {2, 3, 10}, {5, 6, 7}};
+        ByteBuffer message = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.nativeOrder());
+        for (int lane = 0; lane < timestamps.length; lane++)
+        {
+            for (long timestamp : timestamps[lane])
+            {
+                Assertions.assertTrue(sequencer.lane(lane).write(lane, message.putLong(0, timestamp)));
+            }
+        }
+
+        Assertions.assertEquals(9, sequencer.sequence(100));
+        List<Long> merged = new ArrayList<>();
+        sequencer.target().read(0, (msgTypeId, buffer, index, length) -> merged.add(buffer.getLong(index)));
+        Assertions.assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 9L, 10L), merged);
+    }
+}
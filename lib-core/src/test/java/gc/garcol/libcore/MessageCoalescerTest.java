@@ -0,0 +1,155 @@
+package gc.garcol.libcore;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author thaivc
+ * @since 2024
+ */
+public class MessageCoalescerTest
+{
+    static final int BATCH_TYPE_ID = 100;
+
+    ByteBuffer messageBufferWriter = ByteBuffer.allocate(1 << 10).order(ByteOrder.nativeOrder());
+
+    @Test
+    public void shouldFlushOnSizeThresholdAndDelay()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 1);
+        MessageCoalescer coalescer = new MessageCoalescer(oneToManyRingBuffer, BATCH_TYPE_ID, 64, 1_000);
+
+        // 4 messages of 16 aligned bytes fill a batch, the fifth flushes them
+        for (int i = 0; i < 5; i++)
+        {
+            Assertions.assertTrue(coalescer.offer(i, message(i), 0));
+        }
+        Assertions.assertEquals(1, coalescer.batchSize());
+
+        Assertions.assertEquals(0, coalescer.poll(999));
+        Assertions.assertEquals(1, coalescer.poll(1_000));
+        Assertions.assertEquals(0, coalescer.flush());
+
+        List<Integer> recordTypes = new ArrayList<>();
+        Assertions.assertEquals(2, oneToManyRingBuffer.read(0, (msgTypeId, buffer, index, length) -> recordTypes.add(msgTypeId)));
+        Assertions.assertEquals(List.of(BATCH_TYPE_ID, BATCH_TYPE_ID), recordTypes);
+    }
+
+    @Test
+    public void shouldUnpackInOrderWithOversizedMessages()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 1);
+        MessageCoalescer coalescer = new MessageCoalescer(oneToManyRingBuffer, BATCH_TYPE_ID, 64, 1_000);
+
+        Assertions.assertTrue(coalescer.offer(1, message(1), 0));
+        messageBufferWriter.clear().putInt(0, 2).limit(100);
+        Assertions.assertTrue(coalescer.offer(2, messageBufferWriter, 0));
+        Assertions.assertTrue(coalescer.offer(3, message(3), 0));
+        Assertions.assertEquals(1, coalescer.flush());
+
+        List<Integer> messages = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        CoalescedMessageHandler handler = new CoalescedMessageHandler(BATCH_TYPE_ID, (msgTypeId, buffer, index, length) -> {
+            Assertions.assertEquals(msgTypeId, buffer.getInt(index));
+            lengths.add(length);
+            return messages.add(msgTypeId);
+        });
+        Assertions.assertEquals(3, oneToManyRingBuffer.read(0, handler));
+        Assertions.assertEquals(List.of(1, 2, 3), messages);
+        Assertions.assertEquals(List.of(Integer.BYTES, 100, Integer.BYTES), lengths);
+    }
+
+    @Test
+    public void shouldRejectMessagesOfTheBatchType()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 1);
+        MessageCoalescer coalescer = new MessageCoalescer(oneToManyRingBuffer, BATCH_TYPE_ID, 64, 1_000);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> coalescer.offer(BATCH_TYPE_ID, message(1), 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> coalescer.offer(BATCH_TYPE_ID, new UnsafeBuffer(Integer.BYTES), 0, Integer.BYTES, 0));
+        Assertions.assertEquals(0, coalescer.batchSize());
+        Assertions.assertEquals(0, coalescer.flush());
+    }
+
+    @Test
+    public void shouldResumeBatchWhereDelegateStopped()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 1);
+        MessageCoalescer coalescer = new MessageCoalescer(oneToManyRingBuffer, BATCH_TYPE_ID, 256, 1_000);
+        for (int i = 0; i < 4; i++)
+        {
+            Assertions.assertTrue(coalescer.offer(i, message(i), 0));
+        }
+        Assertions.assertEquals(4, coalescer.flush());
+
+        List<Integer> messages = new ArrayList<>();
+        boolean[] accepting = { true };
+        CoalescedMessageHandler handler = new CoalescedMessageHandler(BATCH_TYPE_ID, (msgTypeId, buffer, index, length) -> {
+            if (msgTypeId == 2 && accepting[0])
+            {
+                accepting[0] = false;
+                return false;
+            }
+            return messages.add(msgTypeId);
+        });
+
+        Assertions.assertEquals(0, oneToManyRingBuffer.read(0, handler));
+        Assertions.assertEquals(List.of(0, 1), messages);
+        Assertions.assertEquals(1, oneToManyRingBuffer.read(0, handler));
+        Assertions.assertEquals(List.of(0, 1, 2, 3), messages);
+    }
+
+    @Test
+    public void shouldDeliverEveryMessage_1P1C()
+    {
+        int messageCount = 1_000_000;
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(16, 1);
+        MessageCoalescer coalescer = new MessageCoalescer(oneToManyRingBuffer, BATCH_TYPE_ID, 1 << 10, 10_000);
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        CompletableFuture<Integer> consumer = CompletableFuture.supplyAsync(() -> {
+            int[] next = { 0 };
+            CoalescedMessageHandler handler = new CoalescedMessageHandler(BATCH_TYPE_ID, (msgTypeId, buffer, index, length) -> {
+                Assertions.assertEquals(next[0], buffer.getInt(index));
+                next[0]++;
+                return true;
+            });
+            while (running.get() || next[0] < messageCount)
+            {
+                if (oneToManyRingBuffer.read(0, handler) == 0)
+                {
+                    Thread.yield();
+                }
+            }
+            return next[0];
+        });
+
+        for (int i = 0; i < messageCount; i++)
+        {
+            while (!coalescer.offer(1, message(i), System.nanoTime()))
+            {
+                Thread.yield();
+            }
+            coalescer.poll(System.nanoTime());
+        }
+        while (coalescer.batchSize() > 0)
+        {
+            coalescer.flush();
+        }
+        running.set(false);
+
+        Assertions.assertEquals(messageCount, (int)consumer.join());
+    }
+
+    private ByteBuffer message(int value)
+    {
+        return messageBufferWriter.clear().putInt(0, value).limit(Integer.BYTES);
+    }
+}
@@ -0,0 +1,166 @@
+package gc.garcol.libcore;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author thaivc
+ * @since 2024
+ */
+public class MessageDispatcherTest
+{
+
+    ByteBuffer messageBufferWriter = ByteBuffer.allocate(1 << 10);
+    ByteBuffer messageBufferReader = ByteBuffer.allocate(1 << 10);
+
+    @Test
+    public void shouldDispatchByMessageType()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 1);
+        List<String> orders = new ArrayList<>();
+        List<String> trades = new ArrayList<>();
+
+        MessageDispatcher dispatcher = new MessageDispatcher(40)
+            .subscribe(1, (msgTypeId, buffer, index, length) -> orders.add(message(buffer, index, length)))
+            .subscribe(2, (msgTypeId, buffer, index, length) -> trades.add(message(buffer, index, length)));
+
+        for (int i = 0; i < 20; i++)
+        {
+            Assertions.assertTrue(write(oneToManyRingBuffer, i % 4, "message " + i));
+        }
+
+        int read = oneToManyRingBuffer.read(0, dispatcher);
+
+        Assertions.assertEquals(10, read);
+        Assertions.assertEquals(List.of("message 1", "message 5", "message 9", "message 13", "message 17"), orders);
+        Assertions.assertEquals(List.of("message 2", "message 6", "message 10", "message 14", "message 18"), trades);
+        Assertions.assertEquals(0, oneToManyRingBuffer.read(0, (msgTypeId, buffer, index, length) -> true), "Skipped messages should be consumed");
+    }
+
+    @Test
+    public void shouldSkipUnsubscribedTypesAsHandler()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 1);
+        List<Integer> msgTypeIds = new ArrayList<>();
+
+        MessageDispatcher dispatcher = new MessageDispatcher(4)
+            .subscribe(3, (msgTypeId, buffer, index, length) -> msgTypeIds.add(msgTypeId));
+
+        Assertions.assertTrue(write(oneToManyRingBuffer, 3, "subscribed"));
+        Assertions.assertTrue(write(oneToManyRingBuffer, 4, "unsubscribed"));
+        Assertions.assertTrue(write(oneToManyRingBuffer, 100, "out of the table"));
+        Assertions.assertTrue(write(oneToManyRingBuffer, 3, "subscribed"));
+
+        MessageHandler handler = dispatcher;
+        Assertions.assertEquals(4, oneToManyRingBuffer.read(0, handler));
+        Assertions.assertEquals(List.of(3, 3), msgTypeIds);
+
+        dispatcher.unsubscribe(3);
+        Assertions.assertFalse(dispatcher.isSubscribed(3));
+        Assertions.assertEquals(0, dispatcher.subscriptionSize());
+    }
+
+    @Test
+    public void shouldRedeliverRejectedMessageAfterSkippedRun()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 2);
+        boolean[] accept = { false };
+        List<String> messages = new ArrayList<>();
+
+        MessageDispatcher dispatcher = new MessageDispatcher(2)
+            .subscribe(1, (msgTypeId, buffer, index, length) -> accept[0] && messages.add(message(buffer, index, length)));
+
+        Assertions.assertTrue(write(oneToManyRingBuffer, 0, "skipped 0"));
+        Assertions.assertTrue(write(oneToManyRingBuffer, 0, "skipped 1"));
+        Assertions.assertTrue(write(oneToManyRingBuffer, 1, "rejected then accepted"));
+
+        Assertions.assertEquals(0, oneToManyRingBuffer.read(0, dispatcher));
+        List<String> next = new ArrayList<>();
+        Assertions.assertEquals(2, oneToManyRingBuffer.read(1, (msgTypeId, buffer, index, length) -> next.add(message(buffer, index, length))),
+            "The skipped run should be committed up to the rejected message");
+
+        accept[0] = true;
+        Assertions.assertEquals(1, oneToManyRingBuffer.read(0, dispatcher));
+        Assertions.assertEquals(List.of("rejected then accepted"), messages);
+        Assertions.assertEquals(List.of("skipped 0", "skipped 1"), next);
+    }
+
+    @Test
+    public void shouldDispatchSubscribedTypesAcrossLaps_1P2C()
+    {
+        int messageCount = 50_000;
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(10, 2);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        long[] counts = new long[2];
+        MessageDispatcher firstDispatcher = new MessageDispatcher(40)
+            .subscribe(7, (msgTypeId, buffer, index, length) -> {
+                Assertions.assertEquals(msgTypeId, buffer.getInt(index));
+                counts[0]++;
+                return true;
+            });
+        MessageDispatcher lastDispatcher = new MessageDispatcher(40)
+            .subscribe(7, (msgTypeId, buffer, index, length) -> true)
+            .subscribe(13, (msgTypeId, buffer, index, length) -> {
+                Assertions.assertEquals(msgTypeId, buffer.getInt(index));
+                counts[1]++;
+                return true;
+            });
+
+        CompletableFuture<?> first = CompletableFuture.runAsync(() -> {
+            while (running.get() || counts[0] < messageCount / 40)
+            {
+                oneToManyRingBuffer.read(0, firstDispatcher, 8);
+                Thread.yield();
+            }
+        });
+        CompletableFuture<?> last = CompletableFuture.runAsync(() -> {
+            while (running.get() || counts[1] < messageCount / 40)
+            {
+                oneToManyRingBuffer.read(1, lastDispatcher, 8);
+                Thread.yield();
+            }
+        });
+
+        ByteBuffer writer = ByteBuffer.allocate(Integer.BYTES * 3).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < messageCount; i++)
+        {
+            int msgTypeId = i % 40;
+            writer.clear();
+            writer.putInt(0, msgTypeId);
+            writer.limit(Integer.BYTES * (1 + i % 3));
+            while (!oneToManyRingBuffer.write(msgTypeId, writer))
+            {
+                Thread.yield();
+            }
+        }
+        running.set(false);
+
+        first.join();
+        last.join();
+        Assertions.assertEquals(messageCount / 40, counts[0]);
+        Assertions.assertEquals(messageCount / 40, counts[1]);
+    }
+
+    private String message(UnsafeBuffer buffer, int index, int length)
+    {
+        messageBufferReader.clear();
+        buffer.getBytes(index, messageBufferReader, 0, length);
+        return new String(messageBufferReader.array(), 0, length);
+    }
+
+    private boolean write(OneToManyRingBuffer oneToManyRingBuffer, int msgTypeId, String message)
+    {
+        messageBufferWriter.clear();
+        ByteBufferUtil.put(messageBufferWriter, 0, message.getBytes());
+        messageBufferWriter.flip();
+        return oneToManyRingBuffer.write(msgTypeId, messageBufferWriter);
+    }
+}
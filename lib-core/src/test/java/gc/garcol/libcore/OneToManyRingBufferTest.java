@@ -5,6 +5,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -205,6 +206,34 @@ public class OneToManyRingBufferTest
         Assertions.assertEquals(publishedMessage, consumedIndexes.get(1).get(), "Consumer 1 not consume all messages");
     }
 
+    @Test
+    public void shouldWriteGatheredParts_1P1C_10()
+    {
+        oneToManyRingBuffer = new OneToManyRingBuffer(10, 1);
+        byte[] header = "[header]".getBytes();
+        ByteBuffer directPayload = ByteBuffer.allocateDirect(16).put(0, "direct payload".getBytes());
+        ByteBuffer heapPayload = ByteBuffer.wrap("--heap payload--".getBytes());
+
+        Assertions.assertTrue(oneToManyRingBuffer.write(1, ByteBuffer.wrap(header), heapPayload.limit(6), directPayload.limit(14)));
+        Assertions.assertTrue(oneToManyRingBuffer.write(2, header, 1, 6, directPayload, 7, 7));
+        Assertions.assertTrue(oneToManyRingBuffer.write(3, ByteBuffer.wrap(header), 0, 8, heapPayload.limit(16), 2, 12));
+        Assertions.assertTrue(oneToManyRingBuffer.write(4, header, 1, 6));
+        Assertions.assertTrue(oneToManyRingBuffer.write(5, ByteBuffer.wrap(header), directPayload.limit(6)));
+        Assertions.assertTrue(oneToManyRingBuffer.write(6, new ByteBuffer[] {ByteBuffer.wrap(header, 0, 1), directPayload.limit(6), ByteBuffer.wrap(header, 7, 1).slice(), heapPayload.limit(2)}));
+
+        List<String> messages = new ArrayList<>();
+        oneToManyRingBuffer.read(0, (msgTypeId, buffer, index, length) -> {
+            messageBufferReader.clear();
+            buffer.getBytes(index, messageBufferReader, 0, length);
+            return messages.add(msgTypeId + ":" + new String(messageBufferReader.array(), 0, length));
+        });
+
+        Assertions.assertEquals(
+            List.of("1:[header]--heapdirect payload", "2:headerpayload", "3:[header]heap payload", "4:header", "5:[header]direct", "6:[direct]--"),
+            messages
+        );
+    }
+
     @Test
     public void shouldPublishWithLimit_1P1C_10()
     {
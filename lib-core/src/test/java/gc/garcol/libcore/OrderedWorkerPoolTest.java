@@ -0,0 +1,140 @@
+package gc.garcol.libcore;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author thaivc
+ * @since 2024
+ */
+public class OrderedWorkerPoolTest
+{
+
+    ByteBuffer messageBufferWriter = ByteBuffer.allocate(1 << 10).order(ByteOrder.nativeOrder());
+
+    @Test
+    public void shouldReleaseResultsInRingOrder_1P1C_4Workers()
+    {
+        int messageCount = 5_000;
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 1);
+        OrderedWorkerPool workerPool = new OrderedWorkerPool(oneToManyRingBuffer, 0, 4, 16, Long.BYTES);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        CompletableFuture<?>[] workers = new CompletableFuture[workerPool.workerSize()];
+        for (int i = 0; i < workers.length; i++)
+        {
+            int workerIndex = i;
+            workers[i] = CompletableFuture.runAsync(() -> {
+                ResultHandler handler = (msgTypeId, buffer, index, length, resultBuffer, resultIndex, resultCapacity) -> {
+                    if (msgTypeId % 5 == workerIndex)
+                    {
+                        Thread.yield();
+                    }
+                    resultBuffer.putLong(resultIndex, buffer.getLong(index) * 2);
+                    return Long.BYTES;
+                };
+                while (running.get())
+                {
+                    workerPool.read(workerIndex, handler);
+                }
+            });
+        }
+
+        long[] nextExpected = new long[1];
+        CompletableFuture<?> releaser = CompletableFuture.runAsync(() -> {
+            MessageHandler handler = (msgTypeId, buffer, index, length) -> {
+                Assertions.assertEquals(nextExpected[0], msgTypeId, "Result released out of order");
+                Assertions.assertEquals(Long.BYTES, length);
+                Assertions.assertEquals(nextExpected[0] * 2, buffer.getLong(index), "Result not match");
+                nextExpected[0]++;
+                return true;
+            };
+            while (nextExpected[0] < messageCount)
+            {
+                workerPool.release(handler);
+            }
+        });
+
+        for (int i = 0; i < messageCount; i++)
+        {
+            messageBufferWriter.clear();
+            messageBufferWriter.putLong(0, i);
+            messageBufferWriter.limit(Long.BYTES);
+            while (!oneToManyRingBuffer.write(i, messageBufferWriter))
+            {
+                Thread.onSpinWait();
+            }
+        }
+
+        releaser.join();
+        running.set(false);
+        CompletableFuture.allOf(workers).join();
+
+        Assertions.assertEquals(messageCount, nextExpected[0]);
+    }
+
+    @Test
+    public void shouldStopClaimingOutsideTheWindow()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(10, 1);
+        OrderedWorkerPool workerPool = new OrderedWorkerPool(oneToManyRingBuffer, 0, 1, 4, 0);
+
+        for (int i = 0; i < 3; i++)
+        {
+            messageBufferWriter.clear();
+            messageBufferWriter.limit(1);
+            Assertions.assertTrue(oneToManyRingBuffer.write(i, messageBufferWriter));
+        }
+
+        ResultHandler handler = (msgTypeId, buffer, index, length, resultBuffer, resultIndex, resultCapacity) -> 0;
+
+        // each record spans 2 slots of the window of 4 slots
+        Assertions.assertEquals(2, workerPool.read(0, handler));
+        Assertions.assertEquals(1, workerPool.release((msgTypeId, buffer, index, length) -> true, 1));
+        Assertions.assertEquals(1, workerPool.read(0, handler));
+        Assertions.assertEquals(2, workerPool.release((msgTypeId, buffer, index, length) -> true));
+    }
+
+    @Test
+    public void shouldRedeliverUnreleasedResult()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(10, 1);
+        OrderedWorkerPool workerPool = new OrderedWorkerPool(oneToManyRingBuffer, 0, 1, 4, 0);
+
+        messageBufferWriter.clear();
+        messageBufferWriter.limit(1);
+        Assertions.assertTrue(oneToManyRingBuffer.write(7, messageBufferWriter));
+
+        Assertions.assertFalse(workerPool.readOne(0, (msgTypeId, buffer, index, length, resultBuffer, resultIndex, resultCapacity) -> -1));
+        Assertions.assertEquals(0, workerPool.release((msgTypeId, buffer, index, length) -> true));
+        Assertions.assertTrue(workerPool.readOne(0, (msgTypeId, buffer, index, length, resultBuffer, resultIndex, resultCapacity) -> 0));
+        Assertions.assertEquals(0, workerPool.release((msgTypeId, buffer, index, length) -> false));
+        Assertions.assertEquals(1, workerPool.release((msgTypeId, buffer, index, length) -> msgTypeId == 7));
+    }
+
+    @Test
+    public void shouldKeepTheClaimOfAnOversizedResult()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(10, 1);
+        OrderedWorkerPool workerPool = new OrderedWorkerPool(oneToManyRingBuffer, 0, 1, 4, 0);
+
+        messageBufferWriter.clear();
+        messageBufferWriter.limit(1);
+        Assertions.assertTrue(oneToManyRingBuffer.write(7, messageBufferWriter));
+
+        Assertions.assertThrows(
+            IllegalArgumentException.class,
+            () -> workerPool.readOne(0, (msgTypeId, buffer, index, length, resultBuffer, resultIndex, resultCapacity) -> resultCapacity + 1)
+        );
+        Assertions.assertEquals(0, workerPool.release((msgTypeId, buffer, index, length) -> true));
+
+        // the same message is delivered again, its slot is completed and released
+        Assertions.assertTrue(workerPool.readOne(0, (msgTypeId, buffer, index, length, resultBuffer, resultIndex, resultCapacity) -> msgTypeId == 7 ? 0 : -1));
+        Assertions.assertEquals(1, workerPool.release((msgTypeId, buffer, index, length) -> msgTypeId == 7));
+    }
+}
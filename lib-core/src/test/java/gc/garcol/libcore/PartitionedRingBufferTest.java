@@ -0,0 +1,121 @@
+package gc.garcol.libcore;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author thaivc
+ * @since 2024
+ */
+public class PartitionedRingBufferTest
+{
+
+    ByteBuffer messageBufferWriter = ByteBuffer.allocate(1 << 10);
+
+    @Test
+    public void shouldRouteSameKeyToSamePartition()
+    {
+        PartitionedRingBuffer partitionedRingBuffer = new PartitionedRingBuffer(4, 12, 1);
+
+        for (int i = 0; i < 16; i++)
+        {
+            write(partitionedRingBuffer, 42, i);
+        }
+
+        int partition = partitionedRingBuffer.partitionOf(42);
+        int[] nextExpected = new int[1];
+        int read = partitionedRingBuffer.partition(partition).read(0, (msgTypeId, buffer, index, length) -> {
+            Assertions.assertEquals(nextExpected[0]++, msgTypeId, "Message of a key out of order");
+            return true;
+        });
+        Assertions.assertEquals(16, read);
+    }
+
+    @Test
+    public void shouldStealIdlePartitionOnlyWhenEnabled()
+    {
+        PartitionedRingBuffer partitionedRingBuffer = new PartitionedRingBuffer(4, 10, 1);
+        PartitionReader idleReader = partitionedRingBuffer.reader(0, 1, 2, false);
+        PartitionReader stealingReader = partitionedRingBuffer.reader(0, 1, 2, true);
+
+        messageBufferWriter.clear();
+        ByteBufferUtil.put(messageBufferWriter, 0, "Hello, world!".getBytes());
+        messageBufferWriter.flip();
+        Assertions.assertTrue(partitionedRingBuffer.write(2, 1, messageBufferWriter));
+
+        Assertions.assertEquals(0, idleReader.read((msgTypeId, buffer, index, length) -> true));
+
+        AtomicInteger stolenPartition = new AtomicInteger(-1);
+        int read = stealingReader.read((msgTypeId, buffer, index, length) -> {
+            stolenPartition.set(stealingReader.currentPartition());
+            return true;
+        });
+        Assertions.assertEquals(1, read);
+        Assertions.assertEquals(2, stolenPartition.get());
+    }
+
+    @Test
+    public void shouldKeepPartitionOrderWithWorkStealing_4P2C()
+    {
+        int messageCount = 4_000;
+        PartitionedRingBuffer partitionedRingBuffer = new PartitionedRingBuffer(4, 12, 1);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger consumedMessages = new AtomicInteger();
+        int[] nextExpected = new int[partitionedRingBuffer.partitionSize()];
+
+        CompletableFuture<?>[] readers = new CompletableFuture[2];
+        for (int i = 0; i < readers.length; i++)
+        {
+            PartitionReader reader = partitionedRingBuffer.reader(0, i, readers.length, true);
+            readers[i] = CompletableFuture.runAsync(() -> {
+                MessageHandler handler = (msgTypeId, buffer, index, length) -> {
+                    int partition = reader.currentPartition();
+                    Assertions.assertEquals(nextExpected[partition]++, msgTypeId, "Message of partition " + partition + " out of order");
+                    consumedMessages.incrementAndGet();
+                    return true;
+                };
+                while (running.get())
+                {
+                    reader.read(handler, 8);
+                }
+            });
+        }
+
+        int[] written = new int[partitionedRingBuffer.partitionSize()];
+        for (int i = 0; i < messageCount; i++)
+        {
+            // most of the traffic goes to the partition 0
+            int partition = i % 5 < 2 ? i % 5 : 0;
+            messageBufferWriter.clear();
+            messageBufferWriter.limit(Long.BYTES);
+            while (!partitionedRingBuffer.write(partition, written[partition], messageBufferWriter))
+            {
+                Thread.onSpinWait();
+            }
+            written[partition]++;
+        }
+
+        while (consumedMessages.get() < messageCount)
+        {
+            Thread.onSpinWait();
+        }
+        running.set(false);
+        CompletableFuture.allOf(readers).join();
+
+        Assertions.assertArrayEquals(written, nextExpected);
+    }
+
+    private void write(PartitionedRingBuffer partitionedRingBuffer, long key, int msgTypeId)
+    {
+        messageBufferWriter.clear();
+        ByteBufferUtil.put(messageBufferWriter, 0, ("Hello, world! " + msgTypeId).getBytes());
+        messageBufferWriter.flip();
+        Assertions.assertTrue(partitionedRingBuffer.writeByKey(key, msgTypeId, messageBufferWriter));
+    }
+}
@@ -0,0 +1,129 @@
+package gc.garcol.libcore;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * @author thaivc
+ * @since 2024
+ */
+public class PipelineTest
+{
+
+    @Test
+    public void shouldWireStagesInOrder()
+    {
+        int messageCount = 10_000;
+        AtomicIntegerArray decoded = new AtomicIntegerArray(messageCount);
+        AtomicIntegerArray handled = new AtomicIntegerArray(messageCount);
+        List<Integer> replicated = new ArrayList<>();
+        List<Integer> audited = new ArrayList<>();
+
+        Pipeline pipeline = Pipeline.from(14)
+            .batchSize(64)
+            .then("decode", (msgTypeId, buffer, index, length) -> {
+                decoded.set(msgTypeId, 1);
+                return true;
+            })
+            .workers("logic", 2, (msgTypeId, buffer, index, length) -> {
+                Assertions.assertEquals(1, decoded.get(msgTypeId));
+                handled.set(msgTypeId, 1);
+                return true;
+            })
+            .parallel(
+                "output",
+                (msgTypeId, buffer, index, length) -> {
+                    Assertions.assertEquals(1, handled.get(msgTypeId));
+                    return replicated.add(buffer.getInt(index));
+                },
+                (msgTypeId, buffer, index, length) -> {
+                    Assertions.assertEquals(1, handled.get(msgTypeId));
+                    return audited.add(buffer.getInt(index));
+                }
+            );
+        Assertions.assertNull(pipeline.ringBuffer());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> pipeline.then("decode", (msgTypeId, buffer, index, length) -> true));
+
+        try (pipeline)
+        {
+            pipeline.start();
+            Assertions.assertEquals(4, pipeline.ringBuffer().consumerSize());
+            Assertions.assertEquals(List.of("decode", "logic", "output-0", "output-1"), pipeline.stages().stream().map(PipelineStage::name).toList());
+            Assertions.assertEquals(3, pipeline.stage("output-1").consumerIndex());
+            Assertions.assertEquals(2, pipeline.stage("logic").threadSize());
+            Assertions.assertThrows(IllegalArgumentException.class, pipeline::start);
+
+            ByteBuffer message = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.nativeOrder());
+            for (int i = 0; i < messageCount; i++)
+            {
+                while (!pipeline.ringBuffer().write(i, message.putInt(0, i)))
+                {
+                    Thread.yield();
+                }
+            }
+
+            PipelineStage audit = pipeline.stage("output-1");
+            long deadline = System.nanoTime() + 30_000_000_000L;
+            while (audit.processedMessages() < messageCount && System.nanoTime() < deadline)
+            {
+                Thread.yield();
+            }
+            Assertions.assertEquals(messageCount, audit.processedMessages());
+            Assertions.assertEquals(messageCount, pipeline.stage("logic").processedMessages());
+            Assertions.assertEquals(0, audit.lag());
+            Assertions.assertTrue(audit.isRunning());
+        }
+
+        Assertions.assertFalse(pipeline.stage("decode").isRunning());
+        Assertions.assertFalse(pipeline.stage("logic").isRunning());
+        Assertions.assertEquals(messageCount, replicated.size());
+        Assertions.assertEquals(messageCount, audited.size());
+        for (int i = 0; i < messageCount; i++)
+        {
+            Assertions.assertEquals(i, (int)replicated.get(i));
+            Assertions.assertEquals(i, (int)audited.get(i));
+        }
+    }
+
+    @Test
+    public void shouldRunFactoryStagesOnExistingRingBuffer()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 2);
+        Assertions.assertThrows(
+            IllegalArgumentException.class,
+            () -> Pipeline.from(oneToManyRingBuffer).then("only", (msgTypeId, buffer, index, length) -> true).start()
+        );
+
+        List<Integer> consumerIndexes = new ArrayList<>();
+        try (Pipeline pipeline = Pipeline.from(oneToManyRingBuffer)
+            .idleStrategy(IdleStrategy.sleeping(1_000))
+            .then("first", (ringBuffer, consumerIndex) -> {
+                consumerIndexes.add(consumerIndex);
+                return () -> ringBuffer.read(consumerIndex, (msgTypeId, buffer, index, length) -> true);
+            })
+            .then("second", (ringBuffer, consumerIndex) -> {
+                consumerIndexes.add(consumerIndex);
+                return () -> ringBuffer.read(consumerIndex, (msgTypeId, buffer, index, length) -> true);
+            })
+            .start())
+        {
+            Assertions.assertSame(oneToManyRingBuffer, pipeline.ringBuffer());
+            Assertions.assertEquals(List.of(0, 1), consumerIndexes);
+
+            Assertions.assertTrue(oneToManyRingBuffer.write(1, ByteBuffer.allocate(Integer.BYTES)));
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (pipeline.stage("second").processedMessages() < 1 && System.nanoTime() < deadline)
+            {
+                Thread.yield();
+            }
+            Assertions.assertEquals(1, pipeline.stage("first").processedMessages());
+            Assertions.assertEquals(1, pipeline.stage("second").processedMessages());
+        }
+    }
+}
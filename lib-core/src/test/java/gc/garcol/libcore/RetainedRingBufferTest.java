@@ -0,0 +1,157 @@
+package gc.garcol.libcore;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @author thaivc
+ * @since 2024
+ */
+public class RetainedRingBufferTest
+{
+
+    ByteBuffer messageBufferWriter = ByteBuffer.allocate(Integer.BYTES * 32).order(ByteOrder.nativeOrder());
+
+    @Test
+    public void shouldRewindByMessages()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 1, 1 << 10);
+        for (int i = 0; i < 10; i++)
+        {
+            Assertions.assertTrue(write(oneToManyRingBuffer, i));
+        }
+        Assertions.assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), readAll(oneToManyRingBuffer, 0));
+
+        Assertions.assertEquals(3, oneToManyRingBuffer.rewindMessages(0, 3));
+        Assertions.assertEquals(List.of(7, 8, 9), readAll(oneToManyRingBuffer, 0));
+
+        // 1024 retained bytes hold 8 records of 128 bytes
+        Assertions.assertEquals(8, oneToManyRingBuffer.rewindMessages(0, 100));
+        Assertions.assertEquals(List.of(2, 3, 4, 5, 6, 7, 8, 9), readAll(oneToManyRingBuffer, 0));
+    }
+
+    @Test
+    public void shouldRewindToPosition()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 1, 1 << 10);
+        for (int i = 0; i < 4; i++)
+        {
+            Assertions.assertTrue(write(oneToManyRingBuffer, i));
+        }
+        Assertions.assertEquals(2, oneToManyRingBuffer.read(0, (msgTypeId, buffer, index, length) -> true, 2));
+        long position = oneToManyRingBuffer.consumerPosition(0);
+        Assertions.assertEquals(List.of(2, 3), readAll(oneToManyRingBuffer, 0));
+
+        oneToManyRingBuffer.rewind(0, position);
+        Assertions.assertEquals(List.of(2, 3), readAll(oneToManyRingBuffer, 0));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> oneToManyRingBuffer.rewind(0, position + (1L << 32)));
+    }
+
+    @Test
+    public void shouldNotOverwriteRetainedRecords()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 1, 1 << 11);
+
+        int written = 0;
+        while (write(oneToManyRingBuffer, written))
+        {
+            written++;
+        }
+        Assertions.assertEquals(32, written);
+        Assertions.assertEquals(written, readAll(oneToManyRingBuffer, 0).size());
+
+        // only the 2048 bytes beyond the retained window can be written again
+        int rewritten = 0;
+        while (write(oneToManyRingBuffer, written + rewritten))
+        {
+            rewritten++;
+        }
+        Assertions.assertEquals(16, rewritten);
+        Assertions.assertEquals(16, oneToManyRingBuffer.rewindMessages(0, 100));
+        Assertions.assertEquals(Integer.valueOf(16), readAll(oneToManyRingBuffer, 0).get(0));
+    }
+
+    @Test
+    public void shouldRewindFollowingConsumers()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 2, 1 << 10);
+        for (int i = 0; i < 6; i++)
+        {
+            Assertions.assertTrue(write(oneToManyRingBuffer, i));
+        }
+        Assertions.assertEquals(6, readAll(oneToManyRingBuffer, 0).size());
+        Assertions.assertEquals(6, readAll(oneToManyRingBuffer, 1).size());
+
+        Assertions.assertEquals(2, oneToManyRingBuffer.rewindMessages(0, 2));
+        Assertions.assertEquals(oneToManyRingBuffer.consumerPosition(0), oneToManyRingBuffer.consumerPosition(1));
+        Assertions.assertEquals(List.of(4, 5), readAll(oneToManyRingBuffer, 0));
+        Assertions.assertEquals(List.of(4, 5), readAll(oneToManyRingBuffer, 1));
+    }
+
+    @Test
+    public void shouldReadAgainAfterRewindAcrossLaps_1P1C()
+    {
+        int messageCount = 100_000;
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 1, 1 << 10);
+
+        CompletableFuture<?> consumer = CompletableFuture.runAsync(() -> {
+            int[] expected = { 0 };
+            int[] rewinds = { 0 };
+            MessageHandler handler = (msgTypeId, buffer, index, length) -> {
+                Assertions.assertEquals(expected[0], msgTypeId, "Message out of order");
+                Assertions.assertEquals(msgTypeId, buffer.getInt(index + length - Integer.BYTES), "Torn message");
+                expected[0]++;
+                return true;
+            };
+            while (expected[0] < messageCount)
+            {
+                oneToManyRingBuffer.read(0, handler, 5);
+                if (expected[0] % 7 == 0)
+                {
+                    expected[0] -= oneToManyRingBuffer.rewindMessages(0, 3);
+                    rewinds[0]++;
+                }
+                Thread.yield();
+            }
+            System.out.println("rewinds: " + rewinds[0]);
+        });
+
+        for (int i = 0; i < messageCount; i++)
+        {
+            // records of different aligned lengths, so that the producer skips the tail of the buffer
+            while (!write(oneToManyRingBuffer, i, 1 + i % 24))
+            {
+                Thread.yield();
+            }
+        }
+        consumer.join();
+    }
+
+    private boolean write(OneToManyRingBuffer oneToManyRingBuffer, int msgTypeId)
+    {
+        return write(oneToManyRingBuffer, msgTypeId, 1 + msgTypeId % 8);
+    }
+
+    private boolean write(OneToManyRingBuffer oneToManyRingBuffer, int msgTypeId, int intCount)
+    {
+        int length = Integer.BYTES * intCount;
+        messageBufferWriter.clear();
+        messageBufferWriter.putInt(length - Integer.BYTES, msgTypeId);
+        messageBufferWriter.limit(length);
+        return oneToManyRingBuffer.write(msgTypeId, messageBufferWriter);
+    }
+
+    private List<Integer> readAll(OneToManyRingBuffer oneToManyRingBuffer, int consumerIndex)
+    {
+        List<Integer> msgTypeIds = new ArrayList<>();
+        oneToManyRingBuffer.read(consumerIndex, (msgTypeId, buffer, index, length) -> msgTypeIds.add(msgTypeId));
+        return msgTypeIds;
+    }
+}
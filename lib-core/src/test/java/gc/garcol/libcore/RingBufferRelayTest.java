@@ -0,0 +1,134 @@
+package gc.garcol.libcore;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author thaivc
+ * @since 2024
+ */
+public class RingBufferRelayTest
+{
+
+    @Test
+    public void shouldRelayLargeMessagesInBatchesWithBackpressure()
+    {
+        int messageCount = 200;
+        int messageLength = 4_000;
+        OneToManyRingBuffer source = new OneToManyRingBuffer(16, 1);
+        OneToManyRingBuffer target = new OneToManyRingBuffer(15, 1);
+        RingBufferRelay relay = new RingBufferRelay(target);
+
+        ByteBuffer message = ByteBuffer.allocate(messageLength).order(ByteOrder.nativeOrder());
+        List<Integer> messages = new ArrayList<>();
+        int written = 0;
+        boolean backpressured = false;
+
+        while (messages.size() < messageCount)
+        {
+            while (written < messageCount && source.write(written, message.putInt(0, written).putInt(messageLength - Integer.BYTES, -written)))
+            {
+                written++;
+            }
+
+            relay.relay(source, 0, 16);
+            long sourcePosition = source.consumerPosition(0);
+            if (source.lag(0) > 0 && relay.relay(source, 0, 16) == 0)
+            {
+                // the target is full: nothing is consumed from the source
+                backpressured = true;
+                Assertions.assertEquals(sourcePosition, source.consumerPosition(0));
+            }
+
+            // a slow consumer of the target
+            target.read(0, (msgTypeId, buffer, index, length) -> {
+                Assertions.assertEquals(messageLength, length);
+                Assertions.assertEquals(msgTypeId, buffer.getInt(index));
+                Assertions.assertEquals(-msgTypeId, buffer.getInt(index + messageLength - Integer.BYTES));
+                return messages.add(msgTypeId);
+            }, 2);
+        }
+
+        Assertions.assertTrue(backpressured);
+        for (int i = 0; i < messageCount; i++)
+        {
+            Assertions.assertEquals(i, (int)messages.get(i));
+        }
+        Assertions.assertEquals(0, source.lag(0));
+    }
+
+    @Test
+    public void shouldRelayAsHandlerAndFromForeignBuffers()
+    {
+        OneToManyRingBuffer source = new OneToManyRingBuffer(12, 1);
+        OneToManyRingBuffer target = new OneToManyRingBuffer(12, 1);
+        RingBufferRelay relay = new RingBufferRelay(target);
+
+        ByteBuffer message = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < 3; i++)
+        {
+            Assertions.assertTrue(source.write(i, message.putInt(0, i)));
+        }
+        Assertions.assertEquals(3, source.read(0, relay));
+
+        // the claimed records are not visible until committed
+        Assertions.assertEquals(0, target.read(0, (msgTypeId, buffer, index, length) -> true));
+
+        ByteBuffer foreign = ByteBuffer.allocateDirect(64).order(ByteOrder.nativeOrder());
+        foreign.putInt(32, 3);
+        Assertions.assertTrue(relay.offer(3, foreign, 32, Integer.BYTES));
+        Assertions.assertEquals(4, relay.commit());
+        Assertions.assertEquals(0, relay.commit());
+
+        List<Integer> messages = new ArrayList<>();
+        Assertions.assertEquals(4, target.read(0, (msgTypeId, buffer, index, length) -> {
+            Assertions.assertEquals(msgTypeId, buffer.getInt(index));
+            return messages.add(msgTypeId);
+        }));
+        Assertions.assertEquals(List.of(0, 1, 2, 3), messages);
+
+        // the target fills up: the message is left unconsumed in the source
+        while (relay.offer(4, foreign, 32, Integer.BYTES))
+        {
+        }
+        relay.commit();
+        Assertions.assertTrue(source.write(5, message.putInt(0, 5)));
+        Assertions.assertEquals(0, source.read(0, relay));
+        Assertions.assertTrue(source.lag(0) > 0);
+
+        target.read(0, (msgTypeId, buffer, index, length) -> true);
+        Assertions.assertEquals(1, source.read(0, relay));
+        Assertions.assertEquals(1, relay.commit());
+    }
+
+    @Test
+    public void shouldCommitTheBatchBeforeAMessageTooLongForTheTarget()
+    {
+        OneToManyRingBuffer source = new OneToManyRingBuffer(12, 1);
+        OneToManyRingBuffer target = new OneToManyRingBuffer(10, 1);
+        RingBufferRelay relay = new RingBufferRelay(target);
+
+        ByteBuffer message = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.nativeOrder());
+        Assertions.assertTrue(source.write(0, message.putInt(0, 0)));
+        Assertions.assertTrue(source.write(1, message.putInt(0, 1)));
+        Assertions.assertTrue(source.write(2, ByteBuffer.allocate(256).order(ByteOrder.nativeOrder())));
+        Assertions.assertTrue(source.write(3, message.putInt(0, 3)));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> relay.relay(source, 0, 16));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> relay.relay(source, 0, 16));
+
+        // the messages before the long one are relayed once and consumed from the source
+        List<Integer> messages = new ArrayList<>();
+        Assertions.assertEquals(2, target.read(0, (msgTypeId, buffer, index, length) -> messages.add(msgTypeId)));
+        Assertions.assertEquals(List.of(0, 1), messages);
+        Assertions.assertEquals(1, source.read(0, (msgTypeId, buffer, index, length) -> msgTypeId == 2, 1));
+
+        Assertions.assertEquals(1, relay.relay(source, 0, 16));
+        Assertions.assertEquals(1, target.read(0, (msgTypeId, buffer, index, length) -> msgTypeId == 3));
+    }
+}
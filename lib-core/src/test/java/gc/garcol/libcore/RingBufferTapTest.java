@@ -0,0 +1,168 @@
+package gc.garcol.libcore;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author thaivc
+ * @since 2024
+ */
+public class RingBufferTapTest
+{
+
+    @Test
+    public void shouldObserveMessagesWithoutGatingTheProducer()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(10, 1);
+        ByteBuffer message = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.nativeOrder());
+        Assertions.assertTrue(oneToManyRingBuffer.write(1, message.putInt(0, -1)));
+
+        // a tap starts at the position of the producer
+        RingBufferTap tap = new RingBufferTap(oneToManyRingBuffer);
+        List<Integer> observed = new ArrayList<>();
+        MessageHandler handler = (msgTypeId, buffer, index, length) -> observed.add(buffer.getInt(index));
+
+        for (int i = 0; i < 4; i++)
+        {
+            Assertions.assertTrue(oneToManyRingBuffer.write(1, message.putInt(0, i)));
+        }
+        Assertions.assertEquals(2, tap.read(handler, 2));
+        Assertions.assertEquals(5, oneToManyRingBuffer.read(0, (msgTypeId, buffer, index, length) -> true));
+        Assertions.assertEquals(0, tap.read(handler));
+        Assertions.assertEquals(1, tap.lappedCount());
+
+        // the tap resynchronizes to the producer and counts the messages it has missed
+        for (int i = 4; i < 6; i++)
+        {
+            Assertions.assertTrue(oneToManyRingBuffer.write(1, message.putInt(0, i)));
+        }
+        Assertions.assertEquals(2, tap.read(handler));
+        Assertions.assertEquals(List.of(0, 1, 4, 5), observed);
+        Assertions.assertEquals(2, tap.skippedMessages());
+    }
+
+    @Test
+    public void shouldNotObserveMessagesClearedByAWorkerPool()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(10, 1);
+        // the last consumer, which clears the consumed records
+        WorkerPool workerPool = new WorkerPool(oneToManyRingBuffer, 0, 2);
+        RingBufferTap tap = new RingBufferTap(oneToManyRingBuffer);
+        ByteBuffer message = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.nativeOrder());
+        List<Integer> observed = new ArrayList<>();
+        MessageHandler handler = (msgTypeId, buffer, index, length) -> observed.add(buffer.getInt(index));
+
+        for (int i = 0; i < 4; i++)
+        {
+            Assertions.assertTrue(oneToManyRingBuffer.write(1, message.putInt(0, i)));
+        }
+        Assertions.assertEquals(2, tap.read(handler, 2));
+        Assertions.assertEquals(4, workerPool.read(0, (msgTypeId, buffer, index, length) -> true));
+        Assertions.assertEquals(0, tap.read(handler));
+        Assertions.assertEquals(1, tap.lappedCount());
+
+        for (int i = 4; i < 6; i++)
+        {
+            Assertions.assertTrue(oneToManyRingBuffer.write(1, message.putInt(0, i)));
+        }
+        Assertions.assertEquals(2, tap.read(handler));
+        Assertions.assertEquals(List.of(0, 1, 4, 5), observed);
+        Assertions.assertEquals(2, tap.skippedMessages());
+    }
+
+    @Test
+    public void shouldFollowTheProducerAcrossLapsOfRetainedRecords()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(11, 2, 512);
+        RingBufferTap tap = new RingBufferTap(oneToManyRingBuffer);
+        // the records do not fit the buffer evenly, the producer skips its tail on each lap
+        ByteBuffer message = ByteBuffer.allocate(100).order(ByteOrder.nativeOrder());
+
+        long next = 0;
+        for (int i = 0; i < 100; i++)
+        {
+            Assertions.assertTrue(oneToManyRingBuffer.write(1, message.putLong(0, i)));
+            for (int consumer = 0; consumer < 2; consumer++)
+            {
+                oneToManyRingBuffer.read(consumer, (msgTypeId, buffer, index, length) -> true);
+            }
+            final long expected = next;
+            next += tap.read((msgTypeId, buffer, index, length) -> {
+                Assertions.assertEquals(expected, buffer.getLong(index));
+                return true;
+            }, 1);
+        }
+
+        Assertions.assertEquals(0, tap.lappedCount());
+        Assertions.assertEquals(0, tap.skippedMessages());
+    }
+
+    @Test
+    public void shouldResynchronizeWhenLappedByTheProducer()
+    {
+        int messageCount = 200_000;
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 1);
+        RingBufferTap tap = new RingBufferTap(oneToManyRingBuffer);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong consumed = new AtomicLong();
+
+        CompletableFuture<Void> consumer = CompletableFuture.runAsync(() -> {
+            while (running.get())
+            {
+                if (consumed.addAndGet(oneToManyRingBuffer.read(0, (msgTypeId, buffer, index, length) -> true)) == 0)
+                {
+                    Thread.yield();
+                }
+            }
+        });
+        CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> {
+            ByteBuffer message = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.nativeOrder());
+            for (long i = 0; i < messageCount; i++)
+            {
+                while (!oneToManyRingBuffer.write(1, message.putLong(0, i)))
+                {
+                    Thread.yield();
+                }
+            }
+        });
+
+        long[] last = {-1};
+        long observed = 0;
+        while (!producer.isDone())
+        {
+            // a slow tap, the observed messages are intact and in order
+            observed += tap.read((msgTypeId, buffer, index, length) -> {
+                long value = buffer.getLong(index);
+                Assertions.assertTrue(value > last[0]);
+                last[0] = value;
+                return true;
+            }, 8);
+            Thread.yield();
+        }
+        producer.join();
+        observed += tap.read((msgTypeId, buffer, index, length) -> {
+            Assertions.assertTrue(buffer.getLong(index) > last[0]);
+            last[0] = buffer.getLong(index);
+            return true;
+        });
+        while (consumed.get() < messageCount)
+        {
+            Thread.yield();
+        }
+        running.set(false);
+        consumer.join();
+
+        System.out.println("observed: " + observed + ", skipped: " + tap.skippedMessages() + ", lapped: " + tap.lappedCount());
+        Assertions.assertEquals(messageCount, consumed.get());
+        Assertions.assertTrue(observed > 0);
+        Assertions.assertTrue(observed + tap.skippedMessages() <= messageCount);
+    }
+}
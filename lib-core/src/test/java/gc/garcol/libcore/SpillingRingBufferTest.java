@@ -0,0 +1,149 @@
+package gc.garcol.libcore;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author thaivc
+ * @since 2024
+ */
+public class SpillingRingBufferTest
+{
+
+    Path spillFile;
+
+    @BeforeEach
+    public void setUp() throws IOException
+    {
+        spillFile = Files.createTempFile("ringbuffer", ".spill");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(spillFile);
+    }
+
+    @Test
+    public void shouldSpillWhenFullAndDrainInOrder()
+    {
+        int messageCount = 1_000;
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(10, 1);
+        SpillingRingBuffer spillingRingBuffer = new SpillingRingBuffer(oneToManyRingBuffer, spillFile, 1 << 16);
+        ByteBuffer message = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.nativeOrder());
+
+        for (long i = 0; i < messageCount; i++)
+        {
+            Assertions.assertTrue(spillingRingBuffer.write(1, message.putLong(0, i)));
+        }
+        Assertions.assertTrue(spillingRingBuffer.isSpilling());
+        Assertions.assertEquals(0, spillingRingBuffer.drain(Integer.MAX_VALUE));
+
+        long[] next = {0};
+        while (next[0] < messageCount)
+        {
+            oneToManyRingBuffer.read(0, (msgTypeId, buffer, index, length) -> {
+                Assertions.assertEquals(next[0]++, buffer.getLong(index));
+                return true;
+            });
+            spillingRingBuffer.drain(Integer.MAX_VALUE);
+        }
+
+        // back to the in-memory fast path
+        Assertions.assertFalse(spillingRingBuffer.isSpilling());
+        Assertions.assertEquals(0, spillingRingBuffer.spilledBytes());
+        Assertions.assertTrue(spillingRingBuffer.write(1, message.putLong(0, messageCount)));
+        Assertions.assertFalse(spillingRingBuffer.isSpilling());
+    }
+
+    @Test
+    public void shouldWrapTheSpillFileAndRejectWhenItIsFull()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(10, 1);
+        SpillingRingBuffer spillingRingBuffer = new SpillingRingBuffer(oneToManyRingBuffer, spillFile, 1 << 10);
+        // 40 bytes per spilled record, which do not fit the file evenly
+        ByteBuffer message = ByteBuffer.allocate(28).order(ByteOrder.nativeOrder());
+
+        long written = 0;
+        while (spillingRingBuffer.write(1, message.putLong(0, written)))
+        {
+            written++;
+        }
+        Assertions.assertEquals(25 * 40, spillingRingBuffer.spilledBytes());
+        Assertions.assertEquals(25, spillingRingBuffer.spilledMessages());
+
+        long[] next = {0};
+        for (int round = 0; round < 50; round++)
+        {
+            oneToManyRingBuffer.read(0, (msgTypeId, buffer, index, length) -> {
+                Assertions.assertEquals(next[0]++, buffer.getLong(index));
+                return true;
+            }, 3);
+            // the spilled records wrap around the end of the file
+            for (int i = 0; i < 3; i++)
+            {
+                Assertions.assertTrue(spillingRingBuffer.write(1, message.putLong(0, written++)));
+            }
+            Assertions.assertTrue(spillingRingBuffer.isSpilling());
+        }
+
+        while (next[0] < written)
+        {
+            oneToManyRingBuffer.read(0, (msgTypeId, buffer, index, length) -> {
+                Assertions.assertEquals(next[0]++, buffer.getLong(index));
+                return true;
+            });
+            spillingRingBuffer.drain(Integer.MAX_VALUE);
+        }
+        Assertions.assertFalse(spillingRingBuffer.isSpilling());
+    }
+
+    @Test
+    public void shouldNotStallTheProducerBehindASlowConsumer()
+    {
+        int messageCount = 200_000;
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 1);
+        SpillingRingBuffer spillingRingBuffer = new SpillingRingBuffer(oneToManyRingBuffer, spillFile, 1 << 24);
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> {
+            ByteBuffer message = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.nativeOrder());
+            for (long i = 0; i < messageCount; i++)
+            {
+                Assertions.assertTrue(spillingRingBuffer.write(1, message.putLong(0, i)));
+            }
+            while (running.get())
+            {
+                if (spillingRingBuffer.drain(256) == 0)
+                {
+                    Thread.yield();
+                }
+            }
+        });
+
+        long[] next = {0};
+        while (next[0] < messageCount)
+        {
+            if (oneToManyRingBuffer.read(0, (msgTypeId, buffer, index, length) -> {
+                Assertions.assertEquals(next[0]++, buffer.getLong(index));
+                return true;
+            }) == 0)
+            {
+                Thread.yield();
+            }
+        }
+        running.set(false);
+        producer.join();
+        Assertions.assertFalse(spillingRingBuffer.isSpilling());
+    }
+}
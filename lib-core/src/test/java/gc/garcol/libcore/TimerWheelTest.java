@@ -0,0 +1,132 @@
+package gc.garcol.libcore;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author thaivc
+ * @since 2024
+ */
+public class TimerWheelTest
+{
+
+    @Test
+    public void shouldPublishExpiriesInDeadlineOrder()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(14, 1);
+        TimerWheel timerWheel = new TimerWheel(oneToManyRingBuffer, 1_000, 10, 8, 16);
+
+        timerWheel.schedule(1, 100, 1_035);
+        timerWheel.schedule(2, 200, 1_012);
+        long cancelled = timerWheel.schedule(3, 300, 1_020);
+        // further than one turn of the wheel, in the same bucket as the first timer
+        timerWheel.schedule(4, 400, 1_115);
+        Assertions.assertEquals(4, timerWheel.timerCount());
+
+        Assertions.assertTrue(timerWheel.cancel(cancelled));
+        Assertions.assertFalse(timerWheel.cancel(cancelled));
+        Assertions.assertEquals(3, timerWheel.timerCount());
+
+        List<Long> expiries = new ArrayList<>();
+        MessageHandler handler = (msgTypeId, buffer, index, length) -> {
+            Assertions.assertEquals(TimerWheel.EXPIRY_LENGTH, length);
+            Assertions.assertEquals(msgTypeId * 100L, buffer.getLong(index));
+            return expiries.add(buffer.getLong(index + Long.BYTES));
+        };
+
+        Assertions.assertEquals(0, timerWheel.poll(1_011));
+        Assertions.assertEquals(1, timerWheel.poll(1_012));
+        Assertions.assertEquals(0, timerWheel.poll(1_034));
+        Assertions.assertEquals(1, timerWheel.poll(1_100));
+        Assertions.assertEquals(0, timerWheel.poll(1_110));
+        Assertions.assertEquals(1, timerWheel.poll(1_200));
+        Assertions.assertEquals(0, timerWheel.timerCount());
+
+        Assertions.assertEquals(3, oneToManyRingBuffer.read(0, handler));
+        Assertions.assertEquals(List.of(1_012L, 1_035L, 1_115L), expiries);
+
+        // a deadline already passed expires on the next poll
+        timerWheel.schedule(5, 500, 0);
+        Assertions.assertEquals(1, timerWheel.poll(1_200));
+    }
+
+    @Test
+    public void shouldReuseTimerSlotsWithoutAffectingStaleIds()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(14, 1);
+        TimerWheel timerWheel = new TimerWheel(oneToManyRingBuffer, 0, 1, 4, 2);
+
+        long first = timerWheel.schedule(1, 1, 10);
+        long second = timerWheel.schedule(1, 2, 10);
+        Assertions.assertEquals(TimerWheel.NULL_TIMER, timerWheel.schedule(1, 3, 10));
+        Assertions.assertFalse(timerWheel.cancel(TimerWheel.NULL_TIMER));
+
+        Assertions.assertEquals(2, timerWheel.poll(10));
+        Assertions.assertFalse(timerWheel.cancel(first));
+        Assertions.assertFalse(timerWheel.cancel(second));
+
+        long reused = timerWheel.schedule(1, 4, 20);
+        Assertions.assertNotEquals(TimerWheel.NULL_TIMER, reused);
+        // the slot freed last is reused first
+        Assertions.assertEquals((int)first, (int)reused);
+        Assertions.assertFalse(timerWheel.cancel(first));
+        Assertions.assertTrue(timerWheel.cancel(reused));
+        Assertions.assertEquals(0, timerWheel.timerCount());
+    }
+
+    @Test
+    public void shouldKeepExpiredTimersWhileRingBufferIsFull()
+    {
+        int timerCount = 100_000;
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 1);
+        TimerWheel timerWheel = new TimerWheel(oneToManyRingBuffer, 0, 1_000, 1 << 10, timerCount);
+        for (int i = 0; i < timerCount; i++)
+        {
+            Assertions.assertNotEquals(TimerWheel.NULL_TIMER, timerWheel.schedule(1, i, (long)i * 7 % 5_000_000));
+        }
+
+        List<Long> deadlines = new ArrayList<>();
+        int expired = 0;
+        for (long now = 0; expired < timerCount; now += 100_000)
+        {
+            expired += timerWheel.poll(now);
+            oneToManyRingBuffer.read(0, (msgTypeId, buffer, index, length) -> deadlines.add(buffer.getLong(index + Long.BYTES)));
+        }
+        oneToManyRingBuffer.read(0, (msgTypeId, buffer, index, length) -> deadlines.add(buffer.getLong(index + Long.BYTES)));
+
+        Assertions.assertEquals(timerCount, deadlines.size());
+        Assertions.assertEquals(0, timerWheel.timerCount());
+        for (int i = 1; i < timerCount; i++)
+        {
+            // expired tick by tick, in any order within a tick
+            Assertions.assertTrue(deadlines.get(i - 1) / 1_000 <= deadlines.get(i) / 1_000);
+        }
+    }
+
+    @Test
+    public void shouldScanAtMostOneTurnAfterAnIdleGap()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(14, 1);
+        TimerWheel timerWheel = new TimerWheel(oneToManyRingBuffer, 1_000, 10, 8, 16);
+
+        timerWheel.schedule(1, 100, 1_035);
+        timerWheel.schedule(2, 200, 1_012);
+
+        // billions of ticks later, the poll expires the timers without walking every elapsed tick
+        long nowNs = 1_000 + (1L << 50);
+        Assertions.assertEquals(2, timerWheel.poll(nowNs));
+        Assertions.assertEquals(0, timerWheel.timerCount());
+
+        List<Long> expiries = new ArrayList<>();
+        Assertions.assertEquals(2, oneToManyRingBuffer.read(0, (msgTypeId, buffer, index, length) -> expiries.add(buffer.getLong(index + Long.BYTES))));
+        Assertions.assertEquals(List.of(1_012L, 1_035L), expiries);
+
+        // the wheel resumes at the current tick
+        timerWheel.schedule(3, 300, nowNs + 25);
+        Assertions.assertEquals(0, timerWheel.poll(nowNs + 24));
+        Assertions.assertEquals(1, timerWheel.poll(nowNs + 25));
+    }
+}
@@ -0,0 +1,209 @@
+package gc.garcol.libcore;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author thaivc
+ * @since 2024
+ */
+public class TransportTest
+{
+
+    @Test
+    public void shouldForwardMessagesOverTcp()
+    {
+        int messageCount = 10_000;
+        OneToManyRingBuffer source = new OneToManyRingBuffer(14, 1);
+        OneToManyRingBuffer destination = new OneToManyRingBuffer(14, 1);
+
+        try (TransportReceiver receiver = TransportReceiver.tcp(destination, new InetSocketAddress("127.0.0.1", 0));
+             TransportSender sender = TransportSender.tcp(source, 0, receiver.localAddress()))
+        {
+            List<Integer> messages = forward(source, destination, sender, receiver, messageCount);
+
+            Assertions.assertEquals(messageCount, messages.size());
+            for (int i = 0; i < messageCount; i++)
+            {
+                Assertions.assertEquals(i, (int)messages.get(i));
+            }
+            Assertions.assertTrue(sender.sentBatches() < messageCount, "Messages must be sent in batches");
+            System.out.println("TCP batches: " + sender.sentBatches());
+        }
+    }
+
+    @Test
+    public void shouldReconnectToLateReceiver() throws IOException
+    {
+        int messageCount = 1_000;
+        SocketAddress address;
+        try (ServerSocket socket = new ServerSocket(0))
+        {
+            address = new InetSocketAddress("127.0.0.1", socket.getLocalPort());
+        }
+
+        OneToManyRingBuffer source = new OneToManyRingBuffer(14, 1);
+        OneToManyRingBuffer destination = new OneToManyRingBuffer(14, 1);
+
+        try (TransportSender sender = new TransportSender(source, 0, address, false, 64, 1 << 16, 1_000_000L))
+        {
+            long deadline = System.nanoTime() + 1_000_000_000L;
+            while (sender.disconnects() == 0 && System.nanoTime() < deadline)
+            {
+                Assertions.assertEquals(0, sender.send());
+            }
+            Assertions.assertFalse(sender.isConnected());
+            Assertions.assertTrue(sender.disconnects() > 0);
+
+            try (TransportReceiver receiver = TransportReceiver.tcp(destination, address))
+            {
+                List<Integer> messages = forward(source, destination, sender, receiver, messageCount);
+                Assertions.assertTrue(sender.isConnected());
+                Assertions.assertEquals(messageCount, messages.size());
+                Assertions.assertEquals(messageCount - 1, (int)messages.get(messageCount - 1));
+            }
+        }
+    }
+
+    @Test
+    public void shouldForwardBatchesAsDatagrams()
+    {
+        int messageCount = 1_000;
+        OneToManyRingBuffer source = new OneToManyRingBuffer(14, 1);
+        OneToManyRingBuffer destination = new OneToManyRingBuffer(14, 1);
+
+        try (TransportReceiver receiver = TransportReceiver.udp(destination, new InetSocketAddress("127.0.0.1", 0));
+             TransportSender sender = TransportSender.udp(source, 0, receiver.localAddress(), 1_024))
+        {
+            List<Integer> messages = forward(source, destination, sender, receiver, messageCount);
+
+            // loopback datagrams are not lost while the receiver keeps up
+            Assertions.assertEquals(messageCount, messages.size());
+            Assertions.assertEquals(messageCount - 1, (int)messages.get(messageCount - 1));
+            Assertions.assertTrue(sender.sentBatches() < messageCount, "Messages must be sent in batches");
+            System.out.println("UDP datagrams: " + sender.sentBatches());
+        }
+    }
+
+    @Test
+    public void shouldPublishTheFramesReceivedBeforeTheSenderCloses()
+    {
+        int messageCount = 2_000;
+        OneToManyRingBuffer source = new OneToManyRingBuffer(20, 1);
+        // far smaller than the messages, most frames wait in the receive buffer
+        OneToManyRingBuffer destination = new OneToManyRingBuffer(10, 1);
+
+        try (TransportReceiver receiver = TransportReceiver.tcp(destination, new InetSocketAddress("127.0.0.1", 0)))
+        {
+            ByteBuffer message = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.nativeOrder());
+            for (int i = 0; i < messageCount; i++)
+            {
+                Assertions.assertTrue(source.write(i, message.putInt(0, i)));
+            }
+
+            try (TransportSender sender = TransportSender.tcp(source, 0, receiver.localAddress()))
+            {
+                int sent = 0;
+                long deadline = System.nanoTime() + 10_000_000_000L;
+                while (sent < messageCount && System.nanoTime() < deadline)
+                {
+                    sent += sender.send();
+                    receiver.receive();
+                }
+                Assertions.assertEquals(messageCount, sent);
+            }
+
+            List<Integer> messages = new ArrayList<>();
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (messages.size() < messageCount && System.nanoTime() < deadline)
+            {
+                // the end of the stream is read while the ring buffer is still full
+                receiver.receive();
+                destination.read(0, (msgTypeId, buffer, index, length) -> messages.add(buffer.getInt(index)));
+            }
+
+            Assertions.assertEquals(messageCount, messages.size());
+            for (int i = 0; i < messageCount; i++)
+            {
+                Assertions.assertEquals(i, (int)messages.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void shouldCloseTheConnectionOnOversizedFrame() throws IOException
+    {
+        OneToManyRingBuffer destination = new OneToManyRingBuffer(14, 1);
+
+        try (TransportReceiver receiver = new TransportReceiver(destination, new InetSocketAddress("127.0.0.1", 0), false, 1 << 10);
+             SocketChannel client = SocketChannel.open(receiver.localAddress()))
+        {
+            ByteBuffer frame = ByteBuffer.allocate(OneToManyRingBuffer.HEADER_LENGTH).order(ByteOrder.nativeOrder());
+            frame.putInt(0, 1 << 10).putInt(Integer.BYTES, 1);
+            client.write(frame);
+
+            client.configureBlocking(false);
+            ByteBuffer readBuffer = ByteBuffer.allocate(1);
+            int read = 0;
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (read >= 0 && System.nanoTime() < deadline)
+            {
+                Assertions.assertEquals(0, receiver.receive());
+                try
+                {
+                    read = client.read(readBuffer);
+                }
+                catch (IOException e)
+                {
+                    read = -1;
+                }
+            }
+            Assertions.assertEquals(-1, read);
+        }
+    }
+
+    private List<Integer> forward(
+        OneToManyRingBuffer source,
+        OneToManyRingBuffer destination,
+        TransportSender sender,
+        TransportReceiver receiver,
+        int messageCount
+    )
+    {
+        List<Integer> messages = new ArrayList<>();
+        ByteBuffer message = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.nativeOrder());
+        int written = 0;
+        long deadline = System.nanoTime() + 10_000_000_000L;
+
+        while (messages.size() < messageCount && System.nanoTime() < deadline)
+        {
+            // a few messages at a time, so that the UDP receive buffer is never overrun
+            for (int i = 0; i < 64 && written < messageCount; i++)
+            {
+                if (!source.write(written, message.putInt(0, written)))
+                {
+                    break;
+                }
+                written++;
+            }
+            sender.send();
+            receiver.receive();
+            destination.read(0, (msgTypeId, buffer, index, length) -> {
+                Assertions.assertEquals(msgTypeId, buffer.getInt(index));
+                return messages.add(buffer.getInt(index));
+            });
+        }
+
+        return messages;
+    }
+}
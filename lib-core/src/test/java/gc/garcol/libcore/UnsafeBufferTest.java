@@ -0,0 +1,97 @@
+package gc.garcol.libcore;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author thaivc
+ * @since 2024
+ */
+public class UnsafeBufferTest
+{
+
+    @Test
+    public void shouldExposeRecordAsReadOnlyView()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(10, 1);
+        ByteBuffer message = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.nativeOrder()).putLong(0, 42L);
+        Assertions.assertTrue(oneToManyRingBuffer.write(1, message));
+
+        List<ByteBuffer> views = new ArrayList<>();
+        oneToManyRingBuffer.read(0, (msgTypeId, buffer, index, length) -> {
+            ByteBuffer view = buffer.view(index, length);
+            Assertions.assertEquals(0, view.position());
+            Assertions.assertEquals(Long.BYTES, view.remaining());
+            Assertions.assertEquals(42L, view.getLong(0));
+            Assertions.assertThrows(ReadOnlyBufferException.class, () -> view.putLong(0, 0L));
+
+            // the view shares the ring memory
+            buffer.putLong(index, 43L);
+            Assertions.assertEquals(43L, view.getLong(0));
+            return views.add(view);
+        });
+        Assertions.assertEquals(1, views.size());
+    }
+
+    @Test
+    public void shouldTransferRangeToChannel() throws IOException
+    {
+        UnsafeBuffer buffer = new UnsafeBuffer(64);
+        for (int i = 0; i < 64; i++)
+        {
+            buffer.putByte(i, (byte)i);
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (WritableByteChannel channel = Channels.newChannel(output))
+        {
+            Assertions.assertEquals(16, buffer.transferTo(8, 16, channel));
+        }
+
+        byte[] bytes = output.toByteArray();
+        Assertions.assertEquals(16, bytes.length);
+        for (int i = 0; i < 16; i++)
+        {
+            Assertions.assertEquals(8 + i, bytes[i]);
+        }
+    }
+
+    @Test
+    public void shouldAccessAlignedValuesWithAcquireRelease()
+    {
+        UnsafeBuffer buffer = new UnsafeBuffer(64);
+        buffer.putIntRelease(8, 7);
+        buffer.putLongRelease(16, 1L << 40);
+        Assertions.assertEquals(7, buffer.getIntAcquire(8));
+        Assertions.assertEquals(1L << 40, buffer.getLongAcquire(16));
+        Assertions.assertEquals(1L << 40, buffer.getLongVolatile(16));
+        Assertions.assertTrue(buffer.compareAndSetLong(16, 1L << 40, 3L));
+        Assertions.assertEquals(3L, buffer.getLong(16));
+
+        buffer.clearBytes(8, 23);
+        Assertions.assertEquals(0, buffer.getInt(8));
+        Assertions.assertEquals(0L, buffer.getLong(16));
+    }
+
+    @Test
+    public void shouldPreTouchRingBufferInParallel()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(26, 1);
+        oneToManyRingBuffer.preTouch(4);
+
+        ByteBuffer message = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.nativeOrder()).putInt(0, 42);
+        Assertions.assertTrue(oneToManyRingBuffer.write(1, message));
+        Assertions.assertEquals(1, oneToManyRingBuffer.read(0, (msgTypeId, buffer, index, length) -> buffer.getInt(index) == 42));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> oneToManyRingBuffer.preTouch(0));
+    }
+}
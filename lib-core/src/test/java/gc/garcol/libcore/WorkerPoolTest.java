@@ -0,0 +1,171 @@
+package gc.garcol.libcore;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * @author thaivc
+ * @since 2024
+ */
+public class WorkerPoolTest
+{
+
+    ByteBuffer messageBufferWriter = ByteBuffer.allocate(1 << 10);
+
+    @Test
+    public void shouldConsumeEachMessageOnce_1P1C_4Workers()
+    {
+        int messageCount = 5_000;
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(10, 1);
+        WorkerPool workerPool = new WorkerPool(oneToManyRingBuffer, 0, 4);
+
+        AtomicIntegerArray consumed = new AtomicIntegerArray(messageCount);
+        AtomicInteger consumedMessages = new AtomicInteger();
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        CompletableFuture<?>[] workers = new CompletableFuture[workerPool.workerSize()];
+        for (int i = 0; i < workers.length; i++)
+        {
+            int workerIndex = i;
+            workers[i] = CompletableFuture.runAsync(() -> {
+                MessageHandler handler = (msgTypeId, buffer, index, length) -> {
+                    consumed.incrementAndGet(msgTypeId);
+                    consumedMessages.incrementAndGet();
+                    return true;
+                };
+                while (running.get())
+                {
+                    workerPool.read(workerIndex, handler);
+                }
+            });
+        }
+
+        for (int i = 0; i < messageCount; i++)
+        {
+            write(oneToManyRingBuffer, i, "Hello, world! " + i);
+        }
+
+        while (consumedMessages.get() < messageCount)
+        {
+            Thread.onSpinWait();
+        }
+        running.set(false);
+        CompletableFuture.allOf(workers).join();
+
+        for (int i = 0; i < messageCount; i++)
+        {
+            Assertions.assertEquals(1, consumed.get(i), "Message " + i + " not consumed exactly once");
+        }
+    }
+
+    @Test
+    public void shouldReleaseInOrderToNextConsumer_1P2C_4Workers()
+    {
+        int messageCount = 5_000;
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(12, 2);
+        WorkerPool workerPool = new WorkerPool(oneToManyRingBuffer, 0, 4);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicIntegerArray processed = new AtomicIntegerArray(messageCount);
+
+        CompletableFuture<?>[] workers = new CompletableFuture[workerPool.workerSize()];
+        for (int i = 0; i < workers.length; i++)
+        {
+            int workerIndex = i;
+            workers[i] = CompletableFuture.runAsync(() -> {
+                MessageHandler handler = (msgTypeId, buffer, index, length) -> {
+                    if (msgTypeId % 7 == workerIndex)
+                    {
+                        Thread.yield();
+                    }
+                    processed.set(msgTypeId, 1);
+                    return true;
+                };
+                while (running.get())
+                {
+                    workerPool.read(workerIndex, handler);
+                }
+            });
+        }
+
+        AtomicInteger nextExpected = new AtomicInteger();
+        CompletableFuture<?> downstream = CompletableFuture.runAsync(() -> {
+            MessageHandler handler = (msgTypeId, buffer, index, length) -> {
+                Assertions.assertEquals(1, processed.get(msgTypeId), "Message " + msgTypeId + " released before being processed");
+                Assertions.assertEquals(nextExpected.getAndIncrement(), msgTypeId, "Message released out of order");
+                return true;
+            };
+            while (nextExpected.get() < messageCount)
+            {
+                oneToManyRingBuffer.read(1, handler);
+            }
+        });
+
+        for (int i = 0; i < messageCount; i++)
+        {
+            write(oneToManyRingBuffer, i, "Hello, world! " + i);
+        }
+
+        downstream.join();
+        running.set(false);
+        CompletableFuture.allOf(workers).join();
+
+        Assertions.assertEquals(messageCount, nextExpected.get());
+    }
+
+    @Test
+    public void shouldRedeliverUncommittedMessageToSameWorker()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(10, 2);
+        WorkerPool workerPool = new WorkerPool(oneToManyRingBuffer, 0, 2);
+
+        write(oneToManyRingBuffer, 1, "first");
+        write(oneToManyRingBuffer, 2, "second");
+
+        Assertions.assertFalse(workerPool.readOne(0, (msgTypeId, buffer, index, length) -> false));
+
+        AtomicInteger received = new AtomicInteger();
+        Assertions.assertTrue(workerPool.readOne(1, (msgTypeId, buffer, index, length) -> received.compareAndSet(0, msgTypeId)));
+        Assertions.assertEquals(2, received.get(), "Second worker should claim the next message");
+        Assertions.assertEquals(0, oneToManyRingBuffer.read(1, (msgTypeId, buffer, index, length) -> true), "Nothing released before the first message completes");
+
+        Assertions.assertTrue(workerPool.readOne(0, (msgTypeId, buffer, index, length) -> received.compareAndSet(2, msgTypeId)));
+        Assertions.assertEquals(1, received.get(), "First worker should get its message again");
+        Assertions.assertEquals(2, oneToManyRingBuffer.read(1, (msgTypeId, buffer, index, length) -> true));
+    }
+
+    @Test
+    public void shouldKeepTheClaimOfAThrowingHandler()
+    {
+        OneToManyRingBuffer oneToManyRingBuffer = new OneToManyRingBuffer(10, 2);
+        WorkerPool workerPool = new WorkerPool(oneToManyRingBuffer, 0, 1);
+
+        write(oneToManyRingBuffer, 7, "first");
+
+        Assertions.assertThrows(IllegalStateException.class, () -> workerPool.readOne(0, (msgTypeId, buffer, index, length) -> {
+            throw new IllegalStateException("failed once");
+        }));
+        Assertions.assertEquals(0, oneToManyRingBuffer.read(1, (msgTypeId, buffer, index, length) -> true));
+
+        // the same message is delivered again, then released to the next consumer
+        Assertions.assertTrue(workerPool.readOne(0, (msgTypeId, buffer, index, length) -> msgTypeId == 7));
+        Assertions.assertEquals(1, oneToManyRingBuffer.read(1, (msgTypeId, buffer, index, length) -> msgTypeId == 7));
+    }
+
+    private void write(OneToManyRingBuffer oneToManyRingBuffer, int msgTypeId, String message)
+    {
+        messageBufferWriter.clear();
+        ByteBufferUtil.put(messageBufferWriter, 0, message.getBytes());
+        messageBufferWriter.flip();
+        while (!oneToManyRingBuffer.write(msgTypeId, messageBufferWriter))
+        {
+            Thread.onSpinWait();
+        }
+    }
+}